@@ -2,11 +2,17 @@ plugins {
     java
     id("org.springframework.boot") version "3.2.0"
     id("io.spring.dependency-management") version "1.1.4"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "org.tigerbank"
 version = "1.0"
-java.sourceCompatibility = JavaVersion.VERSION_17
+// виртуальные потоки (RequestExecutor) требуют JDK 21
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    }
+}
 
 repositories {
     mavenCentral()
@@ -16,9 +22,23 @@ dependencies {
     implementation("org.springframework.boot:spring-boot-starter")
     implementation("org.springframework.boot:spring-boot-starter-json")
     implementation("com.fasterxml.jackson.datatype:jackson-datatype-jsr310")
+    // метрики: реестр Micrometer настраивает actuator, экспорт в JMX - micrometer-registry-jmx
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+    implementation("io.micrometer:micrometer-registry-jmx")
     testImplementation("org.springframework.boot:spring-boot-starter-test")
 }
 
+// Бенчмарки: ./gradlew jmh, отдельный бенчмарк - ./gradlew jmh -PjmhIncludes=AnalyticsBenchmark
+// Результаты пишутся в JSON с версией в имени файла, чтобы сравнивать релизы между собой;
+// профилировщик gc добавляет к каждому бенчмарку выделение памяти (gc.alloc.rate.norm, B/op)
+jmh {
+    jmhVersion.set("1.37")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results-${project.version}.json"))
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes.set(listOf(it)) }
+}
+
 // Настройка кодировки для ВСЕХ задач, использующих JVM
 tasks.withType<JavaExec> {
     systemProperty("file.encoding", "UTF-8")
@@ -0,0 +1,146 @@
+package org.tigerbank.finance.benchmark;
+
+import org.tigerbank.finance.dto.AnalyticsSummary;
+import org.tigerbank.finance.dto.TimeGranularity;
+import org.tigerbank.finance.dto.TimeSeriesPoint;
+import org.tigerbank.finance.model.Category;
+import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.model.OperationType;
+import org.tigerbank.finance.repository.InMemoryBankAccountRepository;
+import org.tigerbank.finance.repository.InMemoryCategoryRepository;
+import org.tigerbank.finance.repository.InMemoryOperationRepository;
+import org.tigerbank.finance.service.AnalyticsService;
+import org.tigerbank.finance.service.ParallelAnalyticsExecutor;
+
+import org.openjdk.jmh.annotations.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Запросы аналитики за всю историю: однопроходный аккумулятор, параллельный режим
+ * и исходная реализация на стримах с BigDecimal по операциям периода (legacy*) для сравнения
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class AnalyticsBenchmark {
+    private static final int CATEGORIES = 50;
+
+    @Param({"100000", "1000000"})
+    private int size;
+
+    private InMemoryOperationRepository operationRepo;
+    private InMemoryCategoryRepository categoryRepo;
+    private AnalyticsService sequential;
+    private AnalyticsService parallel;
+    private ParallelAnalyticsExecutor executor;
+    private LocalDate from;
+    private LocalDate to;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        operationRepo = new InMemoryOperationRepository();
+        categoryRepo = new InMemoryCategoryRepository();
+        BenchmarkData.operations(operationRepo, size,
+                BenchmarkData.accounts(new InMemoryBankAccountRepository(), 100),
+                BenchmarkData.categories(categoryRepo, CATEGORIES));
+        executor = new ParallelAnalyticsExecutor(0, 1, 4096);
+        sequential = new AnalyticsService(operationRepo, categoryRepo);
+        parallel = new AnalyticsService(operationRepo, categoryRepo, executor);
+        to = LocalDate.now();
+        from = to.minusDays(BenchmarkData.DAYS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Benchmark
+    public BigDecimal calculateNetIncome() {
+        return sequential.calculateNetIncome(from, to);
+    }
+
+    @Benchmark
+    public Map<Category, BigDecimal> groupByCategory() {
+        return sequential.groupByCategory(from, to, OperationType.EXPENSE);
+    }
+
+    @Benchmark
+    public AnalyticsSummary summarize() {
+        return sequential.summarize(from, to);
+    }
+
+    @Benchmark
+    public AnalyticsSummary summarizeParallel() {
+        return parallel.summarize(from, to);
+    }
+
+    /**
+     * Помесячный ряд за всю историю одним запросом: полные месяцы читаются из месячных агрегатов
+     */
+    @Benchmark
+    public List<TimeSeriesPoint> monthlyTimeSeries() {
+        return sequential.timeSeries(from, to, TimeGranularity.MONTH, false);
+    }
+
+    /**
+     * Тот же ряд отдельным запросом summarize на каждый месяц - как раньше строились графики
+     */
+    @Benchmark
+    public List<AnalyticsSummary> monthlySummarizeCalls() {
+        List<AnalyticsSummary> result = new ArrayList<>();
+        for (LocalDate start = from.withDayOfMonth(1); !start.isAfter(to); start = start.plusMonths(1)) {
+            LocalDate end = start.plusMonths(1).minusDays(1);
+            result.add(sequential.summarize(start.isBefore(from) ? from : start, end.isAfter(to) ? to : end));
+        }
+        return result;
+    }
+
+    /**
+     * Исходный calculateNetIncome: findByPeriod и два стрима с суммированием BigDecimal
+     */
+    @Benchmark
+    public BigDecimal legacyCalculateNetIncome() {
+        List<Operation> ops = legacyFindByPeriod();
+        BigDecimal income = ops.stream()
+                .filter((op) -> op.getType() == OperationType.INCOME)
+                .map(Operation::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal expense = ops.stream()
+                .filter((op) -> op.getType() == OperationType.EXPENSE)
+                .map(Operation::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return income.subtract(expense);
+    }
+
+    /**
+     * Исходный groupByCategory: findByPeriod, groupingBy с поиском категории на каждую операцию
+     * и редукцией BigDecimal
+     */
+    @Benchmark
+    public Map<Category, BigDecimal> legacyGroupByCategory() {
+        return legacyFindByPeriod().stream()
+                .filter((op) -> op.getType() == OperationType.EXPENSE && op.getCategoryId() != null)
+                .collect(Collectors.groupingBy(
+                        (op) -> categoryRepo.findById(op.getCategoryId())
+                                .orElseThrow(() -> new IllegalArgumentException("Категория отсутствует")),
+                        Collectors.reducing(BigDecimal.ZERO, Operation::getAmount, BigDecimal::add)
+                ));
+    }
+
+    // исходный findByPeriod - фильтр по всем операциям хранилища (границы включительно, как сейчас)
+    private List<Operation> legacyFindByPeriod() {
+        return operationRepo.streamAll()
+                .filter((op) -> !op.getDate().isBefore(from) && !op.getDate().isAfter(to))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,72 @@
+package org.tigerbank.finance.benchmark;
+
+import org.tigerbank.finance.model.BankAccount;
+import org.tigerbank.finance.model.Category;
+import org.tigerbank.finance.model.CategoryType;
+import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.model.OperationType;
+import org.tigerbank.finance.repository.IBankAccountRepository;
+import org.tigerbank.finance.repository.ICategoryRepository;
+import org.tigerbank.finance.repository.IOperationRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Генерация одинаковых от запуска к запуску данных для бенчмарков
+ */
+final class BenchmarkData {
+    /** Глубина истории операций в днях */
+    static final int DAYS = 3 * 365;
+
+    private static final long SEED = 42;
+
+    private BenchmarkData() {
+    }
+
+    static List<UUID> accounts(IBankAccountRepository accountRepo, int count) {
+        List<UUID> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(accountRepo.save(new BankAccount("Счёт " + i)).getId());
+        }
+        return ids;
+    }
+
+    static List<UUID> categories(ICategoryRepository categoryRepo, int count) {
+        List<UUID> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            CategoryType type = i % 2 == 0 ? CategoryType.EXPENSE : CategoryType.INCOME;
+            ids.add(categoryRepo.save(new Category("Категория " + i, type)).getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Заполняет репозиторий операциями, равномерно размазанными по счетам, категориям и дням
+     * @param categories ID категорий; чётные - расходные, нечётные - доходные (см. {@link #categories})
+     */
+    static void operations(IOperationRepository operationRepo, int count, List<UUID> accounts, List<UUID> categories) {
+        Random random = new Random(SEED);
+        LocalDate today = LocalDate.now();
+        List<Operation> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < count; i++) {
+            int category = categories.isEmpty() ? -1 : random.nextInt(categories.size());
+            OperationType type = category < 0 || category % 2 == 0 ? OperationType.EXPENSE : OperationType.INCOME;
+            batch.add(new Operation(type,
+                    accounts.get(random.nextInt(accounts.size())),
+                    BigDecimal.valueOf(1 + random.nextInt(1_000_000), 2),
+                    today.minusDays(random.nextInt(DAYS)),
+                    "Операция",
+                    category < 0 ? null : categories.get(category)));
+            if (batch.size() == 10_000) {
+                operationRepo.saveAll(batch);
+                batch.clear();
+            }
+        }
+        operationRepo.saveAll(batch);
+    }
+}
@@ -0,0 +1,62 @@
+package org.tigerbank.finance.benchmark;
+
+import org.tigerbank.finance.repository.InMemoryBankAccountRepository;
+import org.tigerbank.finance.repository.InMemoryCategoryRepository;
+import org.tigerbank.finance.repository.InMemoryOperationRepository;
+import org.tigerbank.finance.service.JsonDataService;
+
+import org.openjdk.jmh.annotations.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Экспорт и импорт JSON. Время - на весь файл; пропускная способность
+ * в операциях в секунду равна size / score
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class DataServiceBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    private int size;
+
+    private JsonDataService dataService;
+    private Path exportFile;
+    private Path importFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        InMemoryBankAccountRepository accountRepo = new InMemoryBankAccountRepository();
+        InMemoryCategoryRepository categoryRepo = new InMemoryCategoryRepository();
+        InMemoryOperationRepository operationRepo = new InMemoryOperationRepository();
+        BenchmarkData.operations(operationRepo, size,
+                BenchmarkData.accounts(accountRepo, 100),
+                BenchmarkData.categories(categoryRepo, 50));
+        dataService = new JsonDataService(accountRepo, categoryRepo, operationRepo);
+        exportFile = Files.createTempFile("finance-export", ".json");
+        importFile = Files.createTempFile("finance-import", ".json");
+        dataService.exportToFile(importFile.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(exportFile);
+        Files.deleteIfExists(importFile);
+    }
+
+    @Benchmark
+    public void exportToFile() throws IOException {
+        dataService.exportToFile(exportFile.toString());
+    }
+
+    // импорт подменяет содержимое репозиториев тем же набором данных, размер не меняется
+    @Benchmark
+    public void importFromFile() throws IOException {
+        dataService.importFromFile(importFile.toString());
+    }
+}
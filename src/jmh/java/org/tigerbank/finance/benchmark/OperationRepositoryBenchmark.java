@@ -0,0 +1,74 @@
+package org.tigerbank.finance.benchmark;
+
+import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.repository.CompactOperationRepository;
+import org.tigerbank.finance.repository.IOperationRepository;
+import org.tigerbank.finance.repository.InMemoryBankAccountRepository;
+import org.tigerbank.finance.repository.InMemoryOperationRepository;
+
+import org.openjdk.jmh.annotations.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Репозиторий операций на 10^4 - 10^7 операций: сохранение, выборка по счёту и за месяц.
+ * Сравниваются оба in-memory хранилища - на объектах и на колонках
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class OperationRepositoryBenchmark {
+    private static final int ACCOUNTS = 1_000;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    private int size;
+
+    @Param({"map", "compact"})
+    private String storage;
+
+    private IOperationRepository repo;
+    private List<UUID> accounts;
+    private List<Operation> sample;
+    private LocalDate today;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repo = "compact".equals(storage) ? new CompactOperationRepository() : new InMemoryOperationRepository();
+        accounts = BenchmarkData.accounts(new InMemoryBankAccountRepository(), ACCOUNTS);
+        BenchmarkData.operations(repo, size, accounts, List.of());
+        sample = repo.findAll().subList(0, Math.min(size, 10_000));
+        today = LocalDate.now();
+    }
+
+    /**
+     * Пересохранение существующей операции с другой датой и суммой: размер репозитория
+     * не меняется между итерациями, а индексы по дате и агрегаты обновляются
+     */
+    @Benchmark
+    public Operation save() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Operation existing = sample.get(random.nextInt(sample.size()));
+        return repo.save(Operation.restore(existing.getId(), existing.getType(), existing.getBankAccountId(),
+                BigDecimal.valueOf(1 + random.nextInt(1_000_000), 2),
+                today.minusDays(random.nextInt(BenchmarkData.DAYS)),
+                existing.getDescription(), existing.getCategoryId()));
+    }
+
+    @Benchmark
+    public List<Operation> findByAccountId() {
+        return repo.findByAccountId(accounts.get(ThreadLocalRandom.current().nextInt(ACCOUNTS)));
+    }
+
+    @Benchmark
+    public List<Operation> findByPeriod() {
+        LocalDate to = today.minusDays(ThreadLocalRandom.current().nextInt(BenchmarkData.DAYS));
+        return repo.findByPeriod(to.minusDays(29), to);
+    }
+}
@@ -0,0 +1,58 @@
+package org.tigerbank.finance.benchmark;
+
+import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.model.OperationType;
+import org.tigerbank.finance.repository.InMemoryBankAccountRepository;
+import org.tigerbank.finance.repository.InMemoryCategoryRepository;
+import org.tigerbank.finance.repository.InMemoryOperationRepository;
+import org.tigerbank.finance.service.AccountLockManager;
+import org.tigerbank.finance.service.BalanceRecalculator;
+import org.tigerbank.finance.service.OperationService;
+
+import org.openjdk.jmh.annotations.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Добавление операций из 8 потоков: от одного общего счёта (все потоки
+ * конкурируют за одну блокировку) до тысяч счетов (конфликтов почти нет)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class OperationServiceBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Param({"1", "64", "4096"})
+    private int accountCount;
+
+    private OperationService service;
+    private List<UUID> accounts;
+    private LocalDate today;
+
+    // репозитории пересоздаются на каждой итерации, чтобы их размер не рос от итерации к итерации
+    @Setup(Level.Iteration)
+    public void setUp() {
+        InMemoryBankAccountRepository accountRepo = new InMemoryBankAccountRepository();
+        InMemoryOperationRepository operationRepo = new InMemoryOperationRepository();
+        AccountLockManager locks = new AccountLockManager(1024);
+        accounts = BenchmarkData.accounts(accountRepo, accountCount);
+        service = new OperationService(accountRepo, operationRepo, new InMemoryCategoryRepository(),
+                new BalanceRecalculator(accountRepo, operationRepo, locks), locks);
+        today = LocalDate.now();
+    }
+
+    @Benchmark
+    public Operation addOperation() {
+        UUID account = accounts.get(ThreadLocalRandom.current().nextInt(accounts.size()));
+        return service.addOperation(new Operation(OperationType.INCOME, account, AMOUNT, today, null, null));
+    }
+}
@@ -21,15 +21,17 @@ public class FinanceRunner implements CommandLineRunner {
     private final IBankAccountRepository accountRepo;
     private final ICategoryRepository categoryRepo;
     private final IDataService dataService;
+    private final ServiceMetrics metrics;
 
     public FinanceRunner(IOperationService os, IAnalyticsService as,
                          IBankAccountRepository ar, ICategoryRepository cr,
-                         IDataService ds) {
+                         IDataService ds, ServiceMetrics sm) {
         this.operationService = os;
         this.analyticsService = as;
         this.accountRepo = ar;
         this.categoryRepo = cr;
         this.dataService = ds;
+        this.metrics = sm;
     }
 
     @Override
@@ -129,6 +131,10 @@ public class FinanceRunner implements CommandLineRunner {
         System.out.println("   Баланс основного счёта: " +
                 operationService.getAccountBalance(accountRepo.findAll().get(0).getId()) + " ₽");
 
+        // МЕТРИКИ
+        System.out.println();
+        metrics.printReport();
+
         System.out.println("\n Работа завершена! Все данные сохранены в tigerbank_full_export.json");
         System.exit(0);
     }
@@ -0,0 +1,76 @@
+package org.tigerbank.finance.dto;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Итоги за период, собранные за один проход: суммы и число операций по типам
+ * и суммы по категориям (ID категории -> сумма) отдельно для доходов и расходов.
+ * Все суммы - в валюте отчётов {@link #getCurrency()}
+ */
+public class AnalyticsSummary {
+    private final BigDecimal income;
+    private final BigDecimal expense;
+    private final long incomeCount;
+    private final long expenseCount;
+    private final Map<UUID, BigDecimal> incomeByCategory;
+    private final Map<UUID, BigDecimal> expenseByCategory;
+    private final Currency currency;
+
+    public AnalyticsSummary(BigDecimal income, BigDecimal expense, long incomeCount, long expenseCount,
+                            Map<UUID, BigDecimal> incomeByCategory, Map<UUID, BigDecimal> expenseByCategory,
+                            Currency currency) {
+        this.income = income;
+        this.expense = expense;
+        this.incomeCount = incomeCount;
+        this.expenseCount = expenseCount;
+        this.incomeByCategory = Collections.unmodifiableMap(incomeByCategory);
+        this.expenseByCategory = Collections.unmodifiableMap(expenseByCategory);
+        this.currency = currency;
+    }
+
+    public BigDecimal getIncome() {
+        return income;
+    }
+
+    public BigDecimal getExpense() {
+        return expense;
+    }
+
+    /** Чистая прибыль: доходы минус расходы */
+    public BigDecimal getNetIncome() {
+        return income.subtract(expense);
+    }
+
+    public long getIncomeCount() {
+        return incomeCount;
+    }
+
+    public long getExpenseCount() {
+        return expenseCount;
+    }
+
+    /** Доходы по категориям; операции без категории сюда не попадают */
+    public Map<UUID, BigDecimal> getIncomeByCategory() {
+        return incomeByCategory;
+    }
+
+    /** Расходы по категориям; операции без категории сюда не попадают */
+    public Map<UUID, BigDecimal> getExpenseByCategory() {
+        return expenseByCategory;
+    }
+
+    /** Валюта отчётов, в которую переведены все суммы */
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public String toString() {
+        return "AnalyticsSummary{currency=" + currency + ", income=" + income + ", expense=" + expense
+                + ", incomeCount=" + incomeCount + ", expenseCount=" + expenseCount + "}";
+    }
+}
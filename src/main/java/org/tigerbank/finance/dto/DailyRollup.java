@@ -0,0 +1,116 @@
+package org.tigerbank.finance.dto;
+
+import org.tigerbank.finance.model.Money;
+import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.model.OperationType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Currency;
+import java.util.UUID;
+
+/**
+ * Агрегат операций за один день с одной категорией, одним типом и в одной валюте: число операций и сумма.
+ * Неизменяемый - репозиторий заменяет агрегат новым при каждом изменении.
+ * Тот же класс описывает агрегаты за неделю и месяц ({@link TimeGranularity}): их дата -
+ * первый день интервала
+ */
+public final class DailyRollup {
+    private final LocalDate date;
+    private final UUID categoryId;
+    private final OperationType type;
+    private final Currency currency;
+    private final long count;
+    // сумма в копейках, см. Money
+    private final long amountMinor;
+
+    public DailyRollup(LocalDate date, UUID categoryId, OperationType type, long count, long amountMinor) {
+        this(date, categoryId, type, Money.DEFAULT_CURRENCY, count, amountMinor);
+    }
+
+    public DailyRollup(LocalDate date, UUID categoryId, OperationType type, Currency currency,
+                       long count, long amountMinor) {
+        if (date == null || type == null || currency == null) {
+            throw new IllegalArgumentException("Дата, тип и валюта агрегата обязательны");
+        }
+        this.date = date;
+        this.categoryId = categoryId;
+        this.type = type;
+        this.currency = currency;
+        this.count = count;
+        this.amountMinor = amountMinor;
+    }
+
+    /**
+     * Агрегат из одной операции
+     */
+    public static DailyRollup of(Operation operation) {
+        return of(operation, operation.getDate());
+    }
+
+    /**
+     * Агрегат из одной операции, отнесённый к интервалу, который начинается в date
+     */
+    public static DailyRollup of(Operation operation, LocalDate date) {
+        return new DailyRollup(date, operation.getCategoryId(), operation.getType(),
+                operation.getCurrency(), 1, operation.getAmountMinor());
+    }
+
+    /**
+     * Тот же агрегат, отнесённый к другой дате (первому дню интервала)
+     */
+    public DailyRollup atDate(LocalDate start) {
+        return new DailyRollup(start, categoryId, type, currency, count, amountMinor);
+    }
+
+    /**
+     * Сумма двух агрегатов одного дня, категории, типа и валюты
+     */
+    public DailyRollup plus(DailyRollup other) {
+        return new DailyRollup(date, categoryId, type, currency, count + other.count, Money.add(amountMinor, other.amountMinor));
+    }
+
+    /**
+     * Агрегат без операций other
+     */
+    public DailyRollup minus(DailyRollup other) {
+        return new DailyRollup(date, categoryId, type, currency, count - other.count, amountMinor - other.amountMinor);
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /** ID категории или null для операций без категории */
+    public UUID getCategoryId() {
+        return categoryId;
+    }
+
+    public OperationType getType() {
+        return type;
+    }
+
+    /** Валюта суммы - валюта счетов операций */
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public BigDecimal getAmount() {
+        return Money.toBigDecimal(amountMinor);
+    }
+
+    /** Сумма в копейках */
+    public long getAmountMinor() {
+        return amountMinor;
+    }
+
+    @Override
+    public String toString() {
+        return "DailyRollup{date=" + date + ", categoryId=" + categoryId + ", type=" + type
+                + ", count=" + count + ", amount=" + getAmount() + " " + currency.getCurrencyCode() + "}";
+    }
+}
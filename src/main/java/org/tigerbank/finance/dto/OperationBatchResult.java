@@ -0,0 +1,73 @@
+package org.tigerbank.finance.dto;
+
+import org.tigerbank.finance.model.Operation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Результат пакетного добавления операций: сохранённые операции и ошибки по строкам.
+ */
+public class OperationBatchResult {
+    private final List<Operation> saved = new ArrayList<>();
+    private final List<RowFailure> failures = new ArrayList<>();
+
+    public void addSaved(Operation operation) {
+        saved.add(operation);
+    }
+
+    public void addFailure(int row, Operation operation, String reason) {
+        failures.add(new RowFailure(row, operation, reason));
+    }
+
+    public List<Operation> getSaved() {
+        return Collections.unmodifiableList(saved);
+    }
+
+    public List<RowFailure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "OperationBatchResult{saved=" + saved.size() + ", failed=" + failures.size() + "}";
+    }
+
+    /**
+     * Ошибка в одной строке пакета
+     */
+    public static class RowFailure {
+        private final int row;
+        private final Operation operation;
+        private final String reason;
+
+        public RowFailure(int row, Operation operation, String reason) {
+            this.row = row;
+            this.operation = operation;
+            this.reason = reason;
+        }
+
+        /** Номер строки в исходном пакете (с нуля) */
+        public int getRow() {
+            return row;
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "RowFailure{row=" + row + ", reason=" + reason + "}";
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.tigerbank.finance.dto;
+
+import org.tigerbank.finance.model.Operation;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Позиция в выборке операций, упорядоченной по дате, а внутри дня - по ID.
+ * Следующая страница начинается строго после позиции, поэтому вставки и удаления
+ * между запросами не приводят к пропускам и повторам, как при сдвиге на номер строки
+ */
+public final class OperationCursor implements Comparable<OperationCursor> {
+    /** Порядок операций в постраничных выборках */
+    public static final Comparator<Operation> ORDER =
+            Comparator.comparing(Operation::getDate).thenComparing(Operation::getId);
+
+    private static final char SEPARATOR = '_';
+
+    private final LocalDate date;
+    private final UUID id;
+
+    public OperationCursor(LocalDate date, UUID id) {
+        if (date == null || id == null) {
+            throw new IllegalArgumentException("Дата и ID позиции обязательны");
+        }
+        this.date = date;
+        this.id = id;
+    }
+
+    /**
+     * Позиция сразу за операцией
+     */
+    public static OperationCursor of(Operation operation) {
+        return new OperationCursor(operation.getDate(), operation.getId());
+    }
+
+    /**
+     * Разбирает позицию из строки, полученной через {@link #toString()}
+     * @throws IllegalArgumentException если строка не является позицией
+     */
+    public static OperationCursor parse(String token) {
+        if (token == null) {
+            throw new IllegalArgumentException("Позиция не может быть null");
+        }
+        int split = token.indexOf(SEPARATOR);
+        try {
+            return new OperationCursor(LocalDate.parse(token.substring(0, split)), UUID.fromString(token.substring(split + 1)));
+        } catch (DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Некорректная позиция: " + token, e);
+        }
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * @return true, если операция стоит в выборке после этой позиции
+     */
+    public boolean isBefore(Operation operation) {
+        int byDate = operation.getDate().compareTo(date);
+        return byDate > 0 || byDate == 0 && operation.getId().compareTo(id) > 0;
+    }
+
+    @Override
+    public int compareTo(OperationCursor other) {
+        int byDate = date.compareTo(other.date);
+        return byDate != 0 ? byDate : id.compareTo(other.id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof OperationCursor other)) return false;
+        return date.equals(other.date) && id.equals(other.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(date, id);
+    }
+
+    /**
+     * Строковое представление для передачи клиенту, см. {@link #parse(String)}
+     */
+    @Override
+    public String toString() {
+        return date.toString() + SEPARATOR + id;
+    }
+}
@@ -0,0 +1,62 @@
+package org.tigerbank.finance.dto;
+
+import org.tigerbank.finance.model.Operation;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Страница операций и позиция, с которой начинается следующая
+ */
+public class OperationPage {
+    /** Наибольший допустимый размер страницы */
+    public static final int MAX_SIZE = 10_000;
+
+    private final List<Operation> items;
+    private final OperationCursor next;
+
+    public OperationPage(List<Operation> items, OperationCursor next) {
+        this.items = Collections.unmodifiableList(items);
+        this.next = next;
+    }
+
+    /**
+     * Страница из выборки размером до limit + 1: лишняя операция только
+     * показывает, что за страницей есть продолжение
+     */
+    public static OperationPage of(List<Operation> fetched, int limit) {
+        if (fetched.size() <= limit) {
+            return new OperationPage(fetched, null);
+        }
+        List<Operation> items = fetched.subList(0, limit);
+        return new OperationPage(items, OperationCursor.of(items.get(limit - 1)));
+    }
+
+    /**
+     * Проверяет размер страницы
+     * @throws IllegalArgumentException если limit не в диапазоне [1; MAX_SIZE]
+     */
+    public static void validateLimit(int limit) {
+        if (limit < 1 || limit > MAX_SIZE) {
+            throw new IllegalArgumentException("Размер страницы должен быть от 1 до " + MAX_SIZE + ": " + limit);
+        }
+    }
+
+    public List<Operation> getItems() {
+        return items;
+    }
+
+    /** Позиция для запроса следующей страницы или null, если страница последняя */
+    public OperationCursor getNext() {
+        return next;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public String toString() {
+        return "OperationPage{size=" + items.size() + ", next=" + next + "}";
+    }
+}
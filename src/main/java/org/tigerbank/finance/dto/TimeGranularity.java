@@ -0,0 +1,79 @@
+package org.tigerbank.finance.dto;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * Размер интервала временного ряда. Неделя начинается с понедельника (ISO), месяц - с первого числа
+ */
+public enum TimeGranularity {
+    DAY {
+        @Override
+        public LocalDate start(LocalDate date) {
+            return date;
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusDays(1);
+        }
+    },
+    WEEK {
+        @Override
+        public LocalDate start(LocalDate date) {
+            return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusWeeks(1);
+        }
+    },
+    MONTH {
+        @Override
+        public LocalDate start(LocalDate date) {
+            return date.withDayOfMonth(1);
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusMonths(1);
+        }
+    };
+
+    /**
+     * Первый день интервала, в который попадает date
+     */
+    public abstract LocalDate start(LocalDate date);
+
+    /**
+     * Первый день следующего интервала
+     * @param start первый день интервала, см. {@link #start}
+     */
+    public abstract LocalDate next(LocalDate start);
+
+    /**
+     * Последний день интервала, в который попадает date
+     */
+    public LocalDate end(LocalDate date) {
+        return next(start(date)).minusDays(1);
+    }
+
+    /**
+     * Сводит дневные агрегаты в агрегаты интервалов: дата результата - первый день интервала
+     */
+    public List<DailyRollup> rollUp(Collection<DailyRollup> daily) {
+        if (this == DAY) {
+            return new ArrayList<>(daily);
+        }
+        Map<List<Object>, DailyRollup> buckets = new HashMap<>();
+        for (DailyRollup rollup : daily) {
+            LocalDate start = start(rollup.getDate());
+            buckets.merge(Arrays.asList(start, rollup.getCategoryId(), rollup.getType(), rollup.getCurrency()),
+                    rollup.atDate(start), DailyRollup::plus);
+        }
+        return new ArrayList<>(buckets.values());
+    }
+}
@@ -0,0 +1,53 @@
+package org.tigerbank.finance.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Точка временного ряда: итоги за один интервал (день, неделю или месяц).
+ * Первый и последний интервалы обрезаются границами запрошенного периода
+ */
+public class TimeSeriesPoint {
+    private final LocalDate from;
+    private final LocalDate to;
+    private final AnalyticsSummary summary;
+
+    public TimeSeriesPoint(LocalDate from, LocalDate to, AnalyticsSummary summary) {
+        this.from = from;
+        this.to = to;
+        this.summary = summary;
+    }
+
+    /** Первый день интервала (включительно) */
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    /** Последний день интервала (включительно) */
+    public LocalDate getTo() {
+        return to;
+    }
+
+    /** Итоги интервала; суммы по категориям пусты, если ряд строился без разбивки по категориям */
+    public AnalyticsSummary getSummary() {
+        return summary;
+    }
+
+    public BigDecimal getIncome() {
+        return summary.getIncome();
+    }
+
+    public BigDecimal getExpense() {
+        return summary.getExpense();
+    }
+
+    public BigDecimal getNetIncome() {
+        return summary.getNetIncome();
+    }
+
+    @Override
+    public String toString() {
+        return "TimeSeriesPoint{from=" + from + ", to=" + to + ", income=" + getIncome()
+                + ", expense=" + getExpense() + "}";
+    }
+}
@@ -0,0 +1,32 @@
+package org.tigerbank.finance.dto;
+
+import org.tigerbank.finance.model.Operation;
+
+/**
+ * Результат перевода между счетами: операция списания и парная операция зачисления
+ */
+public class TransferResult {
+    private final Operation debit;
+    private final Operation credit;
+
+    public TransferResult(Operation debit, Operation credit) {
+        this.debit = debit;
+        this.credit = credit;
+    }
+
+    /** Расход на счёте-отправителе */
+    public Operation getDebit() {
+        return debit;
+    }
+
+    /** Доход на счёте-получателе */
+    public Operation getCredit() {
+        return credit;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferResult{from=" + debit.getBankAccountId() + ", to=" + credit.getBankAccountId()
+                + ", amount=" + debit.getAmount() + "}";
+    }
+}
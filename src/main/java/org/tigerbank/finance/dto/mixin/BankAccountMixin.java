@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.math.BigDecimal;
+import java.util.Currency;
 import java.util.UUID;
 
 /**
@@ -14,6 +15,7 @@ public abstract class BankAccountMixin {
     public BankAccountMixin(
             @JsonProperty("id") UUID id,
             @JsonProperty("name") String name,
-            @JsonProperty("balance") BigDecimal balance
+            @JsonProperty("balance") BigDecimal balance,
+            @JsonProperty("currency") Currency currency
     ) {}
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import org.tigerbank.finance.model.OperationType;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Currency;
 import java.util.UUID;
 
 public abstract class OperationMixin {
@@ -17,6 +18,7 @@ public abstract class OperationMixin {
             @JsonProperty("amount") BigDecimal amount,
             @JsonProperty("date") LocalDate date,
             @JsonProperty("description") String description,
-            @JsonProperty("categoryId") UUID categoryId
+            @JsonProperty("categoryId") UUID categoryId,
+            @JsonProperty("currency") Currency currency
     ) {}
 }
\ No newline at end of file
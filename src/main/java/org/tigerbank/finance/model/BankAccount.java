@@ -1,29 +1,65 @@
 package org.tigerbank.finance.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.Currency;
 import java.util.UUID;
 
 public class BankAccount {
 
     private final UUID id;
     private String name;
-    private BigDecimal balance;
+    // валюта счёта: все операции счёта в этой валюте
+    private final Currency currency;
+    // баланс в копейках, см. Money
+    private volatile long balanceMinor;
 
     public BankAccount(String name) {
+        this(name, Money.DEFAULT_CURRENCY);
+    }
+
+    public BankAccount(String name, Currency currency) {
+        if (currency == null) {
+            throw new IllegalArgumentException("Валюта счёта обязательна");
+        }
         this.id = UUID.randomUUID();
         this.name = validateName(name);
-        this.balance = BigDecimal.ZERO;
+        this.currency = Money.requireSupported(currency);
+        this.balanceMinor = 0;
     }
 
-    BankAccount(UUID id, String name, BigDecimal balance) {
+    /**
+     * Конструктор для восстановления; currency == null - валюта по умолчанию (данные без валюты)
+     */
+    BankAccount(UUID id, String name, BigDecimal balance, Currency currency) {
         if (id == null) {
             throw new IllegalArgumentException("ID счёта не найден");
         }
 
         this.id = id;
-        this.balance = validateBalance(balance);
+        this.name = validateName(name);
+        this.currency = currency != null ? Money.requireSupported(currency) : Money.DEFAULT_CURRENCY;
+        this.balanceMinor = validateBalance(balance);
+
+    }
 
+    /**
+     * Восстанавливает счёт из хранилища (снимка, журнала) с прежним ID и балансом
+     */
+    public static BankAccount restore(UUID id, String name, BigDecimal balance) {
+        return new BankAccount(id, name, balance, null);
+    }
+
+    public static BankAccount restore(UUID id, String name, BigDecimal balance, Currency currency) {
+        return new BankAccount(id, name, balance, currency);
+    }
+
+    /**
+     * Независимая копия счёта с тем же ID, названием, валютой и балансом
+     */
+    public synchronized BankAccount copy() {
+        return new BankAccount(id, name, getBalance(), currency);
     }
 
     /*  =====ГЕТТЕРЫ=====  */
@@ -35,8 +71,20 @@ public class BankAccount {
         return name;
     }
 
+    public Currency getCurrency() {
+        return currency;
+    }
+
     public BigDecimal getBalance() {
-        return balance;
+        return Money.toBigDecimal(balanceMinor);
+    }
+
+    /**
+     * Баланс в копейках - для расчётов без создания BigDecimal
+     */
+    @JsonIgnore
+    public long getBalanceMinor() {
+        return balanceMinor;
     }
 
     public void rename(String newName) {
@@ -45,25 +93,61 @@ public class BankAccount {
 
 
     /*     ==== БИЗНЕС ЛОГИКА СУЩНОСТИ ====   */
-    public void deposit(BigDecimal amount) {
+    public synchronized void deposit(BigDecimal amount) {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Сумма зачисления должна быть положительной");
         }
-        this.balance = this.balance.add(amount).setScale(2, RoundingMode.HALF_UP);
+        this.balanceMinor = Money.add(balanceMinor, Money.toMinorUnits(amount));
     }
 
-    public void withdraw(BigDecimal amount) {
+    public synchronized void withdraw(BigDecimal amount) {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Сумма списания должна быть положительной");
         }
-        if (this.balance.compareTo(amount) < 0) {
-            throw new IllegalArgumentException("Недостаточно средств для списания. Баланс: " + balance);
+        long minor = Money.toMinorUnits(amount);
+        if (balanceMinor < minor) {
+            throw new IllegalArgumentException("Недостаточно средств для списания. Баланс: " + getBalance());
+        }
+        this.balanceMinor = balanceMinor - minor;
+    }
+
+    /**
+     * Атомарно изменяет баланс на знаковую величину (доход - плюс, расход - минус)
+     * @param delta изменение баланса
+     * @throws IllegalArgumentException если после изменения баланс станет отрицательным
+     */
+    public synchronized void applyDelta(BigDecimal delta) {
+        if (delta == null) {
+            throw new IllegalArgumentException("Изменение баланса не может быть null");
+        }
+        applyDelta(Money.toMinorUnits(delta));
+    }
+
+    /**
+     * Атомарно изменяет баланс на знаковую величину в копейках
+     * @param minorDelta изменение баланса в копейках
+     * @throws IllegalArgumentException если после изменения баланс станет отрицательным
+     */
+    public synchronized void applyDelta(long minorDelta) {
+        long newBalance = Money.add(balanceMinor, minorDelta);
+        if (newBalance < 0) {
+            throw new IllegalArgumentException("Недостаточно средств для списания. Баланс: " + getBalance());
         }
-        this.balance = this.balance.subtract(amount).setScale(2, RoundingMode.HALF_UP);
+        this.balanceMinor = newBalance;
+    }
+
+    public synchronized void setBalanceUnsafe(BigDecimal newBalance) {
+        this.balanceMinor = validateBalance(newBalance);
     }
 
-    public void setBalanceUnsafe(BigDecimal newBalance) {
-        this.balance = validateBalance(newBalance);
+    /**
+     * Устанавливает баланс в копейках (полный пересчёт)
+     */
+    public synchronized void setBalanceUnsafe(long newBalanceMinor) {
+        if (newBalanceMinor < 0) {
+            throw new IllegalArgumentException("Отрицательный баланс");
+        }
+        this.balanceMinor = newBalanceMinor;
     }
 
     private String validateName(String name) {
@@ -84,7 +168,7 @@ public class BankAccount {
     }
 
 
-    private BigDecimal validateBalance(BigDecimal balance) {
+    private long validateBalance(BigDecimal balance) {
         if (balance == null) {
             throw  new IllegalArgumentException("Баланс не может быть null");
         }
@@ -92,13 +176,13 @@ public class BankAccount {
             throw new IllegalArgumentException("Отрицательный баланс");
         }
 
-        return balance.setScale(2, RoundingMode.HALF_UP);
+        return Money.toMinorUnits(balance);
     }
 
 
     @Override
     public String toString() {
-        return "BankAccount{id=" + id + ", name=" + name + ", balance=" + balance + " у.е.}";
+        return "BankAccount{id=" + id + ", name=" + name + ", balance=" + getBalance() + " " + currency.getCurrencyCode() + "}";
     }
 
 
@@ -26,6 +26,19 @@ public final class Category {
         this.name = validateName(name);
     }
 
+    /**
+     * Восстанавливает категорию из хранилища (снимка, журнала) с прежним ID
+     */
+    public static Category restore(UUID id, String name, CategoryType type) {
+        return new Category(id, name, type);
+    }
+
+    /**
+     * Независимая копия категории с тем же ID
+     */
+    public Category copy() {
+        return new Category(id, name, type);
+    }
 
     // ======= ГЕТТЕРЫ ======
     public UUID getId() {
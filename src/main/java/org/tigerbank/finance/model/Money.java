@@ -0,0 +1,82 @@
+package org.tigerbank.finance.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Внутреннее представление денежных сумм: long в копейках (масштаб 2).
+ * Хранилища, пересчёт баланса и аналитика работают с long и не создают объектов на каждое
+ * сложение; BigDecimal появляется только на границе API (геттеры, JSON, ввод пользователя)
+ */
+public final class Money {
+    /** Масштаб сумм - тот же, что setScale(2, HALF_UP) в счетах и операциях */
+    public static final int SCALE = 2;
+    /** Валюта счетов и операций, для которых валюта не указана (данные до появления валют) */
+    public static final Currency DEFAULT_CURRENCY = Currency.getInstance("RUB");
+
+    private Money() {
+    }
+
+    /**
+     * Переводит сумму в копейки с округлением HALF_UP
+     * @throws IllegalArgumentException если сумма null или не помещается в long
+     */
+    public static long toMinorUnits(BigDecimal amount) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Сумма не может быть null");
+        }
+        try {
+            return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Сумма вне допустимого диапазона: " + amount);
+        }
+    }
+
+    /**
+     * Валюта по коду ISO 4217; null и пустая строка - валюта по умолчанию
+     * @throws IllegalArgumentException если код неизвестен или валюта не поддерживается, см. {@link #requireSupported}
+     */
+    public static Currency currency(String code) {
+        if (code == null || code.isBlank()) {
+            return DEFAULT_CURRENCY;
+        }
+        Currency currency;
+        try {
+            currency = Currency.getInstance(code.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестный код валюты: " + code);
+        }
+        return requireSupported(currency);
+    }
+
+    /**
+     * Суммы хранятся с масштабом {@link #SCALE} в любой валюте, поэтому валюты с большим числом
+     * знаков после запятой (KWD, BHD, OMR - 3 знака) потеряли бы точность и отклоняются
+     * @throws IllegalArgumentException если у валюты больше {@link #SCALE} знаков после запятой
+     */
+    public static Currency requireSupported(Currency currency) {
+        if (currency.getDefaultFractionDigits() > SCALE) {
+            throw new IllegalArgumentException("Валюта " + currency.getCurrencyCode() + " имеет "
+                    + currency.getDefaultFractionDigits() + " знака после запятой, поддерживается не больше " + SCALE);
+        }
+        return currency;
+    }
+
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * Сложение сумм в копейках с проверкой переполнения
+     * @throws IllegalArgumentException при переполнении long
+     */
+    public static long add(long a, long b) {
+        long sum = a + b;
+        // переполнение: знак результата отличается от знаков обоих слагаемых
+        if (((a ^ sum) & (b ^ sum)) < 0) {
+            throw new IllegalArgumentException("Переполнение денежной суммы");
+        }
+        return sum;
+    }
+}
@@ -2,13 +2,23 @@ package org.tigerbank.finance.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Currency;
 import java.util.UUID;
 
 public final class Operation {
+    /**
+     * Служебная категория обеих операций перевода между счетами. В репозитории категорий её нет:
+     * операции с ней создаёт только перевод, а аналитика их не учитывает
+     */
+    public static final UUID TRANSFER_CATEGORY_ID = new UUID(0, 1);
+
     private final UUID id;
     private final OperationType type;
     private final UUID bankAccountId;
-    private BigDecimal amount;
+    // сумма в копейках, см. Money
+    private long amountMinor;
+    // валюта суммы - совпадает с валютой счёта
+    private final Currency currency;
     private LocalDate date;
     private String description;
     private UUID categoryId;
@@ -20,6 +30,18 @@ public final class Operation {
             LocalDate date,
             String description,
             UUID categoryId
+    ) {
+        this(type, bankAccountId, amount, Money.DEFAULT_CURRENCY, date, description, categoryId);
+    }
+
+    public Operation(
+            OperationType type,
+            UUID bankAccountId,
+            BigDecimal amount,
+            Currency currency,
+            LocalDate date,
+            String description,
+            UUID categoryId
     ) {
         if (type == null) {
             throw new IllegalArgumentException("Тип операции обязателен");
@@ -30,18 +52,23 @@ public final class Operation {
         if (date == null) {
             throw new IllegalArgumentException("Дата операции обязательна");
         }
+        if (currency == null) {
+            throw new IllegalArgumentException("Валюта операции обязательна");
+        }
 
         this.id = UUID.randomUUID();
         this.type = type;
         this.bankAccountId = bankAccountId;
-        this.amount = validateAmount(amount);
+        this.amountMinor = validateAmount(amount);
+        this.currency = Money.requireSupported(currency);
         this.date = validateDate(date);
         this.description = validateDescription(description);
         this.categoryId = categoryId;
     }
 
     /**
-     * Приватный конструктор для восстановления из репозитория
+     * Приватный конструктор для восстановления из репозитория;
+     * currency == null - валюта по умолчанию (данные без валюты)
      */
     Operation(UUID id,
               OperationType type,
@@ -49,7 +76,8 @@ public final class Operation {
               BigDecimal amount,
               LocalDate date,
               String description,
-              UUID categoryId)
+              UUID categoryId,
+              Currency currency)
     {
         if (id == null || type == null || bankAccountId == null || date == null) {
             throw new IllegalArgumentException("Обязательные поля не могут быть null");
@@ -57,12 +85,44 @@ public final class Operation {
         this.id = id;
         this.type = type;
         this.bankAccountId = bankAccountId;
-        this.amount = validateAmount(amount);
+        this.amountMinor = validateAmount(amount);
+        this.currency = currency != null ? Money.requireSupported(currency) : Money.DEFAULT_CURRENCY;
         this.date = validateDate(date);
         this.description = validateDescription(description);
         this.categoryId = categoryId;
     }
 
+    /**
+     * Восстанавливает операцию из хранилища (снимка, журнала) с прежним ID
+     */
+    public static Operation restore(UUID id,
+                                    OperationType type,
+                                    UUID bankAccountId,
+                                    BigDecimal amount,
+                                    LocalDate date,
+                                    String description,
+                                    UUID categoryId) {
+        return new Operation(id, type, bankAccountId, amount, date, description, categoryId, null);
+    }
+
+    public static Operation restore(UUID id,
+                                    OperationType type,
+                                    UUID bankAccountId,
+                                    BigDecimal amount,
+                                    Currency currency,
+                                    LocalDate date,
+                                    String description,
+                                    UUID categoryId) {
+        return new Operation(id, type, bankAccountId, amount, date, description, categoryId, currency);
+    }
+
+    /**
+     * Независимая копия операции с тем же ID
+     */
+    public Operation copy() {
+        return new Operation(id, type, bankAccountId, getAmount(), date, description, categoryId, currency);
+    }
+
     //  ===== ГЕТТЕРЫ =====
     public UUID getId() {
        return id;
@@ -77,7 +137,19 @@ public final class Operation {
     }
 
     public BigDecimal getAmount() {
-        return amount;
+        return Money.toBigDecimal(amountMinor);
+    }
+
+    /**
+     * Сумма в копейках - для хранилищ и расчётов без создания BigDecimal
+     */
+    @JsonIgnore
+    public long getAmountMinor() {
+        return amountMinor;
+    }
+
+    public Currency getCurrency() {
+        return currency;
     }
 
     public LocalDate getDate() {
@@ -124,22 +196,39 @@ public final class Operation {
         this.categoryId = null;
     }
 
+    /**
+     * Является ли операция половиной перевода между счетами
+     */
+    @JsonIgnore
+    public boolean isTransfer() {
+        return TRANSFER_CATEGORY_ID.equals(categoryId);
+    }
+
     /**
      * Возвращает сумму с учётом типа операции для расчёта баланса
      */
     @JsonIgnore
     public BigDecimal getAmountWithSign() {
-        return amount.multiply(BigDecimal.valueOf(type.getBalanceMultiplier()));
+        return Money.toBigDecimal(getSignedAmountMinor());
+    }
+
+    /**
+     * Сумма с учётом типа операции в копейках
+     */
+    @JsonIgnore
+    public long getSignedAmountMinor() {
+        return type.getBalanceMultiplier() * amountMinor;
     }
 
-    private BigDecimal validateAmount(BigDecimal amount) {
+    private long validateAmount(BigDecimal amount) {
         if (amount == null) {
             throw new IllegalArgumentException("Сумма операций не может быть null");
         }
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+        long minor = Money.toMinorUnits(amount);
+        if (minor <= 0) {
             throw new IllegalArgumentException("Сумма операции должна быть положительной: " + amount);
         }
-        return amount.setScale(2, java.math.RoundingMode.HALF_UP);
+        return minor;
     }
 
     /**
@@ -173,7 +262,7 @@ public final class Operation {
                 "id=" + id +
                 ", type" + type.getName() +
                 ", account=" + bankAccountId +
-                ", amount=" + amount + " c.u." +
+                ", amount=" + getAmount() + " " + currency.getCurrencyCode() +
                 ", date=" + date +
                 (description != null ? ", desc=" + description : "") +
                 (categoryId != null ? ", category=" + categoryId : "") +
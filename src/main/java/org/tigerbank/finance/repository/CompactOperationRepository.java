@@ -0,0 +1,764 @@
+package org.tigerbank.finance.repository;
+
+import org.tigerbank.finance.dto.DailyRollup;
+import org.tigerbank.finance.dto.OperationCursor;
+import org.tigerbank.finance.model.Money;
+import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.model.OperationType;
+import org.tigerbank.finance.storage.DailySumTree;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Компактное in-memory хранилище операций: вместо объектов {@link Operation} в куче лежат
+ * параллельные массивы примитивов - ID (2 long), индекс счёта, индекс категории, день от эпохи,
+ * сумма в копейках, тип, индекс валюты и смещение описания. ID счетов и категорий и валюты
+ * интернируются в словари и хранятся один раз. Описания лежат подряд в страницах байт по
+ * {@value #DESCRIPTION_PAGE_SIZE} байт (UTF-8 с длиной в 2 байта), без объектов String и записей
+ * хеш-таблицы на каждое; строка хранит long-смещение, поэтому объём описаний не ограничен 2 ГБ,
+ * а рост добавляет страницу, не копируя прежние.
+ * <p>
+ * На операцию приходится около 68 байт вместе с индексами плюс описание в UTF-8: на 1М операций
+ * с разными описаниями вида "Оплата по счёту №123456" замерено около 108 байт, с одинаковым
+ * описанием "Операция" - около 87, против 250+ байт у объектной модели с хеш-таблицами
+ * {@link InMemoryOperationRepository}. Объекты {@link Operation} создаются только при выдаче результата.
+ * <p>
+ * Включается свойством finance.storage.operations=compact. Удаление помечает строку типом
+ * {@link #DELETED}; когда удалённых строк становится больше живых, массивы перестраиваются.
+ */
+@Repository("operationStore")
+@ConditionalOnProperty(name = "finance.storage.operations", havingValue = "compact")
+public class CompactOperationRepository implements IOperationRepository {
+    static final byte DELETED = 0;
+    private static final int NO_CATEGORY = -1;
+    private static final long NO_DESCRIPTION = -1;
+    static final int DESCRIPTION_PAGE_SIZE = 1 << 20;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final OperationType[] OPERATION_TYPES = OperationType.values();
+
+    // изменения - под блокировкой записи, выборки - под блокировкой чтения
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Table table = new Table(INITIAL_CAPACITY);
+
+    @Override
+    public Operation save(Operation operation) {
+        if (operation == null) {
+            throw new IllegalArgumentException("operation не может быть null");
+        }
+        lock.writeLock().lock();
+        try {
+            table.put(operation);
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return operation;
+    }
+
+    @Override
+    public void saveAll(Collection<Operation> operations) {
+        if (operations.contains(null)) {
+            throw new IllegalArgumentException("operation не может быть null");
+        }
+        lock.writeLock().lock();
+        try {
+            operations.forEach(table::put);
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Operation> findById(UUID id) {
+        if (id == null) {
+            throw new IllegalArgumentException("operationId не может быть null");
+        }
+        lock.readLock().lock();
+        try {
+            int row = table.find(id);
+            return row < 0 ? Optional.empty() : Optional.of(table.view(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Operation> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Operation> result = new ArrayList<>(table.live());
+            for (int row = 0; row < table.size; row++) {
+                if (table.types[row] != DELETED) {
+                    result.add(table.view(row));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(UUID id) {
+        if (id == null) {
+            throw new IllegalArgumentException("operationId не может быть null");
+        }
+        lock.writeLock().lock();
+        try {
+            table.remove(id);
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @implNote Стоимость O(число строк счёта) за счёт списка строк по индексу счёта
+     */
+    @Override
+    public List<Operation> findByAccountId(UUID accountId) {
+        if (accountId == null) {
+            throw new IllegalArgumentException("accountId не может быть null");
+        }
+        lock.readLock().lock();
+        try {
+            List<Operation> result = new ArrayList<>();
+            int account = table.accountIds.find(accountId);
+            if (account >= 0) {
+                IntList rows = table.byAccount.get(account);
+                for (int i = 0; i < rows.size; i++) {
+                    int row = rows.get(i);
+                    if (table.types[row] != DELETED) {
+                        result.add(table.view(row));
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @implNote Обходит только строки дней из диапазона [from; to]
+     */
+    @Override
+    public List<Operation> findByPeriod(LocalDate from, LocalDate to) {
+        validatePeriod(from, to);
+        lock.readLock().lock();
+        try {
+            List<Operation> result = new ArrayList<>();
+            for (IntList rows : table.daysBetween(from, to)) {
+                for (int i = 0; i < rows.size; i++) {
+                    int row = rows.get(i);
+                    if (table.types[row] != DELETED) {
+                        result.add(table.view(row));
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @implNote Строки счёта не упорядочены, поэтому они просматриваются по колонкам целиком,
+     * а в куче размером limit остаются лучшие; объекты создаются только для страницы
+     */
+    @Override
+    public Stream<Operation> streamByAccountId(UUID accountId, OperationCursor after, int limit) {
+        if (accountId == null) {
+            throw new IllegalArgumentException("accountId не может быть null");
+        }
+        validateLimit(limit);
+        lock.readLock().lock();
+        try {
+            int account = table.accountIds.find(accountId);
+            if (account < 0) {
+                return Stream.empty();
+            }
+            // вершина кучи - последняя из отобранных строк, она вытесняется первой
+            PriorityQueue<Integer> selected = new PriorityQueue<>((a, b) -> table.compareRows(b, a));
+            IntList rows = table.byAccount.get(account);
+            for (int i = 0; i < rows.size; i++) {
+                int row = rows.get(i);
+                if (table.types[row] == DELETED || after != null && !table.isAfter(row, after)) {
+                    continue;
+                }
+                if (selected.size() < limit) {
+                    selected.add(row);
+                } else if (table.compareRows(row, selected.peek()) < 0) {
+                    selected.poll();
+                    selected.add(row);
+                }
+            }
+            List<Integer> ordered = new ArrayList<>(selected);
+            ordered.sort(table::compareRows);
+            List<Operation> result = new ArrayList<>(ordered.size());
+            ordered.forEach((row) -> result.add(table.view(row)));
+            return result.stream();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @implNote Дни обходятся по порядку начиная с дня позиции, строки дня сортируются по ID;
+     * обход останавливается, как только набрано limit операций
+     */
+    @Override
+    public Stream<Operation> streamByPeriod(LocalDate from, LocalDate to, OperationCursor after, int limit) {
+        validatePeriod(from, to);
+        validateLimit(limit);
+        LocalDate start = after == null || after.getDate().isBefore(from) ? from : after.getDate();
+        if (start.isAfter(to)) {
+            return Stream.empty();
+        }
+        lock.readLock().lock();
+        try {
+            List<Operation> result = new ArrayList<>();
+            for (IntList rows : table.daysBetween(start, to)) {
+                List<Integer> day = new ArrayList<>();
+                for (int i = 0; i < rows.size; i++) {
+                    int row = rows.get(i);
+                    if (table.types[row] != DELETED && (after == null || table.isAfter(row, after))) {
+                        day.add(row);
+                    }
+                }
+                day.sort(table::compareRows);
+                for (int row : day) {
+                    if (result.size() == limit) {
+                        return result.stream();
+                    }
+                    result.add(table.view(row));
+                }
+            }
+            return result.stream();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @implNote Агрегаты считаются прямо по колонкам, без создания объектов {@link Operation}
+     */
+    @Override
+    public List<DailyRollup> findDailyRollups(LocalDate from, LocalDate to) {
+        validatePeriod(from, to);
+        lock.readLock().lock();
+        try {
+            List<DailyRollup> result = new ArrayList<>();
+            for (Map.Entry<Integer, IntList> day : table.byDay.subMap(
+                    (int) from.toEpochDay(), true, (int) to.toEpochDay(), true).entrySet()) {
+                // ключ агрегата внутри дня: ((индекс категории + 1) * число валют + валюта) * число типов + тип
+                int currencyCount = table.currencyCodes.size();
+                Map<Integer, long[]> sums = new HashMap<>();
+                IntList rows = day.getValue();
+                for (int i = 0; i < rows.size; i++) {
+                    int row = rows.get(i);
+                    byte type = table.types[row];
+                    if (type == DELETED) {
+                        continue;
+                    }
+                    int key = ((table.categories[row] + 1) * currencyCount + (table.currencies[row] & 0xFF))
+                            * OPERATION_TYPES.length + type - 1;
+                    long[] sum = sums.computeIfAbsent(key, (k) -> new long[2]);
+                    sum[0]++;
+                    sum[1] = Money.add(sum[1], table.amounts[row]);
+                }
+                LocalDate date = LocalDate.ofEpochDay(day.getKey());
+                sums.forEach((key, sum) -> {
+                    int categoryAndCurrency = key / OPERATION_TYPES.length;
+                    int category = categoryAndCurrency / currencyCount - 1;
+                    result.add(new DailyRollup(date,
+                            category == NO_CATEGORY ? null : table.categoryIds.get(category),
+                            OPERATION_TYPES[key % OPERATION_TYPES.length],
+                            table.currencyCodes.get(categoryAndCurrency % currencyCount), sum[0], sum[1]));
+                });
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @implNote Префиксная сумма по дереву дневных сумм счёта ({@link DailySumTree}), которое таблица
+     * поддерживает при каждом сохранении и удалении
+     */
+    @Override
+    public long balanceAt(UUID accountId, LocalDate date) {
+        if (accountId == null || date == null) {
+            throw new IllegalArgumentException("accountId и дата не могут быть null");
+        }
+        lock.readLock().lock();
+        try {
+            DailySumTree balances = table.balances(accountId);
+            return balances == null ? 0 : balances.prefixSum(date.toEpochDay());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long[] dailyBalances(UUID accountId, LocalDate from, LocalDate to) {
+        if (accountId == null) {
+            throw new IllegalArgumentException("accountId не может быть null");
+        }
+        validatePeriod(from, to);
+        lock.readLock().lock();
+        try {
+            DailySumTree balances = table.balances(accountId);
+            if (balances == null) {
+                return new long[Math.toIntExact(to.toEpochDay() - from.toEpochDay() + 1)];
+            }
+            return balances.prefixSums(from.toEpochDay(), to.toEpochDay());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @implNote Новые массивы заполняются без блокировки, commit подменяет их целиком
+     */
+    @Override
+    public ISnapshotWriter<Operation> newSnapshot() {
+        Table staged = new Table(INITIAL_CAPACITY);
+        return new ISnapshotWriter<>() {
+            @Override
+            public void save(Operation operation) {
+                if (operation == null) {
+                    throw new IllegalArgumentException("operation не может быть null");
+                }
+                staged.put(operation);
+            }
+
+            @Override
+            public void commit() {
+                lock.writeLock().lock();
+                try {
+                    table = staged;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        };
+    }
+
+    // вызывается под блокировкой записи
+    private void compactIfSparse() {
+        if (table.deleted > table.live() && table.deleted > INITIAL_CAPACITY
+                || table.descriptionTexts.garbage > table.descriptionTexts.used / 2
+                && table.descriptionTexts.garbage > DESCRIPTION_PAGE_SIZE) {
+            table = table.compacted();
+        }
+    }
+
+    private void validateLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Размер выборки должен быть положительным: " + limit);
+        }
+    }
+
+    private void validatePeriod(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Границы периода не могут быть null");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало периода позже его конца: " + from + " > " + to);
+        }
+    }
+
+    /**
+     * Колонки операций вместе со словарями и индексами. Строка i - это i-е значение каждой колонки
+     */
+    private static final class Table {
+        private long[] idMsb;
+        private long[] idLsb;
+        private int[] accounts;
+        private int[] categories;
+        private int[] days;
+        private long[] amounts;
+        // ordinal типа + 1, DELETED - удалённая строка
+        private byte[] types;
+        // индекс валюты в currencyCodes (без знака)
+        private byte[] currencies;
+        // смещение описания в descriptionTexts, NO_DESCRIPTION - описания нет
+        private long[] descriptions;
+        private final DescriptionHeap descriptionTexts = new DescriptionHeap();
+        private int size;
+        private int deleted;
+
+        private final Interner<UUID> accountIds = new Interner<>();
+        private final Interner<UUID> categoryIds = new Interner<>();
+        private final Interner<Currency> currencyCodes = new Interner<>();
+        private final RowIndex rows;
+        // индекс счёта -> строки этого счёта
+        private final List<IntList> byAccount = new ArrayList<>();
+        // индекс счёта -> суммы операций со знаком по дням, для баланса на дату
+        private final List<DailySumTree> balances = new ArrayList<>();
+        // день от эпохи -> строки этого дня
+        private final NavigableMap<Integer, IntList> byDay = new TreeMap<>();
+
+        Table(int capacity) {
+            idMsb = new long[capacity];
+            idLsb = new long[capacity];
+            accounts = new int[capacity];
+            categories = new int[capacity];
+            days = new int[capacity];
+            amounts = new long[capacity];
+            types = new byte[capacity];
+            currencies = new byte[capacity];
+            descriptions = new long[capacity];
+            rows = new RowIndex(this, capacity);
+        }
+
+        int live() {
+            return size - deleted;
+        }
+
+        int find(UUID id) {
+            int row = rows.find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            return row < 0 || types[row] == DELETED ? -1 : row;
+        }
+
+        /**
+         * Добавляет операцию или заменяет сохранённую ранее. Если счёт и день не изменились,
+         * строка перезаписывается на месте, иначе старая помечается удалённой
+         */
+        void put(Operation operation) {
+            int account = accountIds.intern(operation.getBankAccountId());
+            int day = (int) operation.getDate().toEpochDay();
+            int row = find(operation.getId());
+            boolean moved = row >= 0 && (accounts[row] != account || days[row] != day);
+            // баланс первым: при переполнении суммы таблица ещё не изменена
+            long signed = operation.getSignedAmountMinor();
+            balanceTree(account).add(day, row >= 0 && !moved ? Money.add(signed, -signedAmount(row)) : signed);
+            if (moved) {
+                markDeleted(row);
+                row = -1;
+            }
+            boolean existing = row >= 0;
+            if (!existing) {
+                row = append(operation.getId(), account, day);
+            }
+            categories[row] = operation.getCategoryId() == null ? NO_CATEGORY : categoryIds.intern(operation.getCategoryId());
+            amounts[row] = operation.getAmountMinor();
+            types[row] = (byte) (operation.getType().ordinal() + 1);
+            currencies[row] = (byte) internCurrency(operation.getCurrency());
+            String description = operation.getDescription();
+            if (!existing || !Objects.equals(description, description(row))) {
+                if (existing) {
+                    descriptionTexts.release(descriptions[row]);
+                }
+                descriptions[row] = description == null ? NO_DESCRIPTION : descriptionTexts.append(description);
+            }
+        }
+
+        private long signedAmount(int row) {
+            return OPERATION_TYPES[types[row] - 1].getBalanceMultiplier() * amounts[row];
+        }
+
+        private DailySumTree balanceTree(int account) {
+            while (balances.size() <= account) {
+                balances.add(new DailySumTree());
+            }
+            return balances.get(account);
+        }
+
+        DailySumTree balances(UUID accountId) {
+            int account = accountIds.find(accountId);
+            return account < 0 || account >= balances.size() ? null : balances.get(account);
+        }
+
+        private String description(int row) {
+            return descriptionTexts.get(descriptions[row]);
+        }
+
+        private int internCurrency(Currency currency) {
+            int index = currencyCodes.intern(currency);
+            if (index > 0xFF) {
+                throw new IllegalArgumentException("Слишком много разных валют в хранилище: " + currency);
+            }
+            return index;
+        }
+
+        void remove(UUID id) {
+            int row = find(id);
+            if (row >= 0) {
+                markDeleted(row);
+            }
+        }
+
+        Operation view(int row) {
+            return Operation.restore(
+                    new UUID(idMsb[row], idLsb[row]),
+                    OPERATION_TYPES[types[row] - 1],
+                    accountIds.get(accounts[row]),
+                    Money.toBigDecimal(amounts[row]),
+                    currencyCodes.get(currencies[row] & 0xFF),
+                    LocalDate.ofEpochDay(days[row]),
+                    description(row),
+                    categories[row] == NO_CATEGORY ? null : categoryIds.get(categories[row]));
+        }
+
+        /**
+         * Сравнение строк в порядке {@link OperationCursor#ORDER}: день, затем ID как у {@link UUID#compareTo}
+         */
+        int compareRows(int a, int b) {
+            int byDay = Integer.compare(days[a], days[b]);
+            if (byDay != 0) {
+                return byDay;
+            }
+            int byMsb = Long.compare(idMsb[a], idMsb[b]);
+            return byMsb != 0 ? byMsb : Long.compare(idLsb[a], idLsb[b]);
+        }
+
+        boolean isAfter(int row, OperationCursor cursor) {
+            int byDay = Integer.compare(days[row], (int) cursor.getDate().toEpochDay());
+            if (byDay != 0) {
+                return byDay > 0;
+            }
+            UUID id = cursor.getId();
+            int byMsb = Long.compare(idMsb[row], id.getMostSignificantBits());
+            return byMsb != 0 ? byMsb > 0 : Long.compare(idLsb[row], id.getLeastSignificantBits()) > 0;
+        }
+
+        Collection<IntList> daysBetween(LocalDate from, LocalDate to) {
+            return byDay.subMap((int) from.toEpochDay(), true, (int) to.toEpochDay(), true).values();
+        }
+
+        /**
+         * Копия без удалённых строк; описания удалённых и перезаписанных строк при этом
+         * тоже выбрасываются
+         */
+        Table compacted() {
+            Table copy = new Table(Math.max(INITIAL_CAPACITY, live()));
+            for (int row = 0; row < size; row++) {
+                if (types[row] != DELETED) {
+                    copy.put(view(row));
+                }
+            }
+            return copy;
+        }
+
+        private int append(UUID id, int account, int day) {
+            if (size == idMsb.length) {
+                grow();
+            }
+            int row = size++;
+            idMsb[row] = id.getMostSignificantBits();
+            idLsb[row] = id.getLeastSignificantBits();
+            accounts[row] = account;
+            days[row] = day;
+            while (byAccount.size() <= account) {
+                byAccount.add(new IntList());
+            }
+            byAccount.get(account).add(row);
+            byDay.computeIfAbsent(day, (d) -> new IntList()).add(row);
+            rows.put(row);
+            return row;
+        }
+
+        // строка остаётся в индексах и отфильтровывается при чтении до перестройки таблицы
+        private void markDeleted(int row) {
+            balances.get(accounts[row]).add(days[row], -signedAmount(row));
+            descriptionTexts.release(descriptions[row]);
+            types[row] = DELETED;
+            deleted++;
+        }
+
+        private void grow() {
+            int capacity = idMsb.length * 2;
+            idMsb = Arrays.copyOf(idMsb, capacity);
+            idLsb = Arrays.copyOf(idLsb, capacity);
+            accounts = Arrays.copyOf(accounts, capacity);
+            categories = Arrays.copyOf(categories, capacity);
+            days = Arrays.copyOf(days, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            types = Arrays.copyOf(types, capacity);
+            currencies = Arrays.copyOf(currencies, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+        }
+    }
+
+    /**
+     * Описания подряд в страницах по {@value #DESCRIPTION_PAGE_SIZE} байт: длина (2 байта) и UTF-8.
+     * Запись не пересекает границу страницы; смещение - номер страницы в старших битах и позиция
+     * в странице в младших. Перезаписанные описания остаются мусором до перестройки таблицы
+     */
+    private static final class DescriptionHeap {
+        private static final int PAGE_BITS = Integer.numberOfTrailingZeros(DESCRIPTION_PAGE_SIZE);
+
+        private byte[][] pages = new byte[0][];
+        // позиция записи в последней странице
+        private int position = DESCRIPTION_PAGE_SIZE;
+        // байты всех записей и байты записей, на которые уже не ссылается ни одна живая строка
+        private long used;
+        private long garbage;
+
+        long append(String description) {
+            byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+            int length = 2 + bytes.length;
+            if (bytes.length > 0xFFFF) {
+                throw new IllegalArgumentException("Слишком длинное описание: " + bytes.length + " байт");
+            }
+            if (position + length > DESCRIPTION_PAGE_SIZE) {
+                // новая страница; прежние не копируются, копируется только массив ссылок на них
+                pages = Arrays.copyOf(pages, pages.length + 1);
+                pages[pages.length - 1] = new byte[DESCRIPTION_PAGE_SIZE];
+                position = 0;
+            }
+            byte[] page = pages[pages.length - 1];
+            page[position] = (byte) (bytes.length >>> 8);
+            page[position + 1] = (byte) bytes.length;
+            System.arraycopy(bytes, 0, page, position + 2, bytes.length);
+            long offset = (long) (pages.length - 1) << PAGE_BITS | position;
+            position += length;
+            used += length;
+            return offset;
+        }
+
+        String get(long offset) {
+            if (offset == NO_DESCRIPTION) {
+                return null;
+            }
+            byte[] page = pages[(int) (offset >>> PAGE_BITS)];
+            int start = (int) (offset & (DESCRIPTION_PAGE_SIZE - 1));
+            return new String(page, start + 2, length(page, start), StandardCharsets.UTF_8);
+        }
+
+        void release(long offset) {
+            if (offset != NO_DESCRIPTION) {
+                garbage += 2 + length(pages[(int) (offset >>> PAGE_BITS)], (int) (offset & (DESCRIPTION_PAGE_SIZE - 1)));
+            }
+        }
+
+        private static int length(byte[] page, int start) {
+            return (page[start] & 0xFF) << 8 | page[start + 1] & 0xFF;
+        }
+    }
+
+    /**
+     * Словарь значение -> индекс; значения хранятся в одном экземпляре
+     */
+    private static final class Interner<T> {
+        private final Map<T, Integer> indexes = new HashMap<>();
+        private final List<T> values = new ArrayList<>();
+
+        int intern(T value) {
+            return indexes.computeIfAbsent(value, (v) -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        int find(T value) {
+            return indexes.getOrDefault(value, -1);
+        }
+
+        T get(int index) {
+            return values.get(index);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+
+    /**
+     * Растущий массив int без упаковки в Integer
+     */
+    private static final class IntList {
+        private int[] data = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        int get(int i) {
+            return data[i];
+        }
+    }
+
+    /**
+     * Хеш-таблица с открытой адресацией ID -> номер строки, ключи читаются из колонок ID.
+     * Повторное сохранение ID перенаправляет ячейку на новую строку
+     */
+    private static final class RowIndex {
+        private final Table table;
+        // номер строки + 1, 0 - пустая ячейка
+        private int[] slots;
+        private int size;
+
+        RowIndex(Table table, int expected) {
+            this.table = table;
+            this.slots = new int[Integer.highestOneBit(expected * 2 - 1) << 1];
+        }
+
+        int find(long msb, long lsb) {
+            int mask = slots.length - 1;
+            for (int i = hash(msb, lsb) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                int row = slots[i] - 1;
+                if (table.idMsb[row] == msb && table.idLsb[row] == lsb) {
+                    return row;
+                }
+            }
+            return -1;
+        }
+
+        void put(int row) {
+            if ((size + 1) * 2 > slots.length) {
+                rehash();
+            }
+            long msb = table.idMsb[row];
+            long lsb = table.idLsb[row];
+            int mask = slots.length - 1;
+            int i = hash(msb, lsb) & mask;
+            for (; slots[i] != 0; i = (i + 1) & mask) {
+                int existing = slots[i] - 1;
+                if (table.idMsb[existing] == msb && table.idLsb[existing] == lsb) {
+                    slots[i] = row + 1;
+                    return;
+                }
+            }
+            slots[i] = row + 1;
+            size++;
+        }
+
+        private void rehash() {
+            int[] old = slots;
+            slots = new int[old.length * 2];
+            int mask = slots.length - 1;
+            for (int slot : old) {
+                if (slot == 0) {
+                    continue;
+                }
+                int row = slot - 1;
+                int i = hash(table.idMsb[row], table.idLsb[row]) & mask;
+                while (slots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = slot;
+            }
+        }
+
+        private static int hash(long msb, long lsb) {
+            long h = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
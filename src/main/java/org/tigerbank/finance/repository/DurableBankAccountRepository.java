@@ -0,0 +1,114 @@
+package org.tigerbank.finance.repository;
+
+import org.tigerbank.finance.model.BankAccount;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Репозиторий счетов с журналом: изменения сначала применяются в памяти, затем записываются
+ * в {@link RepositoryJournal}, и вызов возвращается только после сброса журнала на диск.
+ * Если запись в журнал не удалась, изменение в памяти откатывается к прежней версии сущности.
+ * В памяти лежат только копии сущностей, и наружу выдаются тоже копии: экземпляр, изменённый
+ * на месте (например, баланс в {@code BalanceRecalculator}), не меняет память до save,
+ * поэтому откат при сбое журнала возвращает именно то состояние, что записано в журнал.
+ * Журнал пишется после памяти, а не до неё: контрольная точка снимает память после ротации
+ * журнала, и запись, попавшая в старый сегмент раньше, чем в память, пропала бы вместе с ним
+ */
+@Repository
+@Primary
+@ConditionalOnProperty(name = "finance.wal.directory")
+public class DurableBankAccountRepository implements IBankAccountRepository {
+    private final InMemoryBankAccountRepository delegate;
+    private final RepositoryJournal journal;
+
+    public DurableBankAccountRepository(InMemoryBankAccountRepository delegate, RepositoryJournal journal) {
+        this.delegate = delegate;
+        this.journal = journal;
+    }
+
+    @Override
+    public BankAccount save(BankAccount account) {
+        Optional<BankAccount> previous = delegate.findById(account.getId());
+        delegate.save(account.copy());
+        try {
+            journal.logSave(account);
+        } catch (RuntimeException e) {
+            restore(account.getId(), previous);
+            throw e;
+        }
+        return account;
+    }
+
+    @Override
+    public Optional<BankAccount> findById(UUID id) {
+        return delegate.findById(id).map(BankAccount::copy);
+    }
+
+    @Override
+    public List<BankAccount> findAll() {
+        return streamAll().collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<BankAccount> streamAll() {
+        return delegate.streamAll().map(BankAccount::copy);
+    }
+
+    @Override
+    public void deleteById(UUID id) {
+        Optional<BankAccount> previous = delegate.findById(id);
+        delegate.deleteById(id);
+        try {
+            journal.logAccountDelete(id);
+        } catch (RuntimeException e) {
+            restore(id, previous);
+            throw e;
+        }
+    }
+
+    private void restore(UUID id, Optional<BankAccount> previous) {
+        if (previous.isPresent()) {
+            delegate.save(previous.get());
+        } else {
+            delegate.deleteById(id);
+        }
+    }
+
+    /**
+     * @implNote Подмена содержимого не пишется в журнал построчно: после commit
+     * сразу делается контрольная точка (она снимает все репозитории, поэтому publish её не делает)
+     */
+    @Override
+    public ISnapshotWriter<BankAccount> newSnapshot() {
+        ISnapshotWriter<BankAccount> staged = delegate.newSnapshot();
+        return new ISnapshotWriter<>() {
+            @Override
+            public void save(BankAccount account) {
+                staged.save(account);
+            }
+
+            @Override
+            public void publish() {
+                staged.commit();
+            }
+
+            @Override
+            public void commit() {
+                staged.commit();
+                journal.checkpointAfterSnapshot();
+            }
+
+            @Override
+            public void discard() {
+                staged.discard();
+            }
+        };
+    }
+}
@@ -0,0 +1,114 @@
+package org.tigerbank.finance.repository;
+
+import org.tigerbank.finance.model.Category;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Репозиторий категорий с журналом: изменения сначала применяются в памяти, затем записываются
+ * в {@link RepositoryJournal}, и вызов возвращается только после сброса журнала на диск.
+ * Если запись в журнал не удалась, изменение в памяти откатывается к прежней версии сущности.
+ * В памяти лежат только копии сущностей, и наружу выдаются тоже копии: экземпляр, изменённый
+ * на месте (например, баланс в {@code BalanceRecalculator}), не меняет память до save,
+ * поэтому откат при сбое журнала возвращает именно то состояние, что записано в журнал.
+ * Журнал пишется после памяти, а не до неё: контрольная точка снимает память после ротации
+ * журнала, и запись, попавшая в старый сегмент раньше, чем в память, пропала бы вместе с ним
+ */
+@Repository
+@Primary
+@ConditionalOnProperty(name = "finance.wal.directory")
+public class DurableCategoryRepository implements ICategoryRepository {
+    private final InMemoryCategoryRepository delegate;
+    private final RepositoryJournal journal;
+
+    public DurableCategoryRepository(InMemoryCategoryRepository delegate, RepositoryJournal journal) {
+        this.delegate = delegate;
+        this.journal = journal;
+    }
+
+    @Override
+    public Category save(Category category) {
+        Optional<Category> previous = delegate.findById(category.getId());
+        delegate.save(category.copy());
+        try {
+            journal.logSave(category);
+        } catch (RuntimeException e) {
+            restore(category.getId(), previous);
+            throw e;
+        }
+        return category;
+    }
+
+    @Override
+    public Optional<Category> findById(UUID id) {
+        return delegate.findById(id).map(Category::copy);
+    }
+
+    @Override
+    public List<Category> findAll() {
+        return streamAll().collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<Category> streamAll() {
+        return delegate.streamAll().map(Category::copy);
+    }
+
+    @Override
+    public void deleteById(UUID id) {
+        Optional<Category> previous = delegate.findById(id);
+        delegate.deleteById(id);
+        try {
+            journal.logCategoryDelete(id);
+        } catch (RuntimeException e) {
+            restore(id, previous);
+            throw e;
+        }
+    }
+
+    private void restore(UUID id, Optional<Category> previous) {
+        if (previous.isPresent()) {
+            delegate.save(previous.get());
+        } else {
+            delegate.deleteById(id);
+        }
+    }
+
+    /**
+     * @implNote Подмена содержимого не пишется в журнал построчно: после commit
+     * сразу делается контрольная точка (она снимает все репозитории, поэтому publish её не делает)
+     */
+    @Override
+    public ISnapshotWriter<Category> newSnapshot() {
+        ISnapshotWriter<Category> staged = delegate.newSnapshot();
+        return new ISnapshotWriter<>() {
+            @Override
+            public void save(Category category) {
+                staged.save(category);
+            }
+
+            @Override
+            public void publish() {
+                staged.commit();
+            }
+
+            @Override
+            public void commit() {
+                staged.commit();
+                journal.checkpointAfterSnapshot();
+            }
+
+            @Override
+            public void discard() {
+                staged.discard();
+            }
+        };
+    }
+}
@@ -0,0 +1,188 @@
+package org.tigerbank.finance.repository;
+
+import org.tigerbank.finance.dto.DailyRollup;
+import org.tigerbank.finance.dto.OperationCursor;
+import org.tigerbank.finance.dto.TimeGranularity;
+import org.tigerbank.finance.model.Operation;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Репозиторий операций с журналом: изменения сначала применяются в памяти, затем записываются
+ * в {@link RepositoryJournal}, и вызов возвращается только после сброса журнала на диск.
+ * Если запись в журнал не удалась, изменение в памяти откатывается к прежней версии операции
+ * (см. {@link DurableBankAccountRepository}). Как и там, хранилище получает и выдаёт только копии
+ * операций. Для {@link CompactOperationRepository} это лишняя копия при каждом чтении: он и так
+ * собирает операции из колонок заново.
+ * Хранилищем в памяти служит бин operationStore - {@link InMemoryOperationRepository}
+ * или {@link CompactOperationRepository}
+ */
+@Repository
+@Primary
+@ConditionalOnProperty(name = "finance.wal.directory")
+public class DurableOperationRepository implements IOperationRepository {
+    private final IOperationRepository delegate;
+    private final RepositoryJournal journal;
+
+    public DurableOperationRepository(@Qualifier("operationStore") IOperationRepository delegate, RepositoryJournal journal) {
+        this.delegate = delegate;
+        this.journal = journal;
+    }
+
+    @Override
+    public Operation save(Operation operation) {
+        Optional<Operation> previous = delegate.findById(operation.getId());
+        delegate.save(operation.copy());
+        try {
+            journal.logSave(operation);
+        } catch (RuntimeException e) {
+            restore(operation.getId(), previous);
+            throw e;
+        }
+        return operation;
+    }
+
+    /**
+     * @implNote Вся пачка сбрасывается на диск одним fsync
+     */
+    @Override
+    public void saveAll(Collection<Operation> operations) {
+        Map<UUID, Optional<Operation>> previous = new LinkedHashMap<>();
+        for (Operation operation : operations) {
+            previous.putIfAbsent(operation.getId(), delegate.findById(operation.getId()));
+        }
+        delegate.saveAll(operations.stream().map(Operation::copy).toList());
+        try {
+            journal.logSaveAll(operations);
+        } catch (RuntimeException e) {
+            previous.forEach(this::restore);
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<Operation> findById(UUID id) {
+        return delegate.findById(id).map(Operation::copy);
+    }
+
+    @Override
+    public List<Operation> findAll() {
+        return copies(delegate.findAll());
+    }
+
+    @Override
+    public Stream<Operation> streamAll() {
+        return delegate.streamAll().map(Operation::copy);
+    }
+
+    @Override
+    public void deleteById(UUID id) {
+        Optional<Operation> previous = delegate.findById(id);
+        delegate.deleteById(id);
+        try {
+            journal.logOperationDelete(id);
+        } catch (RuntimeException e) {
+            restore(id, previous);
+            throw e;
+        }
+    }
+
+    private static List<Operation> copies(List<Operation> operations) {
+        List<Operation> result = new ArrayList<>(operations.size());
+        for (Operation operation : operations) {
+            result.add(operation.copy());
+        }
+        return result;
+    }
+
+    private void restore(UUID id, Optional<Operation> previous) {
+        if (previous.isPresent()) {
+            delegate.save(previous.get());
+        } else {
+            delegate.deleteById(id);
+        }
+    }
+
+    @Override
+    public List<Operation> findByAccountId(UUID accountId) {
+        return copies(delegate.findByAccountId(accountId));
+    }
+
+    @Override
+    public List<Operation> findByPeriod(LocalDate from, LocalDate to) {
+        return copies(delegate.findByPeriod(from, to));
+    }
+
+    @Override
+    public Stream<Operation> streamByAccountId(UUID accountId, OperationCursor after, int limit) {
+        return delegate.streamByAccountId(accountId, after, limit).map(Operation::copy);
+    }
+
+    @Override
+    public Stream<Operation> streamByPeriod(LocalDate from, LocalDate to, OperationCursor after, int limit) {
+        return delegate.streamByPeriod(from, to, after, limit).map(Operation::copy);
+    }
+
+    @Override
+    public List<DailyRollup> findDailyRollups(LocalDate from, LocalDate to) {
+        return delegate.findDailyRollups(from, to);
+    }
+
+    @Override
+    public List<DailyRollup> findRollups(LocalDate from, LocalDate to, TimeGranularity granularity) {
+        return delegate.findRollups(from, to, granularity);
+    }
+
+    @Override
+    public long balanceAt(UUID accountId, LocalDate date) {
+        return delegate.balanceAt(accountId, date);
+    }
+
+    @Override
+    public long[] dailyBalances(UUID accountId, LocalDate from, LocalDate to) {
+        return delegate.dailyBalances(accountId, from, to);
+    }
+
+    /**
+     * @implNote Подмена содержимого не пишется в журнал построчно: после commit
+     * сразу делается контрольная точка (она снимает все репозитории, поэтому publish её не делает)
+     */
+    @Override
+    public ISnapshotWriter<Operation> newSnapshot() {
+        ISnapshotWriter<Operation> staged = delegate.newSnapshot();
+        return new ISnapshotWriter<>() {
+            @Override
+            public void save(Operation operation) {
+                staged.save(operation);
+            }
+
+            @Override
+            public void publish() {
+                staged.commit();
+            }
+
+            @Override
+            public void commit() {
+                staged.commit();
+                journal.checkpointAfterSnapshot();
+            }
+
+            @Override
+            public void discard() {
+                staged.discard();
+            }
+        };
+    }
+}
@@ -0,0 +1,87 @@
+package org.tigerbank.finance.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Таблица курсов из локального файла (свойство finance.fx.rates-file), загружается целиком при старте.
+ * <pre>
+ * # комментарий
+ * дата;из;в;курс
+ * 2024-01-01;USD;RUB;89.6883
+ * </pre>
+ * Курс действует с указанной даты до следующей записи той же пары. Если прямой пары нет,
+ * используется обратная (1 / курс). Без файла таблица пуста - подходит, когда все счета
+ * в валюте отчётов.
+ */
+@Component
+public class FileExchangeRateProvider implements IExchangeRateProvider {
+    private final Map<CurrencyPair, NavigableMap<LocalDate, BigDecimal>> rates = new HashMap<>();
+
+    public FileExchangeRateProvider(@Value("${finance.fx.rates-file:}") String file) throws IOException {
+        if (file != null && !file.isBlank()) {
+            load(Path.of(file));
+        }
+    }
+
+    @Override
+    public Optional<BigDecimal> findRate(Currency from, Currency to, LocalDate date) {
+        if (from == null || to == null || date == null) {
+            throw new IllegalArgumentException("Валюты и дата курса не могут быть null");
+        }
+        if (from.equals(to)) {
+            return Optional.of(BigDecimal.ONE);
+        }
+        Map.Entry<LocalDate, BigDecimal> direct = floor(new CurrencyPair(from, to), date);
+        if (direct != null) {
+            return Optional.of(direct.getValue());
+        }
+        Map.Entry<LocalDate, BigDecimal> inverse = floor(new CurrencyPair(to, from), date);
+        return inverse == null
+                ? Optional.empty()
+                : Optional.of(BigDecimal.ONE.divide(inverse.getValue(), MathContext.DECIMAL64));
+    }
+
+    private Map.Entry<LocalDate, BigDecimal> floor(CurrencyPair pair, LocalDate date) {
+        NavigableMap<LocalDate, BigDecimal> history = rates.get(pair);
+        return history == null ? null : history.floorEntry(date);
+    }
+
+    private void load(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(";");
+            if (fields.length != 4) {
+                throw new IllegalArgumentException("Строка " + (i + 1) + " файла курсов: ожидается дата;из;в;курс");
+            }
+            try {
+                LocalDate date = LocalDate.parse(fields[0].trim());
+                Currency from = Currency.getInstance(fields[1].trim());
+                Currency to = Currency.getInstance(fields[2].trim());
+                BigDecimal rate = new BigDecimal(fields[3].trim());
+                if (rate.signum() <= 0) {
+                    throw new IllegalArgumentException("курс должен быть положительным");
+                }
+                rates.computeIfAbsent(new CurrencyPair(from, to), (pair) -> new TreeMap<>()).put(date, rate);
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new IllegalArgumentException("Строка " + (i + 1) + " файла курсов: " + e.getMessage());
+            }
+        }
+    }
+
+    private record CurrencyPair(Currency from, Currency to) {
+    }
+}
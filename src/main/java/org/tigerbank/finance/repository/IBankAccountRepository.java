@@ -5,10 +5,25 @@ import org.tigerbank.finance.model.BankAccount;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface IBankAccountRepository {
     BankAccount save(BankAccount account);
     Optional<BankAccount> findById (UUID id);
     List<BankAccount> findAll();
+
+    /**
+     * Ленивый обход всех сущностей без копирования в промежуточный список
+     */
+    default Stream<BankAccount> streamAll() {
+        return findAll().stream();
+    }
+
     void deleteById(UUID id);
+
+    /**
+     * Начинает построение нового содержимого репозитория (например, при импорте)
+     * @return снимок, который после commit заменит всё текущее содержимое
+     */
+    ISnapshotWriter<BankAccount> newSnapshot();
 }
@@ -5,10 +5,25 @@ import org.tigerbank.finance.model.Category;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface ICategoryRepository {
     Category save(Category category);
     Optional<Category> findById(UUID id);
     List<Category> findAll();
+
+    /**
+     * Ленивый обход всех сущностей без копирования в промежуточный список
+     */
+    default Stream<Category> streamAll() {
+        return findAll().stream();
+    }
+
     void deleteById(UUID id);
+
+    /**
+     * Начинает построение нового содержимого репозитория (например, при импорте)
+     * @return снимок, который после commit заменит всё текущее содержимое
+     */
+    ISnapshotWriter<Category> newSnapshot();
 }
@@ -0,0 +1,17 @@
+package org.tigerbank.finance.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Currency;
+import java.util.Optional;
+
+/**
+ * Источник курсов валют
+ */
+public interface IExchangeRateProvider {
+    /**
+     * Курс на дату: сколько единиц валюты to стоит одна единица валюты from
+     * @return курс, действовавший на дату, или пусто, если курса нет
+     */
+    Optional<BigDecimal> findRate(Currency from, Currency to, LocalDate date);
+}
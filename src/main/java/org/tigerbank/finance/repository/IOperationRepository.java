@@ -1,17 +1,197 @@
 package org.tigerbank.finance.repository;
 
+import org.tigerbank.finance.dto.DailyRollup;
+import org.tigerbank.finance.dto.OperationCursor;
+import org.tigerbank.finance.dto.OperationPage;
+import org.tigerbank.finance.dto.TimeGranularity;
+import org.tigerbank.finance.model.Money;
 import org.tigerbank.finance.model.Operation;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface IOperationRepository {
     Operation save(Operation operation);
+
+    /**
+     * Пакетное сохранение операций
+     * @param operations сохраняемые операции
+     */
+    default void saveAll(Collection<Operation> operations) {
+        operations.forEach(this::save);
+    }
+
     Optional<Operation> findById(UUID id);
     List<Operation> findAll();
+
+    /**
+     * Ленивый обход всех сущностей без копирования в промежуточный список
+     */
+    default Stream<Operation> streamAll() {
+        return findAll().stream();
+    }
+
     void deleteById(UUID id);
     List<Operation> findByAccountId(UUID accountId);
+
+    /**
+     * Операции за период. Обе границы включаются в выборку
+     * @param from первый день периода (включительно)
+     * @param to последний день периода (включительно)
+     * @throws IllegalArgumentException если границы null или from позже to
+     */
     List<Operation> findByPeriod(LocalDate from, LocalDate to);
+
+    /**
+     * Ленивая выборка операций счёта в порядке {@link OperationCursor#ORDER}
+     * @param after позиция, после которой начинается выборка; null - с начала
+     * @param limit наибольшее число операций в потоке
+     * @throws IllegalArgumentException если accountId null или limit не положителен
+     */
+    default Stream<Operation> streamByAccountId(UUID accountId, OperationCursor after, int limit) {
+        checkStreamLimit(limit);
+        return findByAccountId(accountId).stream()
+                .filter((operation) -> after == null || after.isBefore(operation))
+                .sorted(OperationCursor.ORDER)
+                .limit(limit);
+    }
+
+    /**
+     * Ленивая выборка операций за период в порядке {@link OperationCursor#ORDER}.
+     * Обе границы периода включаются в выборку
+     * @param after позиция, после которой начинается выборка; null - с начала периода
+     * @param limit наибольшее число операций в потоке
+     * @throws IllegalArgumentException если границы null, from позже to или limit не положителен
+     */
+    default Stream<Operation> streamByPeriod(LocalDate from, LocalDate to, OperationCursor after, int limit) {
+        checkStreamLimit(limit);
+        return findByPeriod(from, to).stream()
+                .filter((operation) -> after == null || after.isBefore(operation))
+                .sorted(OperationCursor.ORDER)
+                .limit(limit);
+    }
+
+    /**
+     * Страница операций счёта
+     * @param after позиция из {@link OperationPage#getNext()} предыдущей страницы; null - первая страница
+     * @param limit размер страницы, от 1 до {@link OperationPage#MAX_SIZE}
+     */
+    default OperationPage findPageByAccountId(UUID accountId, OperationCursor after, int limit) {
+        OperationPage.validateLimit(limit);
+        try (Stream<Operation> operations = streamByAccountId(accountId, after, limit + 1)) {
+            return OperationPage.of(operations.toList(), limit);
+        }
+    }
+
+    /**
+     * Страница операций за период. Обе границы периода включаются в выборку
+     * @param after позиция из {@link OperationPage#getNext()} предыдущей страницы; null - первая страница
+     * @param limit размер страницы, от 1 до {@link OperationPage#MAX_SIZE}
+     */
+    default OperationPage findPageByPeriod(LocalDate from, LocalDate to, OperationCursor after, int limit) {
+        OperationPage.validateLimit(limit);
+        try (Stream<Operation> operations = streamByPeriod(from, to, after, limit + 1)) {
+            return OperationPage.of(operations.toList(), limit);
+        }
+    }
+
+    /**
+     * Дневные агрегаты за период: по одному на каждое сочетание (день, категория, тип, валюта),
+     * в котором есть операции. Обе границы включаются в выборку
+     * @param from первый день периода (включительно)
+     * @param to последний день периода (включительно)
+     * @throws IllegalArgumentException если границы null или from позже to
+     */
+    default List<DailyRollup> findDailyRollups(LocalDate from, LocalDate to) {
+        Map<List<Object>, DailyRollup> rollups = new HashMap<>();
+        for (Operation operation : findByPeriod(from, to)) {
+            rollups.merge(Arrays.asList(operation.getDate(), operation.getCategoryId(), operation.getType(),
+                            operation.getCurrency()),
+                    DailyRollup.of(operation), DailyRollup::plus);
+        }
+        return new ArrayList<>(rollups.values());
+    }
+
+    /**
+     * Агрегаты за период, сведённые в интервалы: по одному на каждое сочетание
+     * (интервал, категория, тип, валюта). Дата агрегата - первый день интервала;
+     * неполные интервалы на краях периода содержат только дни периода
+     * @param from первый день периода (включительно)
+     * @param to последний день периода (включительно)
+     * @param granularity размер интервала
+     * @throws IllegalArgumentException если границы null или from позже to
+     */
+    default List<DailyRollup> findRollups(LocalDate from, LocalDate to, TimeGranularity granularity) {
+        if (granularity == null) {
+            throw new IllegalArgumentException("Размер интервала не может быть null");
+        }
+        return granularity.rollUp(findDailyRollups(from, to));
+    }
+
+    /**
+     * Баланс счёта на конец дня date по его операциям: сумма операций со знаком с датой не позже date
+     * @return баланс в копейках, 0 для счёта без операций
+     * @throws IllegalArgumentException если accountId или date равны null
+     */
+    default long balanceAt(UUID accountId, LocalDate date) {
+        if (date == null) {
+            throw new IllegalArgumentException("Дата не может быть null");
+        }
+        long balance = 0;
+        for (Operation operation : findByAccountId(accountId)) {
+            if (!operation.getDate().isAfter(date)) {
+                balance = Money.add(balance, operation.getSignedAmountMinor());
+            }
+        }
+        return balance;
+    }
+
+    /**
+     * Баланс счёта на конец каждого дня периода, см. {@link #balanceAt}
+     * @return элемент i - баланс в копейках на день from + i
+     * @throws IllegalArgumentException если аргументы null или from позже to
+     */
+    default long[] dailyBalances(UUID accountId, LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Границы периода не могут быть null");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало периода позже его конца: " + from + " > " + to);
+        }
+        long[] balances = new long[Math.toIntExact(to.toEpochDay() - from.toEpochDay() + 1)];
+        long opening = 0;
+        for (Operation operation : findByAccountId(accountId)) {
+            if (operation.getDate().isBefore(from)) {
+                opening = Money.add(opening, operation.getSignedAmountMinor());
+            } else if (!operation.getDate().isAfter(to)) {
+                int day = (int) (operation.getDate().toEpochDay() - from.toEpochDay());
+                balances[day] = Money.add(balances[day], operation.getSignedAmountMinor());
+            }
+        }
+        for (int i = 0; i < balances.length; i++) {
+            opening = Money.add(opening, balances[i]);
+            balances[i] = opening;
+        }
+        return balances;
+    }
+
+    /**
+     * Начинает построение нового содержимого репозитория (например, при импорте)
+     * @return снимок, который после commit заменит всё текущее содержимое
+     */
+    ISnapshotWriter<Operation> newSnapshot();
+
+    private static void checkStreamLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Размер выборки должен быть положительным: " + limit);
+        }
+    }
 }
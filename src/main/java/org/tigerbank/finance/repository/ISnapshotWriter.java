@@ -0,0 +1,41 @@
+package org.tigerbank.finance.repository;
+
+import java.util.Collection;
+
+/**
+ * Новое содержимое репозитория, которое наполняется в стороне от текущего
+ * и подменяет его целиком одной атомарной операцией.
+ * До вызова {@link #commit()} читатели репозитория видят прежние данные.
+ * Снимок, который не будет применён, отбрасывается через {@link #discard()}.
+ * @param <T> тип сущности репозитория
+ */
+public interface ISnapshotWriter<T> {
+    void save(T entity);
+
+    default void saveAll(Collection<T> entities) {
+        entities.forEach(this::save);
+    }
+
+    /**
+     * Атомарно заменяет содержимое репозитория накопленными сущностями
+     */
+    void commit();
+
+    /**
+     * Подменяет содержимое так же, как {@link #commit()}, но без сопутствующих действий
+     * (контрольной точки журнала). Нужен, когда несколько репозиториев подменяются подряд:
+     * все снимки, кроме последнего, публикуются через publish, а последний - через commit,
+     * и журнал фиксирует подмену всех репозиториев одной контрольной точкой
+     */
+    default void publish() {
+        commit();
+    }
+
+    /**
+     * Отбрасывает накопленные сущности, если снимок не будет применён (например, импорт
+     * прервался ошибкой). Снимку в памяти достаточно стать мусором, хранилище на диске
+     * удаляет построенные файлы. После commit ничего не делает
+     */
+    default void discard() {
+    }
+}
@@ -5,10 +5,12 @@ import org.tigerbank.finance.model.BankAccount;
 import org.springframework.stereotype.Repository;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 @Repository
 public class InMemoryBankAccountRepository implements IBankAccountRepository {
-    private final Map<UUID, BankAccount> storage = new ConcurrentHashMap<>();
+    // подменяется целиком при импорте, см. newSnapshot
+    private volatile Map<UUID, BankAccount> storage = new ConcurrentHashMap<>();
 
     @Override
     public BankAccount save(BankAccount account) {
@@ -26,8 +28,29 @@ public class InMemoryBankAccountRepository implements IBankAccountRepository {
         return new ArrayList<>(storage.values());
     }
 
+    @Override
+    public Stream<BankAccount> streamAll() {
+        return storage.values().stream();
+    }
+
     @Override
     public void deleteById(UUID id) {
         storage.remove(id);
     }
+
+    @Override
+    public ISnapshotWriter<BankAccount> newSnapshot() {
+        Map<UUID, BankAccount> staged = new ConcurrentHashMap<>();
+        return new ISnapshotWriter<>() {
+            @Override
+            public void save(BankAccount account) {
+                staged.put(account.getId(), account);
+            }
+
+            @Override
+            public void commit() {
+                storage = staged;
+            }
+        };
+    }
 }
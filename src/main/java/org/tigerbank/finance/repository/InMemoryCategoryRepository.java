@@ -7,10 +7,12 @@ import java.util.UUID;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.*;
+import java.util.stream.Stream;
 
 @Repository
 public class InMemoryCategoryRepository implements  ICategoryRepository {
-    private final Map<UUID, Category> storage = new ConcurrentHashMap<>();
+    // подменяется целиком при импорте, см. newSnapshot
+    private volatile Map<UUID, Category> storage = new ConcurrentHashMap<>();
 
     @Override
     public Category save(Category category) {
@@ -28,8 +30,29 @@ public class InMemoryCategoryRepository implements  ICategoryRepository {
         return new ArrayList<>(storage.values());
     }
 
+    @Override
+    public Stream<Category> streamAll() {
+        return storage.values().stream();
+    }
+
     @Override
     public void deleteById(UUID id) {
         storage.remove(id);
     }
+
+    @Override
+    public ISnapshotWriter<Category> newSnapshot() {
+        Map<UUID, Category> staged = new ConcurrentHashMap<>();
+        return new ISnapshotWriter<>() {
+            @Override
+            public void save(Category category) {
+                staged.put(category.getId(), category);
+            }
+
+            @Override
+            public void commit() {
+                storage = staged;
+            }
+        };
+    }
 }
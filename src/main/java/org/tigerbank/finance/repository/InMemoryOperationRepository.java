@@ -1,21 +1,34 @@
 package org.tigerbank.finance.repository;
 
+import org.tigerbank.finance.dto.DailyRollup;
+import org.tigerbank.finance.dto.OperationCursor;
+import org.tigerbank.finance.dto.TimeGranularity;
 import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.model.OperationType;
+import org.tigerbank.finance.storage.DailySumTree;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
 
 
-@Repository
+@Repository("operationStore")
+@ConditionalOnProperty(name = "finance.storage.operations", havingValue = "map", matchIfMissing = true)
 public class InMemoryOperationRepository implements IOperationRepository {
-    private Map<UUID, Operation> storage = new ConcurrentHashMap<>();
+    // всё содержимое репозитория (хранилище + индексы) подменяется целиком при импорте
+    private volatile Store store = new Store();
 
     @Override
     public Operation save(Operation operation) {
-        storage.put(operation.getId(), operation);
+        if (operation == null) {
+            throw new IllegalArgumentException("operation не может быть null");
+        }
+        store.save(operation);
         return operation;
     }
 
@@ -24,12 +37,17 @@ public class InMemoryOperationRepository implements IOperationRepository {
         if (id == null) {
             throw new IllegalArgumentException("operationId не может быть null");
         }
-        return Optional.ofNullable(storage.get(id));
+        return Optional.ofNullable(store.storage.get(id));
     }
 
     @Override
     public List<Operation> findAll() {
-        return new ArrayList<>(storage.values());
+        return new ArrayList<>(store.storage.values());
+    }
+
+    @Override
+    public Stream<Operation> streamAll() {
+        return store.storage.values().stream();
     }
 
     @Override
@@ -37,26 +55,316 @@ public class InMemoryOperationRepository implements IOperationRepository {
         if (id == null) {
             throw new IllegalArgumentException("operationId не может быть null");
         }
-        storage.remove(id);
+        store.delete(id);
     }
 
+    /**
+     * @implNote Стоимость O(число операций счёта) за счёт вторичного индекса
+     */
     @Override
     public List<Operation> findByAccountId(UUID accountId) {
         if (accountId == null) {
             throw new IllegalArgumentException("accountId не может быть null");
         }
 
-        return storage.values()
+        Map<OperationCursor, Operation> accountOps = store.byAccount.get(accountId);
+        return accountOps == null ? new ArrayList<>() : new ArrayList<>(accountOps.values());
+    }
+
+    /**
+     * @implNote Операции счёта лежат в skip-list по (дата, ID): поиск начала выборки
+     * стоит O(log n), дальше поток читает ровно limit элементов
+     */
+    @Override
+    public Stream<Operation> streamByAccountId(UUID accountId, OperationCursor after, int limit) {
+        if (accountId == null) {
+            throw new IllegalArgumentException("accountId не может быть null");
+        }
+        validateLimit(limit);
+
+        ConcurrentNavigableMap<OperationCursor, Operation> accountOps = store.byAccount.get(accountId);
+        if (accountOps == null) {
+            return Stream.empty();
+        }
+        return (after == null ? accountOps : accountOps.tailMap(after, false)).values().stream().limit(limit);
+    }
+
+    /**
+     * @implNote Обход начинается с дня позиции и внутри дня - сразу после её ID
+     */
+    @Override
+    public Stream<Operation> streamByPeriod(LocalDate from, LocalDate to, OperationCursor after, int limit) {
+        validatePeriod(from, to);
+        validateLimit(limit);
+
+        LocalDate start = after == null || after.getDate().isBefore(from) ? from : after.getDate();
+        if (start.isAfter(to)) {
+            return Stream.empty();
+        }
+        return store.byDate.subMap(start, true, to, true)
+                .entrySet()
                 .stream()
-                .filter((op) -> accountId.equals(op.getBankAccountId()))
-                .collect(Collectors.toList());
+                .flatMap((day) -> (after != null && day.getKey().equals(after.getDate())
+                        ? day.getValue().tailMap(after.getId(), false)
+                        : day.getValue()).values().stream())
+                .limit(limit);
     }
 
+    /**
+     * @implNote Обходит только дневные корзины из диапазона [from; to], а не всё хранилище
+     */
     @Override
     public List<Operation> findByPeriod(LocalDate from, LocalDate to) {
-        return storage.values()
-                .stream()
-                .filter((op) ->  op.getDate().isAfter(from) & op.getDate().isBefore(to))
-                .collect(Collectors.toList());
+        validatePeriod(from, to);
+
+        List<Operation> result = new ArrayList<>();
+        store.byDate.subMap(from, true, to, true)
+                .values()
+                .forEach((ops) -> result.addAll(ops.values()));
+        return result;
+    }
+
+    /**
+     * @implNote Агрегаты поддерживаются при каждом save/delete, поэтому стоимость зависит
+     * от числа дней и категорий в периоде, а не от числа операций
+     */
+    @Override
+    public List<DailyRollup> findDailyRollups(LocalDate from, LocalDate to) {
+        validatePeriod(from, to);
+
+        return store.rollupsBetween(TimeGranularity.DAY, from, to);
+    }
+
+    /**
+     * @implNote Агрегаты недель и месяцев тоже поддерживаются при каждом save/delete:
+     * полные интервалы периода читаются из них (60 чтений на 5 лет по месяцам),
+     * и только неполные интервалы на краях собираются из дневных агрегатов
+     */
+    @Override
+    public List<DailyRollup> findRollups(LocalDate from, LocalDate to, TimeGranularity granularity) {
+        validatePeriod(from, to);
+        if (granularity == null) {
+            throw new IllegalArgumentException("Размер интервала не может быть null");
+        }
+        Store current = store;
+        // полные интервалы: с первого дня fullFrom до дня перед tailFrom
+        LocalDate fullFrom = granularity.start(from).equals(from) ? from : granularity.next(granularity.start(from));
+        LocalDate tailFrom = granularity.end(to).equals(to) ? granularity.next(granularity.start(to)) : granularity.start(to);
+        if (!fullFrom.isBefore(tailFrom)) {
+            return granularity.rollUp(current.rollupsBetween(TimeGranularity.DAY, from, to));
+        }
+        List<DailyRollup> result = new ArrayList<>();
+        if (from.isBefore(fullFrom)) {
+            result.addAll(granularity.rollUp(current.rollupsBetween(TimeGranularity.DAY, from, fullFrom.minusDays(1))));
+        }
+        result.addAll(current.rollupsBetween(granularity, fullFrom, tailFrom.minusDays(1)));
+        if (!tailFrom.isAfter(to)) {
+            result.addAll(granularity.rollUp(current.rollupsBetween(TimeGranularity.DAY, tailFrom, to)));
+        }
+        return result;
+    }
+
+    /**
+     * @implNote Дерево префиксных сумм счёта ({@link DailySumTree}) обновляется при каждом save/delete,
+     * в том числе для операций задним числом, поэтому запрос стоит O(log числа дней с операциями)
+     */
+    @Override
+    public long balanceAt(UUID accountId, LocalDate date) {
+        if (accountId == null || date == null) {
+            throw new IllegalArgumentException("accountId и дата не могут быть null");
+        }
+        DailySumTree balances = store.balances.get(accountId);
+        return balances == null ? 0 : balances.prefixSum(date.toEpochDay());
+    }
+
+    /**
+     * @implNote Баланс на начало периода - один префиксный запрос к дереву счёта,
+     * дальше к нему прибавляются дни периода с операциями
+     */
+    @Override
+    public long[] dailyBalances(UUID accountId, LocalDate from, LocalDate to) {
+        if (accountId == null) {
+            throw new IllegalArgumentException("accountId не может быть null");
+        }
+        validatePeriod(from, to);
+        DailySumTree balances = store.balances.get(accountId);
+        if (balances == null) {
+            return new long[Math.toIntExact(to.toEpochDay() - from.toEpochDay() + 1)];
+        }
+        return balances.prefixSums(from.toEpochDay(), to.toEpochDay());
+    }
+
+    /**
+     * @implNote Новое содержимое вместе с индексами строится в отдельном {@link Store},
+     * а commit подменяет его одной записью volatile-ссылки
+     */
+    @Override
+    public ISnapshotWriter<Operation> newSnapshot() {
+        Store staged = new Store();
+        return new ISnapshotWriter<>() {
+            @Override
+            public void save(Operation operation) {
+                if (operation == null) {
+                    throw new IllegalArgumentException("operation не может быть null");
+                }
+                staged.save(operation);
+            }
+
+            @Override
+            public void commit() {
+                store = staged;
+            }
+        };
+    }
+
+    private void validateLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Размер выборки должен быть положительным: " + limit);
+        }
+    }
+
+    private void validatePeriod(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Границы периода не могут быть null");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало периода позже его конца: " + from + " > " + to);
+        }
+    }
+
+    /**
+     * Хранилище операций вместе с вторичными индексами
+     */
+    private static final class Store {
+        private final Map<UUID, Operation> storage = new ConcurrentHashMap<>();
+        // поля, с которыми операция попала в индексы. Операция изменяема (assignCategory и т.п.),
+        // и к повторному save экземпляр из findById уже изменён - снимать его из индексов
+        // можно только по тому, что было проиндексировано
+        private final Map<UUID, Indexed> indexed = new ConcurrentHashMap<>();
+        // вторичный индекс: ID счёта -> операции этого счёта в порядке (дата, ID)
+        private final Map<UUID, ConcurrentNavigableMap<OperationCursor, Operation>> byAccount = new ConcurrentHashMap<>();
+        // упорядоченный индекс: дата -> операции за этот день.
+        // Дневные корзины не удаляются: compute у skip-list не атомарен, а дней немного
+        private final ConcurrentNavigableMap<LocalDate, ConcurrentNavigableMap<UUID, Operation>> byDate = new ConcurrentSkipListMap<>();
+        // ID счёта -> суммы операций со знаком по дням с префиксными суммами.
+        // Деревья счетов не удаляются по той же причине, что и дневные корзины
+        private final Map<UUID, DailySumTree> balances = new ConcurrentHashMap<>();
+        // агрегаты по размеру интервала: первый день интервала -> (категория, тип, валюта) -> число и сумма операций
+        private final Map<TimeGranularity, ConcurrentNavigableMap<LocalDate, Map<RollupKey, DailyRollup>>> rollups =
+                new EnumMap<>(TimeGranularity.class);
+
+        Store() {
+            for (TimeGranularity granularity : TimeGranularity.values()) {
+                rollups.put(granularity, new ConcurrentSkipListMap<>());
+            }
+        }
+
+        /**
+         * Агрегаты интервалов, начинающихся в [from; to]
+         */
+        List<DailyRollup> rollupsBetween(TimeGranularity granularity, LocalDate from, LocalDate to) {
+            List<DailyRollup> result = new ArrayList<>();
+            rollups.get(granularity).subMap(from, true, to, true)
+                    .values()
+                    .forEach((bucket) -> result.addAll(bucket.values()));
+            return result;
+        }
+
+        /**
+         * Сохраняет операцию и обновляет вторичные индексы по счёту и по дате.
+         * Основное хранилище и индекс меняются под блокировкой записи по ID операции,
+         * поэтому конкурентные save/delete одной операции не рассинхронизируют индекс.
+         */
+        void save(Operation operation) {
+            storage.compute(operation.getId(), (id, previous) -> {
+                if (previous != null) {
+                    unindex(indexed.get(id));
+                }
+                Indexed entry = Indexed.of(operation);
+                index(entry, operation);
+                indexed.put(id, entry);
+                return operation;
+            });
+        }
+
+        void delete(UUID id) {
+            storage.computeIfPresent(id, (key, previous) -> {
+                unindex(indexed.remove(id));
+                return null;
+            });
+        }
+
+        private void index(Indexed entry, Operation operation) {
+            // баланс первым: при переполнении суммы остальные индексы ещё не тронуты
+            balances.computeIfAbsent(entry.accountId(), (accountId) -> new DailySumTree())
+                    .add(entry.date().toEpochDay(), entry.signedAmountMinor());
+            byAccount.compute(entry.accountId(), (accountId, ops) -> addToBucket(ops, entry.cursor(), operation));
+            byDate.computeIfAbsent(entry.date(), (date) -> new ConcurrentSkipListMap<>())
+                    .put(entry.id(), operation);
+            rollups.forEach((granularity, buckets) -> {
+                LocalDate start = granularity.start(entry.date());
+                buckets.computeIfAbsent(start, (date) -> new ConcurrentHashMap<>())
+                        .merge(entry.key(), entry.rollup(start), DailyRollup::plus);
+            });
+        }
+
+        private void unindex(Indexed entry) {
+            byAccount.computeIfPresent(entry.accountId(), (accountId, ops) -> removeFromBucket(ops, entry.cursor()));
+            Map<UUID, Operation> dayOps = byDate.get(entry.date());
+            if (dayOps != null) {
+                dayOps.remove(entry.id());
+            }
+            DailySumTree accountBalances = balances.get(entry.accountId());
+            if (accountBalances != null) {
+                accountBalances.add(entry.date().toEpochDay(), -entry.signedAmountMinor());
+            }
+            rollups.forEach((granularity, buckets) -> {
+                LocalDate start = granularity.start(entry.date());
+                Map<RollupKey, DailyRollup> bucket = buckets.get(start);
+                if (bucket != null) {
+                    // агрегат без операций удаляется; отсутствующий ключ не создаётся
+                    DailyRollup removed = entry.rollup(start);
+                    bucket.computeIfPresent(entry.key(),
+                            (key, current) -> current.getCount() == removed.getCount() ? null : current.minus(removed));
+                }
+            });
+        }
+
+        private static ConcurrentNavigableMap<OperationCursor, Operation> addToBucket(
+                ConcurrentNavigableMap<OperationCursor, Operation> ops, OperationCursor cursor, Operation operation) {
+            ConcurrentNavigableMap<OperationCursor, Operation> bucket = ops == null ? new ConcurrentSkipListMap<>() : ops;
+            bucket.put(cursor, operation);
+            return bucket;
+        }
+
+        // пустые корзины удаляем, чтобы индекс не рос от удалённых счетов
+        private static ConcurrentNavigableMap<OperationCursor, Operation> removeFromBucket(
+                ConcurrentNavigableMap<OperationCursor, Operation> ops, OperationCursor cursor) {
+            ops.remove(cursor);
+            return ops.isEmpty() ? null : ops;
+        }
+    }
+
+    private record RollupKey(UUID categoryId, OperationType type, Currency currency) {
+    }
+
+    /**
+     * Неизменяемая копия полей операции, по которым она лежит в индексах
+     */
+    private record Indexed(UUID id, UUID accountId, LocalDate date, RollupKey key,
+                           long amountMinor, long signedAmountMinor) {
+        static Indexed of(Operation operation) {
+            return new Indexed(operation.getId(), operation.getBankAccountId(), operation.getDate(),
+                    new RollupKey(operation.getCategoryId(), operation.getType(), operation.getCurrency()),
+                    operation.getAmountMinor(), operation.getSignedAmountMinor());
+        }
+
+        OperationCursor cursor() {
+            return new OperationCursor(date, id);
+        }
+
+        DailyRollup rollup(LocalDate start) {
+            return new DailyRollup(start, key.categoryId(), key.type(), key.currency(), 1, amountMinor);
+        }
     }
 }
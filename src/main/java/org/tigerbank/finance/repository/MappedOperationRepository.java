@@ -0,0 +1,919 @@
+package org.tigerbank.finance.repository;
+
+import org.tigerbank.finance.dto.DailyRollup;
+import org.tigerbank.finance.model.Money;
+import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.model.OperationType;
+import org.tigerbank.finance.storage.MappedColumn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Архивное хранилище операций в отображаемых в память файлах, разложенных по колонкам
+ * фиксированной ширины: ID, счёт, день от эпохи, сумма в копейках, тип, индекс категории,
+ * индекс валюты и смещение описания. Описания лежат в отдельном файле-куче, ID категорий
+ * и коды валют - в словарях. Индекс валюты 0 - валюта по умолчанию, поэтому поколения,
+ * записанные до появления колонки валют, читаются без преобразования.
+ * <p>
+ * Данные не загружаются в кучу Java: открытие сводится к отображению файлов, а выборки
+ * по счёту и периоду - к последовательному проходу по нужным колонкам. Дневные агрегаты
+ * для аналитики считаются проходом только по колонкам дней, типов, сумм, категорий и валют.
+ * Удаление помечает строку типом {@link #DELETED}, место не переиспользуется.
+ * <p>
+ * Не является Spring-бином: создаётся явно для архивных данных и закрывается через {@link #close()}.
+ * Каждое поколение данных лежит в своём подкаталоге, на текущее указывает файл CURRENT -
+ * {@link #newSnapshot()} строит новое поколение и переключает указатель атомарно.
+ * Выборки без блокировки удерживают поколение счётчиком ссылок: заменённое поколение
+ * закрывается и удаляется, только когда его дочитает последний читатель.
+ */
+public class MappedOperationRepository implements IOperationRepository, Closeable {
+    static final byte DELETED = 0;
+    private static final int NO_CATEGORY = -1;
+    private static final long NO_DESCRIPTION = -1;
+    private static final byte DEFAULT_CURRENCY = 0;
+    private static final int CURRENCY_CODE_BYTES = 3;
+    // ключ агрегата в сканировании: 22 бита на индекс категории + 1, 8 на валюту, 2 на тип
+    private static final int MAX_CATEGORIES = (1 << 22) - 1;
+    // столько байт кучи описаний читается за раз: короткое описание приходит вместе с длиной
+    private static final int DESCRIPTION_READ_AHEAD = 128;
+    private static final String CURRENT = "CURRENT";
+    private static final String GENERATION_PREFIX = "gen-";
+    // заголовок поколения: число строк и число строк, покрытых индексом по ID
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int INDEXED_ROWS = Integer.BYTES;
+    private static final OperationType[] OPERATION_TYPES = OperationType.values();
+
+    private final Path directory;
+    // все изменения и индекс по ID - под этой блокировкой; выборки идут без неё
+    private final Object writeLock = new Object();
+    private volatile Generation generation;
+
+    public MappedOperationRepository(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        Path current = directory.resolve(CURRENT);
+        boolean fresh = !Files.exists(current);
+        String name = fresh ? GENERATION_PREFIX + 1 : Files.readString(current).trim();
+        // снимки, брошенные без commit, и поколения, не удалённые до остановки, больше не нужны
+        deleteStaleGenerations(name);
+        this.generation = new Generation(directory.resolve(name));
+        if (fresh) {
+            switchCurrent(name);
+        }
+    }
+
+    @Override
+    public Operation save(Operation operation) {
+        if (operation == null) {
+            throw new IllegalArgumentException("operation не может быть null");
+        }
+        synchronized (writeLock) {
+            generation.save(operation);
+        }
+        return operation;
+    }
+
+    @Override
+    public void saveAll(Collection<Operation> operations) {
+        synchronized (writeLock) {
+            Generation g = generation;
+            operations.forEach(g::save);
+        }
+    }
+
+    @Override
+    public Optional<Operation> findById(UUID id) {
+        if (id == null) {
+            throw new IllegalArgumentException("operationId не может быть null");
+        }
+        synchronized (writeLock) {
+            Generation g = generation;
+            int row = g.findRow(id);
+            return row < 0 ? Optional.empty() : Optional.of(g.materialize(row));
+        }
+    }
+
+    @Override
+    public List<Operation> findAll() {
+        return streamAll().collect(Collectors.toList());
+    }
+
+    /**
+     * @implNote Поток удерживает поколение, пока не будет дочитан или закрыт: незакрытый
+     * недочитанный поток откладывает удаление заменённого поколения
+     */
+    @Override
+    public Stream<Operation> streamAll() {
+        Generation g = acquire();
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                g.release();
+            }
+        };
+        PrimitiveIterator.OfInt rows = g.liveRows().iterator();
+        Iterator<Operation> operations = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                if (rows.hasNext()) {
+                    return true;
+                }
+                release.run();
+                return false;
+            }
+
+            @Override
+            public Operation next() {
+                return g.materialize(rows.nextInt());
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(operations,
+                        Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(release);
+    }
+
+    @Override
+    public void deleteById(UUID id) {
+        if (id == null) {
+            throw new IllegalArgumentException("operationId не может быть null");
+        }
+        synchronized (writeLock) {
+            Generation g = generation;
+            int row = g.findRow(id);
+            if (row >= 0) {
+                g.types.putByte(row, DELETED);
+            }
+        }
+    }
+
+    /**
+     * @implNote Последовательный проход по колонке счетов
+     */
+    @Override
+    public List<Operation> findByAccountId(UUID accountId) {
+        if (accountId == null) {
+            throw new IllegalArgumentException("accountId не может быть null");
+        }
+        long msb = accountId.getMostSignificantBits();
+        long lsb = accountId.getLeastSignificantBits();
+        return read((g) -> g.liveRows()
+                .filter((row) -> g.accounts.getLong(row, 0) == msb && g.accounts.getLong(row, 1) == lsb)
+                .mapToObj(g::materialize)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * @implNote Последовательный проход по колонке дат, обе границы включаются
+     */
+    @Override
+    public List<Operation> findByPeriod(LocalDate from, LocalDate to) {
+        validatePeriod(from, to);
+        int fromDay = Math.toIntExact(from.toEpochDay());
+        int toDay = Math.toIntExact(to.toEpochDay());
+        return read((g) -> g.liveRows()
+                .filter((row) -> {
+                    int day = g.days.getInt(row);
+                    return day >= fromDay && day <= toDay;
+                })
+                .mapToObj(g::materialize)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * @implNote Один последовательный проход по колонкам дней, типов, сумм, категорий и валют:
+     * операции не материализуются, ID, счета и описания не читаются
+     */
+    @Override
+    public List<DailyRollup> findDailyRollups(LocalDate from, LocalDate to) {
+        validatePeriod(from, to);
+        int fromDay = Math.toIntExact(from.toEpochDay());
+        int toDay = Math.toIntExact(to.toEpochDay());
+        return read((g) -> g.dailyRollups(fromDay, toDay));
+    }
+
+    /**
+     * @implNote Один проход по колонкам счетов, дней, типов и сумм без материализации операций.
+     * Это O(n) по всем строкам поколения: архивное хранилище не держит дневных сумм в куче
+     */
+    @Override
+    public long balanceAt(UUID accountId, LocalDate date) {
+        if (accountId == null || date == null) {
+            throw new IllegalArgumentException("accountId и дата не могут быть null");
+        }
+        return dailyBalances(accountId, date, date)[0];
+    }
+
+    /**
+     * @implNote См. {@link #balanceAt}: один проход по колонкам на весь период
+     */
+    @Override
+    public long[] dailyBalances(UUID accountId, LocalDate from, LocalDate to) {
+        if (accountId == null) {
+            throw new IllegalArgumentException("accountId не может быть null");
+        }
+        validatePeriod(from, to);
+        int fromDay = Math.toIntExact(from.toEpochDay());
+        int toDay = Math.toIntExact(to.toEpochDay());
+        return read((g) -> g.dailyBalances(accountId.getMostSignificantBits(), accountId.getLeastSignificantBits(), fromDay, toDay));
+    }
+
+    /**
+     * @implNote Новое поколение строится в соседнем каталоге; commit атомарно переписывает
+     * файл CURRENT и подменяет поколение в памяти. Старые файлы удаляются, когда прежнее
+     * поколение отпустят все выборки, начатые до подмены. Каталог снимка, отброшенного через
+     * discard или не сумевшего переключить CURRENT, удаляется сразу, а брошенного без вызовов -
+     * при следующем открытии хранилища
+     */
+    @Override
+    public ISnapshotWriter<Operation> newSnapshot() {
+        String name = GENERATION_PREFIX + System.nanoTime();
+        Generation staged;
+        try {
+            staged = new Generation(directory.resolve(name));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new ISnapshotWriter<>() {
+            private boolean finished;
+
+            @Override
+            public void save(Operation operation) {
+                if (operation == null) {
+                    throw new IllegalArgumentException("operation не может быть null");
+                }
+                staged.save(operation);
+            }
+
+            @Override
+            public void commit() {
+                if (finished) {
+                    throw new IllegalStateException("Снимок уже применён или отброшен: " + name);
+                }
+                synchronized (writeLock) {
+                    Generation previous = generation;
+                    try {
+                        staged.force();
+                        switchCurrent(name);
+                    } catch (IOException e) {
+                        discard();
+                        throw new UncheckedIOException(e);
+                    }
+                    finished = true;
+                    generation = staged;
+                    // файлы удалит последний читатель прежнего поколения
+                    previous.retire();
+                }
+            }
+
+            @Override
+            public void discard() {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                try {
+                    staged.closeAndDelete();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Сбрасывает изменения на диск
+     */
+    public void force() throws IOException {
+        synchronized (writeLock) {
+            generation.force();
+        }
+    }
+
+    /**
+     * @implNote Файлы закрываются, когда завершатся уже начатые выборки
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            generation.force();
+            generation.release();
+        }
+    }
+
+    // текущее поколение с увеличенным счётчиком ссылок; отпускается через Generation.release
+    private Generation acquire() {
+        while (true) {
+            Generation g = generation;
+            if (g.tryAcquire()) {
+                return g;
+            }
+            // счётчик уже обнулён: поколение заменено (и ссылка на него сменилась) или хранилище закрыто
+            if (g == generation) {
+                throw new IllegalStateException("Хранилище операций закрыто: " + directory);
+            }
+        }
+    }
+
+    private <T> T read(Function<Generation, T> query) {
+        Generation g = acquire();
+        try {
+            return query.apply(g);
+        } finally {
+            g.release();
+        }
+    }
+
+    private static void validatePeriod(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Границы периода не могут быть null");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало периода позже его конца: " + from + " > " + to);
+        }
+    }
+
+    private void deleteStaleGenerations(String current) throws IOException {
+        try (Stream<Path> entries = Files.list(directory)) {
+            for (Path entry : (Iterable<Path>) entries::iterator) {
+                String name = entry.getFileName().toString();
+                if (name.startsWith(GENERATION_PREFIX) && !name.equals(current) && Files.isDirectory(entry)) {
+                    deleteDirectory(entry);
+                }
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private void switchCurrent(String name) throws IOException {
+        Path tmp = directory.resolve(CURRENT + ".tmp");
+        Files.writeString(tmp, name);
+        Files.move(tmp, directory.resolve(CURRENT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Одно поколение данных: набор колонок в своём каталоге
+     */
+    private static final class Generation implements Closeable {
+        private final Path dir;
+        private final MappedColumn ids;
+        private final MappedColumn accounts;
+        private final MappedColumn days;
+        private final MappedColumn amounts;
+        private final MappedColumn types;
+        private final MappedColumn categories;
+        private final MappedColumn currencies;
+        private final MappedColumn descriptions;
+        private final FileChannel descriptionHeap;
+        private final FileChannel categoryDictionary;
+        private final FileChannel currencyDictionary;
+        private final MappedByteBuffer header;
+        private final List<UUID> categoryIds = new ArrayList<>();
+        private final Map<UUID, Integer> categoryIndex = new HashMap<>();
+        // валюта с индексом i + 1 (0 - валюта по умолчанию)
+        private final List<Currency> currencyCodes = new ArrayList<>();
+        // ID -> строка в файле ids.idx, открывается при первом обращении по ID
+        private RowIndex rowIndex;
+        private volatile int rowCount;
+        // выборки, работающие с поколением, + 1 за ссылку из репозитория; при нуле файлы закрываются
+        private final AtomicInteger references = new AtomicInteger(1);
+        // поколение заменено снимком: после закрытия файлы удаляются
+        private volatile boolean retired;
+
+        Generation(Path dir) throws IOException {
+            this.dir = dir;
+            Files.createDirectories(dir);
+            ids = new MappedColumn(dir.resolve("ids.col"), 16);
+            accounts = new MappedColumn(dir.resolve("accounts.col"), 16);
+            days = new MappedColumn(dir.resolve("days.col"), Integer.BYTES);
+            amounts = new MappedColumn(dir.resolve("amounts.col"), Long.BYTES);
+            types = new MappedColumn(dir.resolve("types.col"), Byte.BYTES);
+            categories = new MappedColumn(dir.resolve("categories.col"), Integer.BYTES);
+            currencies = new MappedColumn(dir.resolve("currencies.col"), Byte.BYTES);
+            descriptions = new MappedColumn(dir.resolve("descriptions.col"), Long.BYTES);
+            descriptionHeap = FileChannel.open(dir.resolve("descriptions.heap"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            categoryDictionary = FileChannel.open(dir.resolve("categories.dict"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            currencyDictionary = FileChannel.open(dir.resolve("currencies.dict"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try (FileChannel meta = FileChannel.open(dir.resolve("rows.meta"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // у поколений без индекса заголовок короче: дописанные нули требуют построить индекс
+                header = meta.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            }
+            rowCount = header.getInt(0);
+            loadCategoryDictionary();
+            loadCurrencyDictionary();
+            if (rowCount > 0) {
+                // в старом поколении колонки валют нет: дополняем её нулями (валюта по умолчанию)
+                currencies.ensureCapacity(rowCount - 1);
+            }
+        }
+
+        boolean tryAcquire() {
+            for (int n = references.get(); n > 0; n = references.get()) {
+                if (references.compareAndSet(n, n + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void release() {
+            if (references.decrementAndGet() != 0) {
+                return;
+            }
+            try {
+                if (retired) {
+                    closeAndDelete();
+                } else {
+                    close();
+                }
+            } catch (IOException e) {
+                // выборка уже выполнена - её результат не должен пропасть из-за ошибки закрытия
+                System.out.println("Не удалось закрыть поколение " + dir + ": " + e.getMessage());
+            }
+        }
+
+        void retire() {
+            retired = true;
+            release();
+        }
+
+        IntStream liveRows() {
+            return IntStream.range(0, rowCount).filter((row) -> types.getByte(row) != DELETED);
+        }
+
+        void save(Operation operation) {
+            int existing = findRow(operation.getId());
+            int row = rowCount;
+            try {
+                for (MappedColumn column : List.of(ids, accounts, days, amounts, types, categories, currencies, descriptions)) {
+                    column.ensureCapacity(row);
+                }
+                ids.putLong(row, 0, operation.getId().getMostSignificantBits());
+                ids.putLong(row, 1, operation.getId().getLeastSignificantBits());
+                accounts.putLong(row, 0, operation.getBankAccountId().getMostSignificantBits());
+                accounts.putLong(row, 1, operation.getBankAccountId().getLeastSignificantBits());
+                days.putInt(row, Math.toIntExact(operation.getDate().toEpochDay()));
+                amounts.putLong(row, 0, operation.getAmountMinor());
+                categories.putInt(row, categoryIndexOf(operation.getCategoryId()));
+                currencies.putByte(row, currencyIndexOf(operation.getCurrency()));
+                descriptions.putLong(row, 0, appendDescription(operation.getDescription()));
+                // тип пишется последним: до этого строка выглядит удалённой
+                types.putByte(row, (byte) (operation.getType().ordinal() + 1));
+                // прежняя версия операции гасится только после успешной записи новой
+                if (existing >= 0) {
+                    types.putByte(existing, DELETED);
+                }
+                RowIndex index = rowIndex();
+                // оборванное на середине изменение индекса заставит построить его заново при открытии
+                header.putInt(INDEXED_ROWS, -1);
+                index.put(operation.getId(), row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            header.putInt(0, row + 1);
+            header.putInt(INDEXED_ROWS, row + 1);
+            rowCount = row + 1;
+        }
+
+        int findRow(UUID id) {
+            int row;
+            try {
+                row = rowIndex().find(id);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return row >= 0 && types.getByte(row) != DELETED ? row : -1;
+        }
+
+        List<DailyRollup> dailyRollups(int fromDay, int toDay) {
+            RollupTable table = new RollupTable();
+            int rows = rowCount;
+            for (int row = 0; row < rows; row++) {
+                int day = days.getInt(row);
+                if (day < fromDay || day > toDay) {
+                    continue;
+                }
+                byte type = types.getByte(row);
+                if (type == DELETED) {
+                    continue;
+                }
+                long key = ((long) day << 32)
+                        | ((long) (categories.getInt(row) + 1) << 10)
+                        | ((currencies.getByte(row) & 0xFF) << 2)
+                        | (type - 1);
+                table.add(key, amounts.getLong(row, 0));
+            }
+            List<DailyRollup> result = new ArrayList<>(table.size);
+            table.forEach((key, count, amountMinor) -> {
+                int category = (int) ((key >>> 10) & MAX_CATEGORIES) - 1;
+                int currency = (int) (key >>> 2) & 0xFF;
+                result.add(new DailyRollup(LocalDate.ofEpochDay(key >> 32),
+                        category == NO_CATEGORY ? null : categoryIds.get(category),
+                        OPERATION_TYPES[(int) (key & 3)],
+                        currency == DEFAULT_CURRENCY ? Money.DEFAULT_CURRENCY : currencyCodes.get(currency - 1),
+                        count, amountMinor));
+            });
+            return result;
+        }
+
+        // элемент i - баланс счёта на конец дня fromDay + i
+        long[] dailyBalances(long msb, long lsb, int fromDay, int toDay) {
+            long[] result = new long[toDay - fromDay + 1];
+            long opening = 0;
+            int rows = rowCount;
+            for (int row = 0; row < rows; row++) {
+                int day = days.getInt(row);
+                if (day > toDay || accounts.getLong(row, 0) != msb || accounts.getLong(row, 1) != lsb) {
+                    continue;
+                }
+                byte type = types.getByte(row);
+                if (type == DELETED) {
+                    continue;
+                }
+                long signed = OPERATION_TYPES[type - 1].getBalanceMultiplier() * amounts.getLong(row, 0);
+                if (day < fromDay) {
+                    opening = Money.add(opening, signed);
+                } else {
+                    result[day - fromDay] = Money.add(result[day - fromDay], signed);
+                }
+            }
+            long running = opening;
+            for (int i = 0; i < result.length; i++) {
+                running = Money.add(running, result[i]);
+                result[i] = running;
+            }
+            return result;
+        }
+
+        Operation materialize(int row) {
+            int category = categories.getInt(row);
+            return Operation.restore(
+                    new UUID(ids.getLong(row, 0), ids.getLong(row, 1)),
+                    OPERATION_TYPES[types.getByte(row) - 1],
+                    new UUID(accounts.getLong(row, 0), accounts.getLong(row, 1)),
+                    Money.toBigDecimal(amounts.getLong(row, 0)),
+                    currencyAt(row),
+                    LocalDate.ofEpochDay(days.getInt(row)),
+                    readDescription(descriptions.getLong(row, 0)),
+                    category == NO_CATEGORY ? null : categoryIds.get(category));
+        }
+
+        void force() throws IOException {
+            for (MappedColumn column : List.of(ids, accounts, days, amounts, types, categories, currencies, descriptions)) {
+                column.force();
+            }
+            descriptionHeap.force(false);
+            categoryDictionary.force(false);
+            currencyDictionary.force(false);
+            if (rowIndex != null) {
+                rowIndex.force();
+            }
+            header.force();
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (MappedColumn column : List.of(ids, accounts, days, amounts, types, categories, currencies, descriptions)) {
+                column.close();
+            }
+            descriptionHeap.close();
+            categoryDictionary.close();
+            currencyDictionary.close();
+            if (rowIndex != null) {
+                rowIndex.close();
+            }
+        }
+
+        void closeAndDelete() throws IOException {
+            close();
+            deleteDirectory(dir);
+        }
+
+        // индекс поколения, записанного до его появления или оборванного на записи, строится заново
+        private RowIndex rowIndex() throws IOException {
+            if (rowIndex == null) {
+                boolean current = header.getInt(INDEXED_ROWS) == rowCount && Files.exists(dir.resolve(RowIndex.FILE));
+                rowIndex = new RowIndex(dir, ids, rowCount, current);
+                header.putInt(INDEXED_ROWS, rowCount);
+            }
+            return rowIndex;
+        }
+
+        private int categoryIndexOf(UUID categoryId) throws IOException {
+            if (categoryId == null) {
+                return NO_CATEGORY;
+            }
+            Integer index = categoryIndex.get(categoryId);
+            if (index != null) {
+                return index;
+            }
+            if (categoryIds.size() == MAX_CATEGORIES) {
+                throw new IllegalArgumentException("Слишком много разных категорий в хранилище: " + categoryId);
+            }
+            ByteBuffer entry = ByteBuffer.allocate(16)
+                    .putLong(categoryId.getMostSignificantBits())
+                    .putLong(categoryId.getLeastSignificantBits())
+                    .flip();
+            categoryDictionary.write(entry, (long) categoryIds.size() * 16);
+            categoryIndex.put(categoryId, categoryIds.size());
+            categoryIds.add(categoryId);
+            return categoryIds.size() - 1;
+        }
+
+        private void loadCategoryDictionary() throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate((int) categoryDictionary.size());
+            while (buffer.hasRemaining()) {
+                if (categoryDictionary.read(buffer, buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            while (buffer.remaining() >= 16) {
+                UUID id = new UUID(buffer.getLong(), buffer.getLong());
+                categoryIndex.put(id, categoryIds.size());
+                categoryIds.add(id);
+            }
+        }
+
+        private byte currencyIndexOf(Currency currency) throws IOException {
+            if (currency.equals(Money.DEFAULT_CURRENCY)) {
+                return DEFAULT_CURRENCY;
+            }
+            int index = currencyCodes.indexOf(currency);
+            if (index >= 0) {
+                return (byte) (index + 1);
+            }
+            if (currencyCodes.size() == 0xFF) {
+                throw new IllegalArgumentException("Слишком много разных валют в хранилище: " + currency);
+            }
+            ByteBuffer entry = ByteBuffer.wrap(currency.getCurrencyCode().getBytes(StandardCharsets.US_ASCII));
+            currencyDictionary.write(entry, (long) currencyCodes.size() * CURRENCY_CODE_BYTES);
+            currencyCodes.add(currency);
+            return (byte) currencyCodes.size();
+        }
+
+        private Currency currencyAt(int row) {
+            int index = currencies.getByte(row) & 0xFF;
+            return index == DEFAULT_CURRENCY ? Money.DEFAULT_CURRENCY : currencyCodes.get(index - 1);
+        }
+
+        private void loadCurrencyDictionary() throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate((int) currencyDictionary.size());
+            while (buffer.hasRemaining()) {
+                if (currencyDictionary.read(buffer, buffer.position()) < 0) {
+                    break;
+                }
+            }
+            byte[] bytes = buffer.array();
+            for (int offset = 0; offset + CURRENCY_CODE_BYTES <= bytes.length; offset += CURRENCY_CODE_BYTES) {
+                currencyCodes.add(Currency.getInstance(new String(bytes, offset, CURRENCY_CODE_BYTES, StandardCharsets.US_ASCII)));
+            }
+        }
+
+        private long appendDescription(String description) throws IOException {
+            if (description == null) {
+                return NO_DESCRIPTION;
+            }
+            byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+            long offset = descriptionHeap.size();
+            ByteBuffer entry = ByteBuffer.allocate(Short.BYTES + bytes.length)
+                    .putShort((short) bytes.length)
+                    .put(bytes)
+                    .flip();
+            while (entry.hasRemaining()) {
+                descriptionHeap.write(entry, offset + entry.position());
+            }
+            return offset;
+        }
+
+        private String readDescription(long offset) {
+            if (offset == NO_DESCRIPTION) {
+                return null;
+            }
+            try {
+                // обычно описание короткое и приходит вместе с длиной за один pread
+                ByteBuffer head = ByteBuffer.allocate(DESCRIPTION_READ_AHEAD);
+                descriptionHeap.read(head, offset);
+                if (head.position() < Short.BYTES) {
+                    head.limit(Short.BYTES);
+                    readFully(head, offset);
+                }
+                int length = head.getShort(0);
+                if (Short.BYTES + length <= head.position()) {
+                    return new String(head.array(), Short.BYTES, length, StandardCharsets.UTF_8);
+                }
+                ByteBuffer bytes = ByteBuffer.allocate(length);
+                readFully(bytes, offset + Short.BYTES);
+                return new String(bytes.array(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void readFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (descriptionHeap.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Файл описаний обрезан: " + dir);
+                }
+            }
+        }
+    }
+
+    /**
+     * Суммы сканирования по упакованному ключу агрегата: открытая адресация по массивам long,
+     * без объекта на каждую строку. Счётчик 0 - пустая ячейка
+     */
+    private static final class RollupTable {
+        @FunctionalInterface
+        interface Visitor {
+            void visit(long key, long count, long amountMinor);
+        }
+
+        private long[] keys = new long[64];
+        private long[] counts = new long[64];
+        private long[] sums = new long[64];
+        private int size;
+
+        void add(long key, long amountMinor) {
+            int i = slot(keys, counts, key);
+            if (counts[i] == 0) {
+                if ((size + 1) * 2 > keys.length) {
+                    rehash();
+                    i = slot(keys, counts, key);
+                }
+                keys[i] = key;
+                size++;
+            }
+            counts[i]++;
+            sums[i] = Money.add(sums[i], amountMinor);
+        }
+
+        void forEach(Visitor visitor) {
+            for (int i = 0; i < keys.length; i++) {
+                if (counts[i] != 0) {
+                    visitor.visit(keys[i], counts[i], sums[i]);
+                }
+            }
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            long[] oldCounts = counts;
+            long[] oldSums = sums;
+            keys = new long[oldKeys.length * 2];
+            counts = new long[oldKeys.length * 2];
+            sums = new long[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldCounts[i] != 0) {
+                    int j = slot(keys, counts, oldKeys[i]);
+                    keys[j] = oldKeys[i];
+                    counts[j] = oldCounts[i];
+                    sums[j] = oldSums[i];
+                }
+            }
+        }
+
+        // ячейка с ключом или первая пустая
+        private static int slot(long[] keys, long[] counts, long key) {
+            int mask = keys.length - 1;
+            long h = key * 0x9E3779B97F4A7C15L;
+            int i = (int) (h ^ (h >>> 32)) & mask;
+            while (counts[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+    }
+
+    /**
+     * Индекс ID -> номер строки с открытой адресацией в отображаемом файле ids.idx, в куче Java
+     * он места не занимает. Ключи в индексе не хранятся: при коллизии ID сверяется с колонкой ids.
+     * Число ячеек - степень двойки не меньше удвоенного числа проиндексированных строк, поэтому
+     * оно не хранится, а выводится из числа строк в заголовке поколения
+     */
+    private static final class RowIndex implements Closeable {
+        private static final String FILE = "ids.idx";
+        private static final int MIN_SLOTS = 16;
+
+        private final Path dir;
+        private final MappedColumn ids;
+        // номер строки + 1, 0 - пустая ячейка
+        private MappedColumn slots;
+        private int capacity;
+
+        /**
+         * @param rows число строк, которые покрывает индекс
+         * @param current false - файл индекса устарел или отсутствует и строится заново
+         */
+        RowIndex(Path dir, MappedColumn ids, int rows, boolean current) throws IOException {
+            this.dir = dir;
+            this.ids = ids;
+            if (current) {
+                slots = new MappedColumn(dir.resolve(FILE), Integer.BYTES);
+                capacity = capacity(rows);
+                slots.ensureCapacity(capacity - 1);
+            } else {
+                rebuild(rows, capacity(rows));
+            }
+        }
+
+        int find(UUID id) {
+            long msb = id.getMostSignificantBits();
+            long lsb = id.getLeastSignificantBits();
+            int mask = capacity - 1;
+            for (int i = hash(msb, lsb) & mask; slots.getInt(i) != 0; i = (i + 1) & mask) {
+                int row = slots.getInt(i) - 1;
+                if (ids.getLong(row, 0) == msb && ids.getLong(row, 1) == lsb) {
+                    return row;
+                }
+            }
+            return -1;
+        }
+
+        // row - следующая по порядку строка поколения
+        void put(UUID id, int row) throws IOException {
+            if (capacity(row + 1) > capacity) {
+                rebuild(row, capacity(row + 1));
+            }
+            insert(id.getMostSignificantBits(), id.getLeastSignificantBits(), row);
+        }
+
+        void force() {
+            slots.force();
+        }
+
+        @Override
+        public void close() throws IOException {
+            slots.close();
+        }
+
+        // строит индекс строк [0, rows) в новом файле одним проходом по колонке ids и подменяет им прежний
+        private void rebuild(int rows, int size) throws IOException {
+            Path tmp = dir.resolve(FILE + ".tmp");
+            Files.deleteIfExists(tmp);
+            MappedColumn previous = slots;
+            slots = new MappedColumn(tmp, Integer.BYTES);
+            slots.ensureCapacity(size - 1);
+            capacity = size;
+            for (int row = 0; row < rows; row++) {
+                insert(ids.getLong(row, 0), ids.getLong(row, 1), row);
+            }
+            if (previous != null) {
+                previous.close();
+            }
+            Files.move(tmp, dir.resolve(FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // более поздняя строка того же ID занимает его ячейку
+        private void insert(long msb, long lsb, int row) {
+            int mask = capacity - 1;
+            int i = hash(msb, lsb) & mask;
+            for (; slots.getInt(i) != 0; i = (i + 1) & mask) {
+                int existing = slots.getInt(i) - 1;
+                if (ids.getLong(existing, 0) == msb && ids.getLong(existing, 1) == lsb) {
+                    break;
+                }
+            }
+            slots.putInt(i, row + 1);
+        }
+
+        private static int capacity(int rows) {
+            return Math.toIntExact(Math.max(MIN_SLOTS, Long.highestOneBit(2L * rows - 1) << 1));
+        }
+
+        private static int hash(long msb, long lsb) {
+            long h = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package org.tigerbank.finance.repository;
+
+import org.tigerbank.finance.model.*;
+import org.tigerbank.finance.service.BinaryDataService;
+import org.tigerbank.finance.service.IDataService;
+import org.tigerbank.finance.storage.WriteAheadLog;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.UUID;
+
+/**
+ * Журнал изменений in-memory репозиториев. Каталог задаётся свойством finance.wal.directory
+ * и содержит последнюю контрольную точку (снимок в формате {@link BinaryDataService})
+ * и сегменты журнала, записанные после неё.
+ * <p>
+ * При старте загружается снимок и поверх него проигрываются сегменты журнала, поэтому время
+ * восстановления зависит от длины журнала с последней контрольной точки, а не от истории.
+ * Записи журнала идемпотентны (сохранить состояние / удалить по ID), так что повторное
+ * проигрывание уже учтённых в снимке записей безопасно.
+ * <pre>
+ * запись: вид (byte: 1 счёт, 2 категория, 3 операция), действие (byte: 1 сохранение, 2 удаление),
+ *         id (2 long), далее для сохранения - поля сущности в порядке снимка
+ * </pre>
+ * Код валюты счёта и операции пишется последним полем записи; в записях, сделанных до появления
+ * валют, его нет, и при проигрывании берётся валюта по умолчанию.
+ */
+@Component
+@ConditionalOnProperty(name = "finance.wal.directory")
+public class RepositoryJournal implements Closeable {
+    static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    private static final byte KIND_ACCOUNT = 1;
+    private static final byte KIND_CATEGORY = 2;
+    private static final byte KIND_OPERATION = 3;
+    private static final byte ACTION_SAVE = 1;
+    private static final byte ACTION_DELETE = 2;
+    private static final UUID NO_CATEGORY = new UUID(0, 0);
+
+    private static final OperationType[] OPERATION_TYPES = OperationType.values();
+    private static final CategoryType[] CATEGORY_TYPES = CategoryType.values();
+
+    private final InMemoryBankAccountRepository accountRepo;
+    private final InMemoryCategoryRepository categoryRepo;
+    private final IOperationRepository operationRepo;
+    private final IDataService snapshots;
+    private final Path directory;
+    private final WriteAheadLog wal;
+
+    public RepositoryJournal(InMemoryBankAccountRepository accountRepo,
+                             InMemoryCategoryRepository categoryRepo,
+                             @Qualifier("operationStore") IOperationRepository operationRepo,
+                             @Value("${finance.wal.directory}") String directory) throws IOException {
+        this.accountRepo = accountRepo;
+        this.categoryRepo = categoryRepo;
+        this.operationRepo = operationRepo;
+        // снимки читаются и пишутся мимо журнала - напрямую в in-memory репозитории
+        this.snapshots = new BinaryDataService(accountRepo, categoryRepo, operationRepo);
+        this.directory = Path.of(directory);
+        this.wal = new WriteAheadLog(this.directory);
+        recover();
+    }
+
+    public void logSave(BankAccount account) {
+        wal.sync(appendSave(account));
+    }
+
+    public void logSave(Category category) {
+        wal.sync(appendSave(category));
+    }
+
+    public void logSave(Operation operation) {
+        wal.sync(appendSave(operation));
+    }
+
+    /**
+     * Записывает пачку операций и ждёт одного сброса на диск для всей пачки
+     */
+    public void logSaveAll(Collection<Operation> operations) {
+        long lsn = 0;
+        for (Operation operation : operations) {
+            lsn = appendSave(operation);
+        }
+        wal.sync(lsn);
+    }
+
+    public void logAccountDelete(UUID id) {
+        logDelete(KIND_ACCOUNT, id);
+    }
+
+    public void logCategoryDelete(UUID id) {
+        logDelete(KIND_CATEGORY, id);
+    }
+
+    public void logOperationDelete(UUID id) {
+        logDelete(KIND_OPERATION, id);
+    }
+
+    /**
+     * Контрольная точка: журнал переключается на новый сегмент, текущее содержимое
+     * репозиториев записывается в снимок, после чего старые сегменты удаляются.
+     * Изменения, сделанные во время записи снимка, попадают и в снимок, и в новый сегмент -
+     * это безопасно благодаря идемпотентности записей
+     */
+    public synchronized void checkpoint() throws IOException {
+        long segment = wal.rotate();
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        Path tmp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        snapshots.exportToFile(tmp.toString());
+        Files.move(tmp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        wal.deleteSegmentsBefore(segment);
+    }
+
+    /**
+     * Контрольная точка после подмены содержимого репозитория снимком (импорт):
+     * подмена не пишется в журнал построчно, а фиксируется сразу новым снимком
+     */
+    public void checkpointAfterSnapshot() {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать контрольную точку", e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${finance.wal.checkpoint-interval-ms:600000}",
+               fixedDelayString = "${finance.wal.checkpoint-interval-ms:600000}")
+    public void scheduledCheckpoint() {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            System.out.println("Не удалось создать контрольную точку: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        wal.close();
+    }
+
+    private void recover() throws IOException {
+        long started = System.nanoTime();
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            snapshots.importFromFile(snapshot.toString());
+        }
+        long[] replayed = {0};
+        wal.replay((record) -> {
+            apply(record);
+            replayed[0]++;
+        });
+        long millis = (System.nanoTime() - started) / 1_000_000;
+        System.out.println("Восстановление из журнала: " + replayed[0] + " записей, " + millis + " мс");
+    }
+
+    private void logDelete(byte kind, UUID id) {
+        wal.sync(wal.append((buffer) -> {
+            buffer.put(kind).put(ACTION_DELETE);
+            putUuid(buffer, id);
+        }));
+    }
+
+    // состояние сущности читается при кодировании под блокировкой журнала, поэтому
+    // последняя запись о сущности в журнале отражает её последнее состояние
+    private long appendSave(BankAccount account) {
+        return wal.append((buffer) -> {
+            buffer.put(KIND_ACCOUNT).put(ACTION_SAVE);
+            putUuid(buffer, account.getId());
+            putString(buffer, account.getName());
+            buffer.putLong(account.getBalanceMinor());
+            putString(buffer, account.getCurrency().getCurrencyCode());
+        });
+    }
+
+    private long appendSave(Category category) {
+        return wal.append((buffer) -> {
+            buffer.put(KIND_CATEGORY).put(ACTION_SAVE);
+            putUuid(buffer, category.getId());
+            buffer.put((byte) category.getType().ordinal());
+            putString(buffer, category.getName());
+        });
+    }
+
+    private long appendSave(Operation operation) {
+        return wal.append((buffer) -> {
+            buffer.put(KIND_OPERATION).put(ACTION_SAVE);
+            putUuid(buffer, operation.getId());
+            buffer.put((byte) operation.getType().ordinal());
+            putUuid(buffer, operation.getBankAccountId());
+            buffer.putLong(operation.getAmountMinor());
+            buffer.putInt((int) operation.getDate().toEpochDay());
+            putString(buffer, operation.getDescription());
+            putUuid(buffer, operation.getCategoryId() == null ? NO_CATEGORY : operation.getCategoryId());
+            putString(buffer, operation.getCurrency().getCurrencyCode());
+        });
+    }
+
+    // CRC записи уже проверен журналом, но тип и длины полей проверяются отдельно:
+    // запись другой версии формата не должна ронять восстановление непроверяемым исключением
+    private void apply(ByteBuffer record) throws IOException {
+        try {
+            applyChecked(record);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Запись журнала короче, чем её поля", e);
+        }
+    }
+
+    private void applyChecked(ByteBuffer record) throws IOException {
+        byte kind = record.get();
+        byte action = record.get();
+        UUID id = getUuid(record);
+        if (action == ACTION_DELETE) {
+            switch (kind) {
+                case KIND_ACCOUNT -> accountRepo.deleteById(id);
+                case KIND_CATEGORY -> categoryRepo.deleteById(id);
+                case KIND_OPERATION -> operationRepo.deleteById(id);
+                default -> throw new IOException("Неизвестный вид записи журнала: " + kind);
+            }
+            return;
+        }
+        switch (kind) {
+            case KIND_ACCOUNT -> {
+                String name = getString(record);
+                BigDecimal balance = Money.toBigDecimal(record.getLong());
+                accountRepo.save(BankAccount.restore(id, name, balance, getCurrency(record)));
+            }
+            case KIND_CATEGORY -> {
+                CategoryType type = getType(record, CATEGORY_TYPES);
+                categoryRepo.save(Category.restore(id, getString(record), type));
+            }
+            case KIND_OPERATION -> {
+                OperationType type = getType(record, OPERATION_TYPES);
+                UUID accountId = getUuid(record);
+                BigDecimal amount = Money.toBigDecimal(record.getLong());
+                LocalDate date = LocalDate.ofEpochDay(record.getInt());
+                String description = getString(record);
+                UUID categoryId = getUuid(record);
+                operationRepo.save(Operation.restore(id, type, accountId, amount, getCurrency(record), date,
+                        description, NO_CATEGORY.equals(categoryId) ? null : categoryId));
+            }
+            default -> throw new IOException("Неизвестный вид записи журнала: " + kind);
+        }
+    }
+
+    private static void putUuid(ByteBuffer buffer, UUID id) {
+        buffer.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    // длина -1 означает null, как в BinaryChannelWriter
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Строка слишком длинная для журнала: " + bytes.length + " байт");
+        }
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static <T> T getType(ByteBuffer buffer, T[] types) throws IOException {
+        byte index = buffer.get();
+        if (index < 0 || index >= types.length) {
+            throw new IOException("Неизвестный тип в записи журнала: " + index);
+        }
+        return types[index];
+    }
+
+    // необязательное последнее поле: записи без валюты - в валюте по умолчанию
+    private static Currency getCurrency(ByteBuffer buffer) {
+        return buffer.hasRemaining() ? Money.currency(getString(buffer)) : Money.DEFAULT_CURRENCY;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
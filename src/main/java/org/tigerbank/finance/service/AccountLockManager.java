@@ -0,0 +1,103 @@
+package org.tigerbank.finance.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Полосатые блокировки счетов: счёт отображается на одну из finance.locks.stripes блокировок
+ * по хэшу ID. Изменения одного счёта выполняются строго последовательно, а разные счета
+ * почти всегда попадают в разные полосы и обрабатываются параллельно.
+ * Число блокировок не зависит от числа счетов
+ */
+@Component
+public class AccountLockManager {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public AccountLockManager(@Value("${finance.locks.stripes:1024}") int stripes) {
+        if (stripes < 1 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Число полос блокировок должно быть степенью двойки: " + stripes);
+        }
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = stripes - 1;
+    }
+
+    /**
+     * Выполняет действие под блокировкой счёта
+     */
+    public <T> T withLock(UUID accountId, Supplier<T> action) {
+        if (accountId == null) {
+            throw new IllegalArgumentException("accountId не может быть null");
+        }
+        ReentrantLock lock = stripes[stripe(accountId)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Выполняет действие под блокировками всех перечисленных счетов. Полосы захватываются
+     * в порядке возрастания номера, поэтому два вызова с пересекающимися наборами счетов
+     * не могут заблокировать друг друга
+     */
+    public <T> T withLocks(Collection<UUID> accountIds, Supplier<T> action) {
+        TreeSet<Integer> ordered = new TreeSet<>();
+        for (UUID accountId : accountIds) {
+            if (accountId == null) {
+                throw new IllegalArgumentException("accountId не может быть null");
+            }
+            ordered.add(stripe(accountId));
+        }
+        int locked = 0;
+        try {
+            for (int stripe : ordered) {
+                stripes[stripe].lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int stripe : ordered) {
+                if (locked-- == 0) {
+                    break;
+                }
+                stripes[stripe].unlock();
+            }
+        }
+    }
+
+    /**
+     * Выполняет действие под блокировками всех полос, то есть всех счетов сразу (подмена
+     * содержимого репозиториев при импорте). Полосы захватываются в том же порядке возрастания,
+     * что и в {@link #withLocks}, поэтому взаимоблокировка с ним невозможна
+     */
+    public <T> T withAllLocks(Supplier<T> action) {
+        int locked = 0;
+        try {
+            for (ReentrantLock stripe : stripes) {
+                stripe.lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = 0; i < locked; i++) {
+                stripes[i].unlock();
+            }
+        }
+    }
+
+    private int stripe(UUID accountId) {
+        int h = accountId.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
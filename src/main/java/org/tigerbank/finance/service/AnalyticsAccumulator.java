@@ -0,0 +1,140 @@
+package org.tigerbank.finance.service;
+
+import org.tigerbank.finance.dto.AnalyticsSummary;
+import org.tigerbank.finance.dto.DailyRollup;
+import org.tigerbank.finance.model.Money;
+import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.model.OperationType;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Однопроходный накопитель аналитики: доходы, расходы, число операций и суммы по категориям
+ * собираются за один обход; агрегаты переводов между счетами пропускаются. Суммы копятся в копейках в long, BigDecimal появляется
+ * только при переполнении и при выдаче результата. Агрегаты в других валютах переводятся
+ * в валюту отчётов здесь же, при добавлении, через {@link CurrencyConverter}.
+ * Не потокобезопасен: параллельные части считаются в своих накопителях и сливаются через {@link #merge}
+ */
+final class AnalyticsAccumulator {
+    private final CurrencyConverter converter;
+    // false - суммы по категориям не собираются (временные ряды без разбивки)
+    private final boolean byCategory;
+    private final MinorUnitSum income = new MinorUnitSum();
+    private final MinorUnitSum expense = new MinorUnitSum();
+    private long incomeCount;
+    private long expenseCount;
+    private final Map<UUID, MinorUnitSum> incomeByCategory = new HashMap<>();
+    private final Map<UUID, MinorUnitSum> expenseByCategory = new HashMap<>();
+
+    /**
+     * Накопитель для агрегатов в валюте по умолчанию
+     */
+    AnalyticsAccumulator() {
+        this(CurrencyConverter.identity());
+    }
+
+    AnalyticsAccumulator(CurrencyConverter converter) {
+        this(converter, true);
+    }
+
+    AnalyticsAccumulator(CurrencyConverter converter, boolean byCategory) {
+        this.converter = converter;
+        this.byCategory = byCategory;
+    }
+
+    void add(DailyRollup rollup) {
+        // переводы между счетами не доход и не расход
+        if (Operation.TRANSFER_CATEGORY_ID.equals(rollup.getCategoryId())) {
+            return;
+        }
+        long amount = converter.toReporting(rollup.getAmountMinor(), rollup.getCurrency(), rollup.getDate());
+        boolean isIncome = rollup.getType() == OperationType.INCOME;
+        if (isIncome) {
+            income.add(amount);
+            incomeCount += rollup.getCount();
+        } else {
+            expense.add(amount);
+            expenseCount += rollup.getCount();
+        }
+        if (byCategory && rollup.getCategoryId() != null) {
+            (isIncome ? incomeByCategory : expenseByCategory)
+                    .computeIfAbsent(rollup.getCategoryId(), (id) -> new MinorUnitSum())
+                    .add(amount);
+        }
+    }
+
+    /**
+     * Добавляет к этому накопителю итоги другого
+     * @return этот накопитель
+     */
+    AnalyticsAccumulator merge(AnalyticsAccumulator other) {
+        income.add(other.income);
+        expense.add(other.expense);
+        incomeCount += other.incomeCount;
+        expenseCount += other.expenseCount;
+        other.incomeByCategory.forEach((id, sum) -> incomeByCategory.computeIfAbsent(id, (key) -> new MinorUnitSum()).add(sum));
+        other.expenseByCategory.forEach((id, sum) -> expenseByCategory.computeIfAbsent(id, (key) -> new MinorUnitSum()).add(sum));
+        return this;
+    }
+
+    BigDecimal netIncome() {
+        return income.toBigDecimal().subtract(expense.toBigDecimal());
+    }
+
+    /**
+     * Суммы по категориям для выбранного типа операций
+     */
+    Map<UUID, BigDecimal> byCategory(OperationType type) {
+        return toBigDecimals(type == OperationType.INCOME ? incomeByCategory : expenseByCategory);
+    }
+
+    AnalyticsSummary toSummary() {
+        return new AnalyticsSummary(income.toBigDecimal(), expense.toBigDecimal(), incomeCount, expenseCount,
+                toBigDecimals(incomeByCategory), toBigDecimals(expenseByCategory), converter.getReportingCurrency());
+    }
+
+    private static Map<UUID, BigDecimal> toBigDecimals(Map<UUID, MinorUnitSum> sums) {
+        Map<UUID, BigDecimal> result = new HashMap<>();
+        sums.forEach((id, sum) -> result.put(id, sum.toBigDecimal()));
+        return result;
+    }
+
+    /**
+     * Сумма в копейках. Пока значение помещается в long, сложение не создаёт объектов;
+     * при переполнении накопленное переносится в BigDecimal, а long снова начинает с нуля
+     */
+    static final class MinorUnitSum {
+        private long minor;
+        private BigDecimal overflow;
+
+        void add(long value) {
+            long sum = minor + value;
+            // переполнение: знак результата отличается от знаков обоих слагаемых
+            if (((minor ^ sum) & (value ^ sum)) < 0) {
+                spill(Money.toBigDecimal(value));
+                return;
+            }
+            minor = sum;
+        }
+
+        void add(MinorUnitSum other) {
+            if (other.overflow != null) {
+                spill(other.overflow);
+            }
+            add(other.minor);
+        }
+
+        BigDecimal toBigDecimal() {
+            BigDecimal value = Money.toBigDecimal(minor);
+            return overflow == null ? value : overflow.add(value);
+        }
+
+        private void spill(BigDecimal amount) {
+            overflow = toBigDecimal().add(amount);
+            minor = 0;
+        }
+    }
+}
@@ -2,52 +2,188 @@ package org.tigerbank.finance.service;
 
 import org.tigerbank.finance.repository.IOperationRepository;
 import org.tigerbank.finance.repository.ICategoryRepository;
-import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.dto.AnalyticsSummary;
+import org.tigerbank.finance.dto.DailyRollup;
+import org.tigerbank.finance.dto.TimeGranularity;
+import org.tigerbank.finance.dto.TimeSeriesPoint;
 import org.tigerbank.finance.model.OperationType;
 import org.tigerbank.finance.model.Category;
+import org.tigerbank.finance.model.CategoryType;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
 
 @Service
 public class AnalyticsService implements  IAnalyticsService{
+    private static final String METRICS_NAME = "AnalyticsService";
+
+    /** ID и имя категории, в которую собираются суммы отсутствующих категорий (OrphanCategoryPolicy.UNKNOWN) */
+    public static final UUID UNKNOWN_CATEGORY_ID = new UUID(0, 0);
+    public static final String UNKNOWN_CATEGORY_NAME = "Неизвестная категория";
+
     private final IOperationRepository operationRepo;
     private final ICategoryRepository categoryRepo;
+    private final ParallelAnalyticsExecutor executor;
+    private final ServiceMetrics metrics;
+    private final CurrencyConverter converter;
 
+    /**
+     * Сервис, который всегда считает последовательно в вызывающем потоке
+     */
     public AnalyticsService(IOperationRepository operationRepo, ICategoryRepository categoryRepo) {
+        this(operationRepo, categoryRepo, ParallelAnalyticsExecutor.sequential());
+    }
+
+    /**
+     * Сервис без публикации метрик
+     */
+    public AnalyticsService(IOperationRepository operationRepo, ICategoryRepository categoryRepo,
+                            ParallelAnalyticsExecutor executor) {
+        this(operationRepo, categoryRepo, executor, ServiceMetrics.disabled());
+    }
+
+    /**
+     * Сервис для данных в одной валюте по умолчанию, без курсов
+     */
+    public AnalyticsService(IOperationRepository operationRepo, ICategoryRepository categoryRepo,
+                            ParallelAnalyticsExecutor executor, ServiceMetrics metrics) {
+        this(operationRepo, categoryRepo, executor, metrics, CurrencyConverter.identity());
+    }
+
+    @Autowired
+    public AnalyticsService(IOperationRepository operationRepo, ICategoryRepository categoryRepo,
+                            ParallelAnalyticsExecutor executor, ServiceMetrics metrics,
+                            CurrencyConverter converter) {
         this.operationRepo = operationRepo;
         this.categoryRepo = categoryRepo;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.converter = converter;
     }
 
+    /**
+     * @implNote Один проход по дневным агрегатам репозитория, см. {@link AnalyticsAccumulator}
+     */
     @Override
     public BigDecimal calculateNetIncome(LocalDate from, LocalDate to) {
-        List<Operation> ops = operationRepo.findByPeriod(from, to);
-        BigDecimal income = ops.stream()
-                .filter((op) -> op.getType() == OperationType.INCOME)
-                .map(Operation::getAmount)
-                .reduce(BigDecimal.ZERO,BigDecimal::add);
-        BigDecimal expense = ops.stream()
-                .filter((op) -> op.getType() == OperationType.EXPENSE)
-                .map(Operation::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        return income.subtract(expense);
+        return metrics.time(METRICS_NAME, "calculateNetIncome", () -> accumulate(from, to).netIncome());
     }
 
     /**
-     * @implNote Неизвестные категории(те у которых ID равен null) не попадают в результирующую выборку
+     * @implNote Неизвестные категории(те у которых ID равен null) не попадают в результирующую выборку.
+     * Если категория с ID из операции отсутствует в репозитории, бросается исключение ({@link OrphanCategoryPolicy#FAIL})
      */
     @Override
     public Map<Category, BigDecimal> groupByCategory(LocalDate from, LocalDate to, OperationType opType) {
-      return  operationRepo.findByPeriod(from, to).stream()
-              .filter((op) -> op.getType() == opType && op.getCategoryId() != null)
-              .collect(Collectors.groupingBy(
-                      (op) -> categoryRepo.findById(op.getCategoryId())
-                              .orElseThrow(() -> new IllegalArgumentException("Категория отсутствует")),
-                      Collectors.reducing(BigDecimal.ZERO, Operation::getAmount, BigDecimal::add)
-              ));
+        return groupByCategory(from, to, opType, OrphanCategoryPolicy.FAIL);
+    }
+
+    /**
+     * @implNote Суммы копятся по ID категории, и каждая категория ищется в репозитории
+     * один раз - после обхода, а не для каждой операции
+     */
+    @Override
+    public Map<Category, BigDecimal> groupByCategory(LocalDate from, LocalDate to, OperationType opType,
+                                                     OrphanCategoryPolicy orphanPolicy) {
+        if (opType == null || orphanPolicy == null) {
+            throw new IllegalArgumentException("Тип операции и политика не могут быть null");
+        }
+        return metrics.time(METRICS_NAME, "groupByCategory", () -> resolveCategories(from, to, opType, orphanPolicy));
+    }
+
+    private Map<Category, BigDecimal> resolveCategories(LocalDate from, LocalDate to, OperationType opType,
+                                                        OrphanCategoryPolicy orphanPolicy) {
+        Map<Category, BigDecimal> result = new HashMap<>();
+        Category unknown = null;
+        for (Map.Entry<UUID, BigDecimal> entry : accumulate(from, to).byCategory(opType).entrySet()) {
+            Optional<Category> category = categoryRepo.findById(entry.getKey());
+            if (category.isPresent()) {
+                result.put(category.get(), entry.getValue());
+                continue;
+            }
+            switch (orphanPolicy) {
+                case SKIP -> { }
+                case UNKNOWN -> {
+                    if (unknown == null) {
+                        unknown = Category.restore(UNKNOWN_CATEGORY_ID, UNKNOWN_CATEGORY_NAME,
+                                CategoryType.valueOf(opType.name()));
+                    }
+                    result.merge(unknown, entry.getValue(), BigDecimal::add);
+                }
+                case FAIL -> throw new IllegalArgumentException("Категория отсутствует: " + entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public AnalyticsSummary summarize(LocalDate from, LocalDate to) {
+        return metrics.time(METRICS_NAME, "summarize", () -> accumulate(from, to).toSummary());
+    }
+
+    /**
+     * @implNote Репозиторий отдаёт агрегаты, уже сведённые в интервалы ({@link IOperationRepository#findRollups}),
+     * и они раскладываются по накопителям интервалов за один проход. Интервальный агрегат в другой валюте
+     * не знает дней своих операций, поэтому такие суммы берутся из дневных агрегатов одним дополнительным
+     * запросом и переводятся по курсу на свой день - так же, как в summarize
+     */
+    @Override
+    public List<TimeSeriesPoint> timeSeries(LocalDate from, LocalDate to, TimeGranularity granularity,
+                                            boolean byCategory) {
+        return metrics.time(METRICS_NAME, "timeSeries", () -> buildTimeSeries(from, to, granularity, byCategory));
+    }
+
+    private List<TimeSeriesPoint> buildTimeSeries(LocalDate from, LocalDate to, TimeGranularity granularity,
+                                                  boolean byCategory) {
+        if (from == null || to == null || granularity == null) {
+            throw new IllegalArgumentException("Границы периода и размер интервала не могут быть null");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало периода позже его конца: " + from + " > " + to);
+        }
+        NavigableMap<LocalDate, AnalyticsAccumulator> buckets = new TreeMap<>();
+        for (LocalDate start = granularity.start(from); !start.isAfter(to); start = granularity.next(start)) {
+            buckets.put(start, new AnalyticsAccumulator(converter, byCategory));
+        }
+        LocalDate firstForeign = null;
+        LocalDate lastForeign = null;
+        for (DailyRollup rollup : operationRepo.findRollups(from, to, granularity)) {
+            if (rollup.getCurrency().equals(converter.getReportingCurrency())) {
+                buckets.get(rollup.getDate()).add(rollup);
+            } else {
+                firstForeign = firstForeign == null || rollup.getDate().isBefore(firstForeign) ? rollup.getDate() : firstForeign;
+                lastForeign = lastForeign == null || rollup.getDate().isAfter(lastForeign) ? rollup.getDate() : lastForeign;
+            }
+        }
+        if (firstForeign != null) {
+            LocalDate foreignFrom = firstForeign.isBefore(from) ? from : firstForeign;
+            LocalDate foreignTo = granularity.end(lastForeign).isAfter(to) ? to : granularity.end(lastForeign);
+            for (DailyRollup rollup : operationRepo.findDailyRollups(foreignFrom, foreignTo)) {
+                if (!rollup.getCurrency().equals(converter.getReportingCurrency())) {
+                    buckets.get(granularity.start(rollup.getDate())).add(rollup);
+                }
+            }
+        }
+        List<TimeSeriesPoint> points = new ArrayList<>(buckets.size());
+        buckets.forEach((start, accumulator) -> points.add(new TimeSeriesPoint(
+                start.isBefore(from) ? from : start,
+                granularity.end(start).isAfter(to) ? to : granularity.end(start),
+                accumulator.toSummary())));
+        return points;
+    }
+
+    // длинные периоды делятся на части и считаются параллельно, см. ParallelAnalyticsExecutor
+    private AnalyticsAccumulator accumulate(LocalDate from, LocalDate to) {
+        return executor.accumulate(from, to, operationRepo::findDailyRollups, converter);
     }
 }
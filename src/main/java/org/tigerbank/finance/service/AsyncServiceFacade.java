@@ -0,0 +1,115 @@
+package org.tigerbank.finance.service;
+
+import org.tigerbank.finance.dto.AnalyticsSummary;
+import org.tigerbank.finance.dto.OperationBatchResult;
+import org.tigerbank.finance.dto.OperationCursor;
+import org.tigerbank.finance.dto.OperationPage;
+import org.tigerbank.finance.dto.TimeGranularity;
+import org.tigerbank.finance.dto.TimeSeriesPoint;
+import org.tigerbank.finance.dto.TransferResult;
+import org.tigerbank.finance.model.Category;
+import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.model.OperationType;
+
+import org.springframework.stereotype.Service;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Асинхронный фасад сервисов для множества конкурентных сессий: каждый вызов
+ * {@link IOperationService} и {@link IAnalyticsService} выполняется через {@link RequestExecutor}
+ * в отдельном виртуальном потоке, с ограничением числа одновременных вызовов
+ */
+@Service
+public class AsyncServiceFacade {
+    private final IOperationService operationService;
+    private final IAnalyticsService analyticsService;
+    private final RequestExecutor executor;
+
+    public AsyncServiceFacade(IOperationService operationService,
+                              IAnalyticsService analyticsService,
+                              RequestExecutor executor) {
+        this.operationService = operationService;
+        this.analyticsService = analyticsService;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<Operation> addOperation(Operation operation) {
+        return executor.submit("addOperation", () -> operationService.addOperation(operation));
+    }
+
+    public CompletableFuture<OperationBatchResult> addOperations(Collection<Operation> operations) {
+        return executor.submit("addOperations", () -> operationService.addOperations(operations));
+    }
+
+    public CompletableFuture<TransferResult> transfer(UUID fromAccountId, UUID toAccountId, BigDecimal amount,
+                                                      LocalDate date, String description) {
+        return executor.submit("transfer",
+                () -> operationService.transfer(fromAccountId, toAccountId, amount, date, description));
+    }
+
+    public CompletableFuture<Void> deleteOperation(UUID operationId) {
+        return executor.submit("deleteOperation", () -> {
+            operationService.deleteOperation(operationId);
+            return null;
+        });
+    }
+
+    public CompletableFuture<List<Operation>> getAccountOperations(UUID accountId) {
+        return executor.submit("getAccountOperations", () -> operationService.getAccountOperations(accountId));
+    }
+
+    public CompletableFuture<OperationPage> getAccountOperations(UUID accountId, OperationCursor after, int limit) {
+        return executor.submit("getAccountOperationsPage", () -> operationService.getAccountOperations(accountId, after, limit));
+    }
+
+    public CompletableFuture<BigDecimal> getAccountBalance(UUID accountId) {
+        return executor.submit("getAccountBalance", () -> operationService.getAccountBalance(accountId));
+    }
+
+    public CompletableFuture<Map<UUID, BigDecimal>> getAccountBalances(Collection<UUID> accountIds) {
+        return executor.submit("getAccountBalances", () -> operationService.getAccountBalances(accountIds));
+    }
+
+    public CompletableFuture<BigDecimal> getAccountBalance(UUID accountId, LocalDate date) {
+        return executor.submit("getAccountBalanceAt", () -> operationService.getAccountBalance(accountId, date));
+    }
+
+    public CompletableFuture<NavigableMap<LocalDate, BigDecimal>> getBalanceHistory(UUID accountId,
+                                                                                   LocalDate from, LocalDate to) {
+        return executor.submit("getBalanceHistory", () -> operationService.getBalanceHistory(accountId, from, to));
+    }
+
+    public CompletableFuture<BigDecimal> calculateNetIncome(LocalDate from, LocalDate to) {
+        return executor.submit("calculateNetIncome", () -> analyticsService.calculateNetIncome(from, to));
+    }
+
+    public CompletableFuture<Map<Category, BigDecimal>> groupByCategory(LocalDate from, LocalDate to,
+                                                                        OperationType type,
+                                                                        OrphanCategoryPolicy orphanPolicy) {
+        return executor.submit("groupByCategory",
+                () -> analyticsService.groupByCategory(from, to, type, orphanPolicy));
+    }
+
+    public CompletableFuture<AnalyticsSummary> summarize(LocalDate from, LocalDate to) {
+        return executor.submit("summarize", () -> analyticsService.summarize(from, to));
+    }
+
+    public CompletableFuture<List<TimeSeriesPoint>> timeSeries(LocalDate from, LocalDate to,
+                                                               TimeGranularity granularity, boolean byCategory) {
+        return executor.submit("timeSeries", () -> analyticsService.timeSeries(from, to, granularity, byCategory));
+    }
+
+    /**
+     * Гистограммы задержек по вызовам фасада
+     */
+    public Map<String, LatencyHistogram> latencies() {
+        return executor.latencies();
+    }
+}
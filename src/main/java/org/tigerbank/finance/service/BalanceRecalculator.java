@@ -1,37 +1,142 @@
 package org.tigerbank.finance.service;
 
 import org.tigerbank.finance.model.BankAccount;
+import org.tigerbank.finance.model.Money;
 import org.tigerbank.finance.model.Operation;
 import org.tigerbank.finance.repository.IBankAccountRepository;
 import org.tigerbank.finance.repository.IOperationRepository;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
 public class BalanceRecalculator implements IBalanceRecalculator {
+    private static final String METRICS_NAME = "BalanceRecalculator";
+
     private final IBankAccountRepository accountRepo;
     private final IOperationRepository operationRepo;
+    private final AccountLockManager locks;
+    private final ServiceMetrics metrics;
+
+    /**
+     * Сервис без публикации метрик
+     */
+    public BalanceRecalculator(IBankAccountRepository accountRepo,
+                               IOperationRepository operationRepo,
+                               AccountLockManager locks) {
+        this(accountRepo, operationRepo, locks, ServiceMetrics.disabled());
+    }
 
+    @Autowired
     public BalanceRecalculator(IBankAccountRepository accountRepo,
-                               IOperationRepository operationRepo) {
+                               IOperationRepository operationRepo,
+                               AccountLockManager locks,
+                               ServiceMetrics metrics) {
         this.accountRepo = accountRepo;
         this.operationRepo = operationRepo;
+        this.locks = locks;
+        this.metrics = metrics;
     }
 
+    /**
+     * @implNote Суммирование и запись баланса выполняются под блокировкой счёта,
+     * иначе операция, добавленная между ними, потерялась бы
+     */
     @Override
     public void recalculateBalance(UUID accountId) {
-        BankAccount account = accountRepo.findById(accountId)
+        metrics.time(METRICS_NAME, "recalculateBalance", () -> locks.withLock(accountId, () -> {
+            BankAccount account = findAccount(accountId);
+            account.setBalanceUnsafe(sumOperations(accountId));
+            accountRepo.save(account);
+            return null;
+        }));
+    }
+
+    @Override
+    public void applyOperation(Operation operation) {
+        applyDelta(operation.getBankAccountId(), operation.getSignedAmountMinor());
+    }
+
+    @Override
+    public void applyDelta(UUID accountId, BigDecimal delta) {
+        if (delta == null) {
+            throw new IllegalArgumentException("Изменение баланса не может быть null");
+        }
+        applyDelta(accountId, Money.toMinorUnits(delta));
+    }
+
+    @Override
+    public void applyDelta(UUID accountId, long minorDelta) {
+        BankAccount account = findAccount(accountId);
+        account.applyDelta(minorDelta);
+        // сохраняем, чтобы изменение баланса дошло до журнала репозитория;
+        // счёт изменяется на месте, поэтому при ошибке записи баланс возвращается здесь
+        try {
+            accountRepo.save(account);
+        } catch (RuntimeException e) {
+            account.applyDelta(-minorDelta);
+            throw e;
+        }
+    }
+
+    @Override
+    public void revertOperation(Operation operation) {
+        applyDelta(operation.getBankAccountId(), -operation.getSignedAmountMinor());
+    }
+
+    @Override
+    public List<UUID> verifyAll() {
+        return metrics.time(METRICS_NAME, "verifyAll", this::verifyAllLocked);
+    }
+
+    // список счетов берётся без блокировок, поэтому под блокировкой счёт читается заново:
+    // импорт мог подменить репозиторий, и прежний экземпляр удалён или устарел
+    private List<UUID> verifyAllLocked() {
+        List<UUID> repaired = new ArrayList<>();
+        for (BankAccount listed : accountRepo.findAll()) {
+            UUID id = listed.getId();
+            boolean fixed = locks.withLock(id, () -> {
+                Optional<BankAccount> current = accountRepo.findById(id);
+                if (current.isEmpty()) {
+                    return false;
+                }
+                BankAccount account = current.get();
+                long expected = sumOperations(id);
+                if (account.getBalanceMinor() == expected) {
+                    return false;
+                }
+                account.setBalanceUnsafe(expected);
+                accountRepo.save(account);
+                return true;
+            });
+            if (fixed) {
+                repaired.add(id);
+            }
+        }
+        return repaired;
+    }
+
+    private BankAccount findAccount(UUID accountId) {
+        return accountRepo.findById(accountId)
                 .orElseThrow(() -> new IllegalArgumentException(
                         "Счет не найден: " + accountId));
+    }
 
-        BigDecimal newBalance = operationRepo.findByAccountId(accountId)
-                .stream()
-                .map(Operation::getAmountWithSign)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        account.setBalanceUnsafe(newBalance);
-        accountRepo.save(account);
+    // сумма в копейках: без BigDecimal на каждую операцию.
+    // Время пересчёта пишется в метрики с разбивкой по числу операций счёта
+    private long sumOperations(UUID accountId) {
+        long started = System.nanoTime();
+        List<Operation> operations = operationRepo.findByAccountId(accountId);
+        long sum = 0;
+        for (Operation operation : operations) {
+            sum = Money.add(sum, operation.getSignedAmountMinor());
+        }
+        metrics.recalculation(operations.size(), System.nanoTime() - started);
+        return sum;
     }
 }
@@ -0,0 +1,32 @@
+package org.tigerbank.finance.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Периодическая сверка балансов: инкрементальный учёт быстрый, но полный пересчёт
+ * остаётся страховкой от расхождений. Интервал задаётся свойством finance.balance.verify-interval-ms.
+ * Исправленные счета попадают в счётчик finance.balance.repaired и в лог, а не в stdout консоли
+ */
+@Component
+public class BalanceVerificationTask {
+    private final IBalanceRecalculator recalculator;
+    private final ServiceMetrics metrics;
+
+    public BalanceVerificationTask(IBalanceRecalculator recalculator) {
+        this(recalculator, ServiceMetrics.disabled());
+    }
+
+    @Autowired
+    public BalanceVerificationTask(IBalanceRecalculator recalculator, ServiceMetrics metrics) {
+        this.recalculator = recalculator;
+        this.metrics = metrics;
+    }
+
+    @Scheduled(initialDelayString = "${finance.balance.verify-interval-ms:3600000}",
+               fixedDelayString = "${finance.balance.verify-interval-ms:3600000}")
+    public void verifyBalances() {
+        metrics.balancesRepaired(recalculator.verifyAll());
+    }
+}
@@ -0,0 +1,282 @@
+package org.tigerbank.finance.service;
+
+import org.tigerbank.finance.model.*;
+import org.tigerbank.finance.repository.IBankAccountRepository;
+import org.tigerbank.finance.repository.ICategoryRepository;
+import org.tigerbank.finance.repository.IOperationRepository;
+import org.tigerbank.finance.repository.ISnapshotWriter;
+import org.tigerbank.finance.storage.BinaryChannelReader;
+import org.tigerbank.finance.storage.BinaryChannelWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Экспорт/импорт в компактный версионируемый бинарный снимок.
+ * <pre>
+ * заголовок: magic "TGBS" (int), версия (short)
+ * записи:    тег (byte) + тело, тег 0 завершает последовательность
+ *   1 счёт:      id (2 long), имя (строка), баланс (long, копейки), валюта (строка, код ISO 4217)
+ *   2 категория: id (2 long), тип (byte), имя (строка)
+ *   3 операция:  id (2 long), тип (byte), счёт (2 long), сумма (long, копейки), валюта (строка),
+ *                дата (int, день от эпохи), описание (строка), категория (int, индекс словаря)
+ * трейлер:   число записей (long), CRC32C всех байтов до трейлера (int)
+ * </pre>
+ * Словарь категорий - порядок записей категорий в файле. Индекс -1 означает операцию
+ * без категории, индекс, равный текущему размеру словаря, - новую запись словаря,
+ * за которой следует UUID (категория, которой нет в репозитории).
+ * <p>
+ * Снимки версии 1 не содержат валют и читаются в валюте по умолчанию.
+ */
+@Service("binaryDataService")
+public class BinaryDataService implements IDataService {
+    static final int MAGIC = 0x54474253;
+    static final short VERSION = 2;
+    private static final short VERSION_WITHOUT_CURRENCY = 1;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private static final byte TAG_END = 0;
+    private static final byte TAG_ACCOUNT = 1;
+    private static final byte TAG_CATEGORY = 2;
+    private static final byte TAG_OPERATION = 3;
+    private static final int NO_CATEGORY = -1;
+
+    private static final OperationType[] OPERATION_TYPES = OperationType.values();
+    private static final CategoryType[] CATEGORY_TYPES = CategoryType.values();
+
+    private final IBankAccountRepository accountRepo;
+    private final ICategoryRepository categoryRepo;
+    private final IOperationRepository operationRepo;
+    private final AccountLockManager locks;
+    private final ServiceMetrics metrics;
+
+    /**
+     * Сервис без публикации метрик (например, для контрольных точек журнала). Подмена содержимого при импорте
+     * не упорядочивается с изменениями через сервисы - у сервиса свои блокировки
+     */
+    public BinaryDataService(IBankAccountRepository accountRepo,
+                             ICategoryRepository categoryRepo,
+                             IOperationRepository operationRepo) {
+        this(accountRepo, categoryRepo, operationRepo, new AccountLockManager(1), ServiceMetrics.disabled());
+    }
+
+    public BinaryDataService(IBankAccountRepository accountRepo,
+                             ICategoryRepository categoryRepo,
+                             IOperationRepository operationRepo,
+                             ServiceMetrics metrics) {
+        this(accountRepo, categoryRepo, operationRepo, new AccountLockManager(1), metrics);
+    }
+
+    @Autowired
+    public BinaryDataService(IBankAccountRepository accountRepo,
+                             ICategoryRepository categoryRepo,
+                             IOperationRepository operationRepo,
+                             AccountLockManager locks,
+                             ServiceMetrics metrics) {
+        this.accountRepo = accountRepo;
+        this.categoryRepo = categoryRepo;
+        this.operationRepo = operationRepo;
+        this.locks = locks;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void exportToFile(String filename) throws IOException {
+        long started = System.nanoTime();
+        long records = 0;
+        long bytes;
+
+        try (FileChannel channel = FileChannel.open(Path.of(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            BinaryChannelWriter out = new BinaryChannelWriter(channel, BUFFER_SIZE);
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+
+            // категории пишем первыми: их порядок задаёт словарь для операций
+            Map<UUID, Integer> dictionary = new HashMap<>();
+            for (Iterator<Category> it = categoryRepo.streamAll().iterator(); it.hasNext(); records++) {
+                Category category = it.next();
+                dictionary.put(category.getId(), dictionary.size());
+                out.writeByte(TAG_CATEGORY);
+                out.writeUuid(category.getId());
+                out.writeByte(category.getType().ordinal());
+                out.writeString(category.getName());
+            }
+            for (Iterator<BankAccount> it = accountRepo.streamAll().iterator(); it.hasNext(); records++) {
+                BankAccount account = it.next();
+                out.writeByte(TAG_ACCOUNT);
+                out.writeUuid(account.getId());
+                out.writeString(account.getName());
+                out.writeLong(account.getBalanceMinor());
+                out.writeString(account.getCurrency().getCurrencyCode());
+            }
+            for (Iterator<Operation> it = operationRepo.streamAll().iterator(); it.hasNext(); records++) {
+                Operation operation = it.next();
+                out.writeByte(TAG_OPERATION);
+                out.writeUuid(operation.getId());
+                out.writeByte(operation.getType().ordinal());
+                out.writeUuid(operation.getBankAccountId());
+                out.writeLong(operation.getAmountMinor());
+                out.writeString(operation.getCurrency().getCurrencyCode());
+                out.writeDate(operation.getDate());
+                out.writeString(operation.getDescription());
+                writeCategoryRef(out, dictionary, operation.getCategoryId());
+            }
+            out.writeByte(TAG_END);
+
+            int checksum = out.finish();
+            out.writeRaw(ByteBuffer.allocate(TRAILER_SIZE).putLong(records).putInt(checksum).flip());
+            channel.force(false);
+            bytes = channel.size();
+        }
+        metrics.dataTransfer("binary", "export", bytes, records, System.nanoTime() - started);
+        System.out.println("Экспорт завершён: " + filename);
+        printThroughput(records, started);
+    }
+
+    /**
+     * @implNote Данные накапливаются в новых снимках репозиториев и подменяют текущие
+     * только после проверки версии, числа записей и контрольной суммы. Подмена выполняется
+     * под блокировками всех счетов, как в {@link JsonDataService#importFromFile}
+     */
+    @Override
+    public void importFromFile(String filename) throws IOException {
+        long started = System.nanoTime();
+        ISnapshotWriter<BankAccount> accountSnapshot = accountRepo.newSnapshot();
+        ISnapshotWriter<Category> categorySnapshot = categoryRepo.newSnapshot();
+        ISnapshotWriter<Operation> operationSnapshot = operationRepo.newSnapshot();
+
+        long records = 0;
+        long bytes;
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            bytes = channel.size();
+            BinaryChannelReader in = new BinaryChannelReader(channel, BUFFER_SIZE);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Файл не является бинарным снимком: " + filename);
+            }
+            short version = in.readShort();
+            if (version != VERSION && version != VERSION_WITHOUT_CURRENCY) {
+                throw new IOException("Неподдерживаемая версия снимка: " + version);
+            }
+
+            List<UUID> dictionary = new ArrayList<>();
+            for (byte tag = in.readByte(); tag != TAG_END; tag = in.readByte(), records++) {
+                switch (tag) {
+                    case TAG_CATEGORY -> {
+                        UUID id = in.readUuid();
+                        CategoryType type = readType(in, CATEGORY_TYPES);
+                        categorySnapshot.save(Category.restore(id, in.readString(), type));
+                        dictionary.add(id);
+                    }
+                    case TAG_ACCOUNT -> accountSnapshot.save(BankAccount.restore(
+                            in.readUuid(),
+                            in.readString(),
+                            in.readAmount(),
+                            readCurrency(in, version)));
+                    case TAG_OPERATION -> operationSnapshot.save(Operation.restore(
+                            in.readUuid(),
+                            readType(in, OPERATION_TYPES),
+                            in.readUuid(),
+                            in.readAmount(),
+                            readCurrency(in, version),
+                            in.readDate(),
+                            in.readString(),
+                            readCategoryRef(in, dictionary)));
+                    default -> throw new IOException("Неизвестный тег записи: " + tag);
+                }
+            }
+
+            int actualChecksum = in.checksum();
+            long expectedRecords = in.readLong();
+            int expectedChecksum = in.readInt();
+            if (expectedRecords != records || expectedChecksum != actualChecksum) {
+                throw new IOException("Снимок повреждён: не совпадает контрольная сумма или число записей");
+            }
+            if (in.position() != channel.size()) {
+                throw new IOException("Снимок повреждён: лишние байты после трейлера: " + (channel.size() - in.position()));
+            }
+        } catch (IOException | RuntimeException e) {
+            discard(accountSnapshot, categorySnapshot, operationSnapshot);
+            throw e;
+        }
+
+        swap(accountSnapshot, categorySnapshot, operationSnapshot);
+        metrics.dataTransfer("binary", "import", bytes, records, System.nanoTime() - started);
+        System.out.println("Импорт завершён из: " + filename);
+        printThroughput(records, started);
+    }
+
+    // контрольную точку журнала (если он есть) делает только последний commit
+    private void swap(ISnapshotWriter<BankAccount> accounts, ISnapshotWriter<Category> categories,
+                      ISnapshotWriter<Operation> operations) {
+        locks.withAllLocks(() -> {
+            accounts.publish();
+            categories.publish();
+            operations.commit();
+            return null;
+        });
+    }
+
+    // прерванный импорт: файловое хранилище удаляет уже построенное поколение
+    private static void discard(ISnapshotWriter<?>... snapshots) {
+        for (ISnapshotWriter<?> snapshot : snapshots) {
+            snapshot.discard();
+        }
+    }
+
+    private static void writeCategoryRef(BinaryChannelWriter out, Map<UUID, Integer> dictionary,
+                                         UUID categoryId) throws IOException {
+        if (categoryId == null) {
+            out.writeInt(NO_CATEGORY);
+            return;
+        }
+        Integer index = dictionary.get(categoryId);
+        if (index != null) {
+            out.writeInt(index);
+            return;
+        }
+        // категории нет в репозитории - дописываем её в словарь прямо здесь
+        out.writeInt(dictionary.size());
+        out.writeUuid(categoryId);
+        dictionary.put(categoryId, dictionary.size());
+    }
+
+    private static UUID readCategoryRef(BinaryChannelReader in, List<UUID> dictionary) throws IOException {
+        int index = in.readInt();
+        if (index == NO_CATEGORY) {
+            return null;
+        }
+        if (index == dictionary.size()) {
+            dictionary.add(in.readUuid());
+        }
+        if (index < 0 || index >= dictionary.size()) {
+            throw new IOException("Неверный индекс категории в снимке: " + index);
+        }
+        return dictionary.get(index);
+    }
+
+    private static <T> T readType(BinaryChannelReader in, T[] types) throws IOException {
+        byte index = in.readByte();
+        if (index < 0 || index >= types.length) {
+            throw new IOException("Неизвестный тип в снимке: " + index);
+        }
+        return types[index];
+    }
+
+    private static Currency readCurrency(BinaryChannelReader in, short version) throws IOException {
+        return version == VERSION_WITHOUT_CURRENCY ? Money.DEFAULT_CURRENCY : Money.currency(in.readString());
+    }
+
+    private static void printThroughput(long records, long started) {
+        double seconds = Math.max(System.nanoTime() - started, 1) / 1e9;
+        System.out.printf("   Записей: %d, скорость: %,.0f записей/с%n", records, records / seconds);
+    }
+}
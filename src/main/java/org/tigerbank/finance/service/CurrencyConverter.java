@@ -0,0 +1,143 @@
+package org.tigerbank.finance.service;
+
+import org.tigerbank.finance.model.Money;
+import org.tigerbank.finance.repository.IExchangeRateProvider;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Перевод сумм в копейках в валюту отчётов (finance.fx.reporting-currency) по курсам
+ * из {@link IExchangeRateProvider}. Время делится на интервалы по finance.fx.cache-bucket-days дней;
+ * курс валюты запрашивается у источника один раз на интервал (на его первый день) и кешируется
+ * как long с {@value #RATE_SCALE} знаками после запятой. Перевод суммы - умножение и деление в long;
+ * BigDecimal нужен, только если произведение не помещается в long.
+ * Суммы в валюте отчётов не пересчитываются и не требуют курсов.
+ * Кеш ограничен {@value #MAX_CACHED_RATES} курсами и вытесняет давно не запрошенные:
+ * длинный период при интервале в 1 день не сбрасывает курсы, которые продолжают читаться
+ */
+@Component
+public class CurrencyConverter {
+    static final int RATE_SCALE = 8;
+    private static final long RATE_UNIT = 100_000_000L;
+    static final int MAX_CACHED_RATES = 100_000;
+    private static final CurrencyConverter IDENTITY =
+            new CurrencyConverter((from, to, date) -> Optional.empty(), Money.DEFAULT_CURRENCY.getCurrencyCode(), 1);
+
+    private final IExchangeRateProvider rates;
+    private final Currency reportingCurrency;
+    private final int bucketDays;
+    // LRU: порядок доступа, самый давний курс вытесняется при переполнении; доступ под cacheLock
+    private final Map<RateKey, Long> cache;
+    private final Object cacheLock = new Object();
+
+    @Autowired
+    public CurrencyConverter(IExchangeRateProvider rates,
+                             @Value("${finance.fx.reporting-currency:RUB}") String reportingCurrency,
+                             @Value("${finance.fx.cache-bucket-days:1}") int bucketDays) {
+        this(rates, reportingCurrency, bucketDays, MAX_CACHED_RATES);
+    }
+
+    CurrencyConverter(IExchangeRateProvider rates, String reportingCurrency, int bucketDays, int maxCachedRates) {
+        if (bucketDays < 1) {
+            throw new IllegalArgumentException("Интервал кеша курсов должен быть положительным: " + bucketDays);
+        }
+        this.rates = rates;
+        this.reportingCurrency = Money.currency(reportingCurrency);
+        this.bucketDays = bucketDays;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RateKey, Long> eldest) {
+                return size() > maxCachedRates;
+            }
+        };
+    }
+
+    /**
+     * Конвертер без курсов с отчётами в валюте по умолчанию - для сервисов, созданных вне Spring
+     */
+    public static CurrencyConverter identity() {
+        return IDENTITY;
+    }
+
+    public Currency getReportingCurrency() {
+        return reportingCurrency;
+    }
+
+    /**
+     * Переводит сумму в копейках в валюту отчётов с округлением HALF_UP
+     * @param date дата операции: по ней выбирается курс
+     * @throws IllegalArgumentException если курса на дату нет
+     */
+    public long toReporting(long amountMinor, Currency currency, LocalDate date) {
+        if (currency.equals(reportingCurrency)) {
+            return amountMinor;
+        }
+        return multiply(amountMinor, rate(currency, date));
+    }
+
+    /**
+     * Курс currency -> валюта отчётов на интервал, содержащий date, в единицах 10^-{@value #RATE_SCALE}
+     */
+    long rate(Currency currency, LocalDate date) {
+        long bucket = Math.floorDiv(date.toEpochDay(), bucketDays);
+        RateKey key = new RateKey(currency, bucket);
+        Long cached;
+        synchronized (cacheLock) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            return cached;
+        }
+        LocalDate bucketStart = LocalDate.ofEpochDay(bucket * bucketDays);
+        BigDecimal rate = rates.findRate(currency, reportingCurrency, bucketStart)
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "Нет курса " + currency + " -> " + reportingCurrency + " на " + bucketStart));
+        long scaled;
+        try {
+            scaled = rate.setScale(RATE_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Курс вне допустимого диапазона: " + rate);
+        }
+        // курс запрашивается у источника вне блокировки: параллельный промах по тому же ключу
+        // запросит его ещё раз и запишет то же значение
+        synchronized (cacheLock) {
+            cache.put(key, scaled);
+        }
+        return scaled;
+    }
+
+    // amountMinor * rate / RATE_UNIT с округлением HALF_UP
+    private static long multiply(long amountMinor, long rate) {
+        long high = Math.multiplyHigh(amountMinor, rate);
+        long low = amountMinor * rate;
+        // произведение помещается в long, если старшая половина - продолжение знака младшей
+        if (high == (low >> 63)) {
+            long quotient = low / RATE_UNIT;
+            long remainder = low % RATE_UNIT;
+            if (Math.abs(remainder) * 2 >= RATE_UNIT) {
+                quotient += Long.signum(low);
+            }
+            return quotient;
+        }
+        try {
+            return BigDecimal.valueOf(amountMinor)
+                    .multiply(BigDecimal.valueOf(rate, RATE_SCALE))
+                    .setScale(0, RoundingMode.HALF_UP)
+                    .longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Переполнение денежной суммы при конвертации");
+        }
+    }
+
+    private record RateKey(Currency currency, long bucket) {
+    }
+}
@@ -1,27 +1,67 @@
 package org.tigerbank.finance.service;
 
+import org.tigerbank.finance.dto.AnalyticsSummary;
+import org.tigerbank.finance.dto.TimeGranularity;
+import org.tigerbank.finance.dto.TimeSeriesPoint;
 import org.tigerbank.finance.model.Category;
 import org.tigerbank.finance.model.OperationType;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Аналитика по операциям. Все суммы - в валюте отчётов (finance.fx.reporting-currency):
+ * операции в других валютах переводятся по курсу на дату операции (при finance.fx.cache-bucket-days больше 1 -
+ * на первый день интервала кеша, см. {@link CurrencyConverter}). Правило одно для всех методов
+ */
 public interface IAnalyticsService {
     /**
      * Расчет чистой прибыли за период
-     * @param from От
-     * @param to До
+     * @param from От (включительно)
+     * @param to До (включительно)
      * @return Чистая прибыль
      */
     BigDecimal calculateNetIncome(LocalDate from, LocalDate to);
 
     /**
      * Группировка по категориям сумм выбранного типа операций(доход/расход) за указанный период
-     * @param from От
-     * @param to До
+     * @param from От (включительно)
+     * @param to До (включительно)
      * @param type Тип операции
      * @return Возвращает отображение категория -> сумма по операциям
      */
     Map<Category, BigDecimal> groupByCategory(LocalDate from, LocalDate to, OperationType type);
+
+    /**
+     * Группировка по категориям с явной политикой для операций, чья категория не найдена
+     * @param from От (включительно)
+     * @param to До (включительно)
+     * @param type Тип операции
+     * @param orphanPolicy Что делать с суммами по отсутствующим категориям
+     * @return Возвращает отображение категория -> сумма по операциям
+     */
+    Map<Category, BigDecimal> groupByCategory(LocalDate from, LocalDate to, OperationType type,
+                                              OrphanCategoryPolicy orphanPolicy);
+
+    /**
+     * Итоги за период за один проход: доходы, расходы, число операций и суммы по категориям
+     * @param from От (включительно)
+     * @param to До (включительно)
+     * @return Итоги за период
+     */
+    AnalyticsSummary summarize(LocalDate from, LocalDate to);
+
+    /**
+     * Временной ряд итогов по интервалам за один запрос: по точке на каждый день, неделю или месяц
+     * периода, включая интервалы без операций. Суммы в других валютах, как и в остальных методах,
+     * переводятся по курсу на дату операции, поэтому точки ряда сходятся с summarize за те же интервалы
+     * @param from От (включительно)
+     * @param to До (включительно)
+     * @param granularity Размер интервала
+     * @param byCategory Собирать ли в каждой точке суммы по категориям
+     * @return Точки ряда в порядке дат
+     */
+    List<TimeSeriesPoint> timeSeries(LocalDate from, LocalDate to, TimeGranularity granularity, boolean byCategory);
 }
@@ -1,7 +1,53 @@
 package org.tigerbank.finance.service;
 
+import org.tigerbank.finance.model.Operation;
+
+import java.math.BigDecimal;
+import java.util.List;
 import java.util.UUID;
 
 public interface IBalanceRecalculator {
+    /**
+     * Полный пересчёт баланса счёта по всем его операциям.
+     * Используется как проверка/восстановление, а не на каждой операции
+     * @param accountId ID счёта
+     */
     void recalculateBalance(UUID accountId);
+
+    /**
+     * Инкрементально добавляет к балансу счёта вклад операции (со знаком)
+     * @param operation добавляемая операция
+     * @throws IllegalArgumentException если счёт не найден или средств недостаточно
+     */
+    void applyOperation(Operation operation);
+
+    /**
+     * Инкрементально изменяет баланс счёта на заданную величину.
+     * Используется пакетным добавлением, чтобы применить суммарное изменение по счёту один раз
+     * @param accountId ID счёта
+     * @param delta изменение баланса со знаком
+     * @throws IllegalArgumentException если счёт не найден или средств недостаточно
+     */
+    void applyDelta(UUID accountId, BigDecimal delta);
+
+    /**
+     * То же, что {@link #applyDelta(UUID, BigDecimal)}, но изменение задано в копейках
+     * @param accountId ID счёта
+     * @param minorDelta изменение баланса со знаком в копейках
+     * @throws IllegalArgumentException если счёт не найден или средств недостаточно
+     */
+    void applyDelta(UUID accountId, long minorDelta);
+
+    /**
+     * Инкрементально убирает из баланса счёта вклад операции
+     * @param operation удаляемая операция
+     * @throws IllegalArgumentException если счёт не найден или баланс станет отрицательным
+     */
+    void revertOperation(Operation operation);
+
+    /**
+     * Сверяет балансы всех счетов с суммой их операций и исправляет расхождения
+     * @return ID счетов, баланс которых пришлось исправить
+     */
+    List<UUID> verifyAll();
 }
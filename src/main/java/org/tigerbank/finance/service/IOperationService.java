@@ -1,14 +1,76 @@
 package org.tigerbank.finance.service;
 
+import org.tigerbank.finance.dto.OperationBatchResult;
+import org.tigerbank.finance.dto.OperationCursor;
+import org.tigerbank.finance.dto.OperationPage;
+import org.tigerbank.finance.dto.TransferResult;
 import org.tigerbank.finance.model.Operation;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.UUID;
 
 public interface IOperationService {
      Operation addOperation(Operation operation);
+
+     /**
+      * Пакетное добавление операций (например, импорт выписки).
+      * Ошибочные строки не прерывают пакет, а попадают в результат
+      * @param operations добавляемые операции
+      * @return сохранённые операции и ошибки по строкам
+      */
+     OperationBatchResult addOperations(Collection<Operation> operations);
+
+     /**
+      * Перевод между счетами: расход на счёте-отправителе и доход на счёте-получателе
+      * выполняются атомарно - либо оба, либо ни одного
+      * @param fromAccountId счёт-отправитель
+      * @param toAccountId счёт-получатель
+      * @param amount сумма перевода (положительная)
+      * @param date дата перевода
+      * @param description описание (может быть null)
+      * @return пара созданных операций
+      * @throws IllegalArgumentException если счёт не найден, счета совпадают или не хватает средств
+      */
+     TransferResult transfer(UUID fromAccountId, UUID toAccountId, BigDecimal amount, LocalDate date, String description);
+
+     /**
+      * Удаляет операцию и возвращает её сумму из баланса счёта
+      * @throws IllegalArgumentException если операция не найдена или это часть перевода ({@link Operation#isTransfer()})
+      */
      void deleteOperation(UUID operationId);
      List<Operation> getAccountOperations(UUID accountId);
+
+     /**
+      * Страница операций счёта в порядке даты, а внутри дня - ID
+      * @param after позиция из {@link OperationPage#getNext()} предыдущей страницы; null - первая страница
+      * @param limit размер страницы, от 1 до {@link OperationPage#MAX_SIZE}
+      */
+     OperationPage getAccountOperations(UUID accountId, OperationCursor after, int limit);
      BigDecimal getAccountBalance(UUID accountId);
+
+     /**
+      * Балансы нескольких счетов на один момент: перевод между ними виден целиком или не виден
+      * @return ID счёта -> баланс, в порядке accountIds
+      * @throws IllegalArgumentException если какой-то счёт не найден
+      */
+     Map<UUID, BigDecimal> getAccountBalances(Collection<UUID> accountIds);
+
+     /**
+      * Баланс счёта на конец дня date - сумма его операций с датой не позже date,
+      * включая операции, добавленные задним числом
+      * @throws IllegalArgumentException если счёт не найден
+      */
+     BigDecimal getAccountBalance(UUID accountId, LocalDate date);
+
+     /**
+      * Баланс счёта на конец каждого дня периода
+      * @return дата -> баланс, по записи на каждый день от from до to включительно
+      * @throws IllegalArgumentException если счёт не найден или from позже to
+      */
+     NavigableMap<LocalDate, BigDecimal> getBalanceHistory(UUID accountId, LocalDate from, LocalDate to);
 }
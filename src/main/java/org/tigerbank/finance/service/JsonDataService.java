@@ -1,7 +1,13 @@
 package org.tigerbank.finance.service;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.tigerbank.finance.dto.FinanceData;
@@ -14,26 +20,68 @@ import org.tigerbank.finance.model.Operation;
 import org.tigerbank.finance.repository.IBankAccountRepository;
 import org.tigerbank.finance.repository.ICategoryRepository;
 import org.tigerbank.finance.repository.IOperationRepository;
+import org.tigerbank.finance.repository.ISnapshotWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
+@Primary
 public class JsonDataService implements IDataService {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int CHUNK_SIZE = 10_000;
 
     private final IBankAccountRepository accountRepo;
     private final ICategoryRepository categoryRepo;
     private final IOperationRepository operationRepo;
     private final ObjectMapper objectMapper;
+    private final AccountLockManager locks;
+    private final ServiceMetrics metrics;
 
+    /**
+     * Сервис без публикации метрик. Подмена содержимого при импорте
+     * не упорядочивается с изменениями через сервисы - у сервиса свои блокировки
+     */
     public JsonDataService(IBankAccountRepository accountRepo,
                            ICategoryRepository categoryRepo,
                            IOperationRepository operationRepo) {
+        this(accountRepo, categoryRepo, operationRepo, new AccountLockManager(1), ServiceMetrics.disabled());
+    }
+
+    public JsonDataService(IBankAccountRepository accountRepo,
+                           ICategoryRepository categoryRepo,
+                           IOperationRepository operationRepo,
+                           ServiceMetrics metrics) {
+        this(accountRepo, categoryRepo, operationRepo, new AccountLockManager(1), metrics);
+    }
+
+    @Autowired
+    public JsonDataService(IBankAccountRepository accountRepo,
+                           ICategoryRepository categoryRepo,
+                           IOperationRepository operationRepo,
+                           AccountLockManager locks,
+                           ServiceMetrics metrics) {
         this.accountRepo = accountRepo;
         this.categoryRepo = categoryRepo;
         this.operationRepo = operationRepo;
+        this.locks = locks;
+        this.metrics = metrics;
 
         // Настраиваем ObjectMapper с Mixin'ами
         this.objectMapper = new ObjectMapper();
@@ -47,35 +95,158 @@ public class JsonDataService implements IDataService {
 
     @Override
     public void exportToFile(String filename) throws IOException {
-        FinanceData data = new FinanceData(
-                accountRepo.findAll(),
-                categoryRepo.findAll(),
-                operationRepo.findAll()
-        );
-
-        String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(data);
-        Files.writeString(Path.of(filename), json);
+        exportToFile(filename, false);
+    }
+
+    /**
+     * Потоковый экспорт: сущности пишутся в файл по одной через JsonGenerator,
+     * без сборки общего списка и JSON-строки в памяти. Формат совпадает с {@link FinanceData}
+     * @param filename имя файла
+     * @param prettyPrint форматировать ли JSON отступами
+     */
+    public void exportToFile(String filename, boolean prettyPrint) throws IOException {
+        long started = System.nanoTime();
+        long records = 0;
+        long bytes;
+        // без сброса буфера после каждой сущности, иначе буферизация теряет смысл
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (FileChannel channel = FileChannel.open(Path.of(filename),
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            if (prettyPrint) {
+                generator.useDefaultPrettyPrinter();
+            }
+            generator.writeStartObject();
+            records += writeArray(generator, writer, "accounts", accountRepo.streamAll());
+            records += writeArray(generator, writer, "categories", categoryRepo.streamAll());
+            records += writeArray(generator, writer, "operations", operationRepo.streamAll());
+            generator.writeEndObject();
+            generator.flush();
+            bytes = channel.size();
+        }
+        metrics.dataTransfer("json", "export", bytes, records, System.nanoTime() - started);
         System.out.println("Экспорт завершён: " + filename);
     }
 
+    /**
+     * @return количество записанных сущностей
+     */
+    private long writeArray(JsonGenerator generator, ObjectWriter writer,
+                            String field, Stream<?> items) throws IOException {
+        generator.writeArrayFieldStart(field);
+        long count = 0;
+        Iterator<?> it = items.iterator();
+        while (it.hasNext()) {
+            writer.writeValue(generator, it.next());
+            count++;
+        }
+        generator.writeEndArray();
+        return count;
+    }
+
+    /**
+     * Потоковый импорт: файл читается токенами, сущности складываются в новые снимки
+     * репозиториев порциями по {@value #CHUNK_SIZE} по мере разбора, поэтому память
+     * не зависит от размера файла. Текущие данные подменяются только после успешного
+     * разбора всего файла - при ошибке репозитории остаются нетронутыми
+     * @implNote Подмена выполняется под блокировками всех счетов ({@link AccountLockManager#withAllLocks}):
+     * изменения через сервисы упорядочены с ней и не перемешивают старое и новое содержимое.
+     * Изменения, сделанные во время чтения файла, заменяются импортом вместе со всем прежним
+     * содержимым. Читатели без блокировок между тремя подменами ссылок могут коротко увидеть
+     * новые счета рядом со старыми операциями, но не частично загруженный репозиторий
+     */
     @Override
     public void importFromFile(String filename) throws IOException {
-        String json = Files.readString(Path.of(filename));
-        FinanceData data = objectMapper.readValue(json, FinanceData.class);
+        long started = System.nanoTime();
+
+        ISnapshotWriter<BankAccount> accountSnapshot = accountRepo.newSnapshot();
+        ISnapshotWriter<Category> categorySnapshot = categoryRepo.newSnapshot();
+        ISnapshotWriter<Operation> operationSnapshot = operationRepo.newSnapshot();
 
-        // Очищаем текущие данные
-        accountRepo.findAll().forEach(a -> accountRepo.deleteById(a.getId()));
-        categoryRepo.findAll().forEach(c -> categoryRepo.deleteById(c.getId()));
-        operationRepo.findAll().forEach(o -> operationRepo.deleteById(o.getId()));
+        long accounts = 0;
+        long categories = 0;
+        long operations = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(Path.of(filename)), BUFFER_SIZE);
+             JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Ожидался JSON-объект в начале файла: " + filename);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "accounts" -> accounts += readArray(parser, BankAccount.class, accountSnapshot::saveAll);
+                    case "categories" -> categories += readArray(parser, Category.class, categorySnapshot::saveAll);
+                    case "operations" -> operations += readArray(parser, Operation.class, operationSnapshot::saveAll);
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            discard(accountSnapshot, categorySnapshot, operationSnapshot);
+            throw e;
+        }
 
-        // Сохраняем импортированные данные
-        data.accounts.forEach(accountRepo::save);
-        data.categories.forEach(categoryRepo::save);
-        data.operations.forEach(operationRepo::save);
+        swap(accountSnapshot, categorySnapshot, operationSnapshot);
 
+        long total = accounts + categories + operations;
+        metrics.dataTransfer("json", "import", Files.size(Path.of(filename)), total, System.nanoTime() - started);
+        double seconds = Math.max(System.nanoTime() - started, 1) / 1e9;
         System.out.println("Импорт завершён из: " + filename);
-        System.out.println("   Счетов: " + data.accounts.size());
-        System.out.println("   Категорий: " + data.categories.size());
-        System.out.println("   Операций: " + data.operations.size());
+        System.out.println("   Счетов: " + accounts);
+        System.out.println("   Категорий: " + categories);
+        System.out.println("   Операций: " + operations);
+        System.out.printf("   Скорость: %,.0f записей/с%n", total / seconds);
+    }
+
+    // счета и категории подменяем раньше операций, которые на них ссылаются;
+    // контрольную точку журнала (если он есть) делает только последний commit
+    private void swap(ISnapshotWriter<BankAccount> accounts, ISnapshotWriter<Category> categories,
+                      ISnapshotWriter<Operation> operations) {
+        locks.withAllLocks(() -> {
+            accounts.publish();
+            categories.publish();
+            operations.commit();
+            return null;
+        });
+    }
+
+    // прерванный импорт: файловое хранилище удаляет уже построенное поколение
+    private static void discard(ISnapshotWriter<?>... snapshots) {
+        for (ISnapshotWriter<?> snapshot : snapshots) {
+            snapshot.discard();
+        }
+    }
+
+    /**
+     * Читает JSON-массив сущностей и передаёт их в sink порциями
+     * @return количество прочитанных сущностей
+     */
+    private <T> long readArray(JsonParser parser, Class<T> type, Consumer<List<T>> sink) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return 0;
+        }
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Ожидался массив, получено: " + parser.currentToken());
+        }
+        // переходим к первому элементу: readValues читает значения до конца массива
+        if (parser.nextToken() == JsonToken.END_ARRAY) {
+            return 0;
+        }
+
+        long count = 0;
+        List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+        MappingIterator<T> it = objectMapper.readValues(parser, type);
+        while (it.hasNextValue()) {
+            chunk.add(it.nextValue());
+            if (chunk.size() == CHUNK_SIZE) {
+                sink.accept(chunk);
+                count += chunk.size();
+                chunk = new ArrayList<>(CHUNK_SIZE);
+            }
+        }
+        sink.accept(chunk);
+        return count + chunk.size();
     }
-}
\ No newline at end of file
+}
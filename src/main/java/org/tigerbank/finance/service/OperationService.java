@@ -1,73 +1,375 @@
 package org.tigerbank.finance.service;
 
+import org.tigerbank.finance.dto.OperationBatchResult;
+import org.tigerbank.finance.dto.OperationCursor;
+import org.tigerbank.finance.dto.OperationPage;
+import org.tigerbank.finance.dto.TransferResult;
 import org.tigerbank.finance.model.BankAccount;
+import org.tigerbank.finance.model.Money;
 import org.tigerbank.finance.model.Operation;
 import org.tigerbank.finance.model.OperationType;
 import org.tigerbank.finance.model.Category;
+import org.tigerbank.finance.model.CategoryType;
 import org.tigerbank.finance.repository.IOperationRepository;
 import org.tigerbank.finance.repository.ICategoryRepository;
 import org.tigerbank.finance.repository.IBankAccountRepository;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
-import java.util.UUID;
-import java.util.List;
+import java.time.LocalDate;
+import java.util.*;
 
 @Service
 public class OperationService implements IOperationService {
+    private static final String METRICS_NAME = "OperationService";
+
     private final IBankAccountRepository accountRepo;
     private final IOperationRepository operationRepo;
     private final ICategoryRepository categoryRepo;
     private final IBalanceRecalculator recalculator;
+    private final AccountLockManager locks;
+    private final ServiceMetrics metrics;
 
+    /**
+     * Сервис без публикации метрик
+     */
     public OperationService(IBankAccountRepository accountRepo,
                             IOperationRepository operationRepo,
                             ICategoryRepository categoryRepo,
-                            IBalanceRecalculator recalculator) {
+                            IBalanceRecalculator recalculator,
+                            AccountLockManager locks) {
+        this(accountRepo, operationRepo, categoryRepo, recalculator, locks, ServiceMetrics.disabled());
+    }
+
+    @Autowired
+    public OperationService(IBankAccountRepository accountRepo,
+                            IOperationRepository operationRepo,
+                            ICategoryRepository categoryRepo,
+                            IBalanceRecalculator recalculator,
+                            AccountLockManager locks,
+                            ServiceMetrics metrics) {
         this.accountRepo = accountRepo;
         this.operationRepo = operationRepo;
         this.categoryRepo = categoryRepo;
         this.recalculator = recalculator;
+        this.locks = locks;
+        this.metrics = metrics;
     }
 
+    /**
+     * @implNote Проверка, изменение баланса и сохранение выполняются под блокировкой счёта,
+     * поэтому конкурентные операции одного счёта не теряют обновлений
+     */
     @Override
     public Operation addOperation(Operation operation) {
-        if (accountRepo.findById(operation.getBankAccountId()).isEmpty()) {
-            throw new IllegalArgumentException("Счёт не найден: " + operation.getBankAccountId());
+        return metrics.time(METRICS_NAME, "addOperation", () -> addOperationLocked(operation));
+    }
+
+    private Operation addOperationLocked(Operation operation) {
+        return locks.withLock(operation.getBankAccountId(), () -> {
+            validateReferences(operation,
+                    accountRepo.findById(operation.getBankAccountId()),
+                    operation.getCategoryId() == null ? Optional.empty() : categoryRepo.findById(operation.getCategoryId()));
+
+            // сначала меняем баланс: если средств не хватит, операция не попадёт в репозиторий
+            recalculator.applyOperation(operation);
+            Operation saved;
+            try {
+                saved = operationRepo.save(operation);
+            } catch (RuntimeException e) {
+                recalculator.revertOperation(operation);
+                throw e;
+            }
+            metrics.operationsInserted(1);
+            return saved;
+        });
+    }
+
+    /**
+     * @implNote Счета и категории ищутся один раз на каждый различный ID пакета,
+     * операции сохраняются одним вызовом saveAll, а баланс каждого затронутого счёта
+     * меняется ровно один раз - на суммарную величину принятых операций этого счёта.
+     * Весь пакет обрабатывается под блокировками всех его счетов
+     */
+    @Override
+    public OperationBatchResult addOperations(Collection<Operation> operations) {
+        if (operations == null) {
+            throw new IllegalArgumentException("Список операций не может быть null");
         }
-        // необходимо обеспечить непротиворечивость данных, поэтому проверяем
-        // соответствует ли приведенная категория какой-либо из репозитория
-        if (operation.getCategoryId() != null) {
-           Category cat = categoryRepo.findById(operation.getCategoryId())
-                   .orElseThrow(() -> new IllegalArgumentException("Категория не найдена"));
-           // проверим совместимость категории и операции
-           cat.validateOperationCompatibility(operation.getType());
+        Set<UUID> accountIds = new HashSet<>();
+        for (Operation operation : operations) {
+            if (operation != null) {
+                accountIds.add(operation.getBankAccountId());
+            }
         }
+        return metrics.time(METRICS_NAME, "addOperations",
+                () -> locks.withLocks(accountIds, () -> addOperationsLocked(operations)));
+    }
 
-        Operation saved = operationRepo.save(operation);
-        // пересчитаем баланс у аккаунта, кому принадлежит эта операция
-        recalculator.recalculateBalance(operation.getBankAccountId());
-        return saved;
+    private OperationBatchResult addOperationsLocked(Collection<Operation> operations) {
+        Map<UUID, Optional<BankAccount>> accounts = new HashMap<>();
+        Map<UUID, Optional<Category>> categories = new HashMap<>();
+        Set<UUID> batchIds = new HashSet<>();
+        // суммарное изменение баланса по счёту от уже принятых строк пакета
+        Map<UUID, Long> deltas = new LinkedHashMap<>();
+        // принятые строки: операция и её номер в исходном пакете
+        List<Operation> accepted = new ArrayList<>();
+        List<Integer> acceptedRows = new ArrayList<>();
+        OperationBatchResult result = new OperationBatchResult();
+
+        int row = 0;
+        for (Operation operation : operations) {
+            try {
+                if (operation == null) {
+                    throw new IllegalArgumentException("Операция не может быть null");
+                }
+                UUID accountId = operation.getBankAccountId();
+                Optional<BankAccount> account = accounts.computeIfAbsent(accountId, accountRepo::findById);
+                Optional<Category> category = operation.getCategoryId() == null
+                        ? Optional.empty()
+                        : categories.computeIfAbsent(operation.getCategoryId(), categoryRepo::findById);
+                validateReferences(operation, account, category);
+                if (!batchIds.add(operation.getId())) {
+                    throw new IllegalArgumentException("Операция повторяется в пакете: " + operation.getId());
+                }
+
+                long delta = Money.add(deltas.getOrDefault(accountId, 0L), operation.getSignedAmountMinor());
+                if (Money.add(account.get().getBalanceMinor(), delta) < 0) {
+                    throw new IllegalArgumentException("Недостаточно средств для списания: " + operation.getAmount());
+                }
+                deltas.put(accountId, delta);
+                accepted.add(operation);
+                acceptedRows.add(row);
+            } catch (IllegalArgumentException e) {
+                result.addFailure(row, operation, e.getMessage());
+            }
+            row++;
+        }
+
+        // изменение применяется к каждому счёту один раз; если средств всё же не хватает
+        // (например, баланс изменили в обход сервиса) - отклоняются все строки этого счёта
+        Set<UUID> rejectedAccounts = new HashSet<>();
+        Map<UUID, Long> applied = new LinkedHashMap<>();
+        deltas.forEach((accountId, delta) -> {
+            try {
+                recalculator.applyDelta(accountId, delta);
+                applied.put(accountId, delta);
+            } catch (IllegalArgumentException e) {
+                rejectedAccounts.add(accountId);
+            }
+        });
+
+        List<Operation> toSave = new ArrayList<>(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            Operation operation = accepted.get(i);
+            if (rejectedAccounts.contains(operation.getBankAccountId())) {
+                result.addFailure(acceptedRows.get(i), operation, "Недостаточно средств на счёте: " + operation.getBankAccountId());
+            } else {
+                toSave.add(operation);
+            }
+        }
+        try {
+            operationRepo.saveAll(toSave);
+        } catch (RuntimeException e) {
+            // операции не сохранены (например, ошибка записи журнала) - балансы возвращаются к прежним
+            applied.forEach((accountId, delta) -> recalculator.applyDelta(accountId, -delta));
+            throw e;
+        }
+        metrics.operationsInserted(toSave.size());
+        toSave.forEach(result::addSaved);
+        return result;
+    }
+
+    /**
+     * @implNote Оба счёта блокируются через {@link AccountLockManager#withLocks} в едином глобальном
+     * порядке полос, поэтому встречные переводы A->B и B->A не взаимоблокируются. Пока идёт перевод,
+     * ни одна операция этих счетов через сервис не видит и не меняет промежуточное состояние;
+     * обе операции сохраняются одним saveAll. Переводы возможны только между счетами одной валюты:
+     * валюта счёта неизменна, поэтому она читается до взятия блокировок. Обе операции получают
+     * категорию {@link Operation#TRANSFER_CATEGORY_ID} и не попадают в аналитику доходов и расходов
+     */
+    @Override
+    public TransferResult transfer(UUID fromAccountId, UUID toAccountId, BigDecimal amount,
+                                   LocalDate date, String description) {
+        if (fromAccountId == null || toAccountId == null) {
+            throw new IllegalArgumentException("Счета перевода не могут быть null");
+        }
+        if (fromAccountId.equals(toAccountId)) {
+            throw new IllegalArgumentException("Нельзя перевести средства на тот же счёт");
+        }
+        Currency currency = currencyOf(fromAccountId);
+        if (!currency.equals(currencyOf(toAccountId))) {
+            throw new IllegalArgumentException("Перевод между счетами в разных валютах не поддерживается: "
+                    + currency + " -> " + currencyOf(toAccountId));
+        }
+        Operation debit = new Operation(OperationType.EXPENSE, fromAccountId, amount, currency, date,
+                description == null ? "Перевод на счёт " + toAccountId : description, Operation.TRANSFER_CATEGORY_ID);
+        Operation credit = new Operation(OperationType.INCOME, toAccountId, amount, currency, date,
+                description == null ? "Перевод со счёта " + fromAccountId : description, Operation.TRANSFER_CATEGORY_ID);
+
+        return metrics.time(METRICS_NAME, "transfer", () -> locks.withLocks(List.of(fromAccountId, toAccountId), () -> {
+            validateReferences(debit, accountRepo.findById(fromAccountId), Optional.of(transferCategory(debit)));
+            validateReferences(credit, accountRepo.findById(toAccountId), Optional.of(transferCategory(credit)));
+
+            // списание первым: если средств не хватит, ни один баланс не изменится
+            recalculator.applyOperation(debit);
+            try {
+                recalculator.applyOperation(credit);
+            } catch (RuntimeException e) {
+                recalculator.revertOperation(debit);
+                throw e;
+            }
+            try {
+                operationRepo.saveAll(List.of(debit, credit));
+            } catch (RuntimeException e) {
+                recalculator.revertOperation(credit);
+                recalculator.revertOperation(debit);
+                throw e;
+            }
+            metrics.operationsInserted(2);
+            return new TransferResult(debit, credit);
+        }));
     }
 
     @Override
     public void deleteOperation(UUID id) {
+        metrics.time(METRICS_NAME, "deleteOperation", () -> deleteOperationLocked(id));
+    }
+
+    private void deleteOperationLocked(UUID id) {
         Operation op = operationRepo.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Операция не найдена"));
-        operationRepo.deleteById(id);
-        recalculator.recalculateBalance(op.getBankAccountId());
+        // половины перевода не связаны между собой: удаление одной создало бы или уничтожило деньги
+        if (op.isTransfer()) {
+            throw new IllegalArgumentException("Операция - часть перевода между счетами и не может быть удалена отдельно: " + id);
+        }
+        locks.withLock(op.getBankAccountId(), () -> {
+            // операцию могли удалить конкурентно, пока ждали блокировку - повторный откат испортил бы баланс
+            if (operationRepo.findById(id).isEmpty()) {
+                throw new IllegalArgumentException("Операция не найдена");
+            }
+            recalculator.revertOperation(op);
+            try {
+                operationRepo.deleteById(id);
+            } catch (RuntimeException e) {
+                recalculator.applyOperation(op);
+                throw e;
+            }
+            return null;
+        });
     }
 
     @Override
     public List<Operation> getAccountOperations(UUID accountId) {
-        return  operationRepo.findByAccountId(accountId);
+        return metrics.time(METRICS_NAME, "getAccountOperations", () -> operationRepo.findByAccountId(accountId));
     }
 
+    @Override
+    public OperationPage getAccountOperations(UUID accountId, OperationCursor after, int limit) {
+        return metrics.time(METRICS_NAME, "getAccountOperationsPage",
+                () -> operationRepo.findPageByAccountId(accountId, after, limit));
+    }
+
+    /**
+     * Проверяет ссылочную целостность операции перед добавлением
+     * @param account найденный счёт операции
+     * @param category найденная категория операции (пусто, если категория не указана)
+     */
+    private void validateReferences(Operation operation, Optional<BankAccount> account, Optional<Category> category) {
+        if (account.isEmpty()) {
+            throw new IllegalArgumentException("Счёт не найден: " + operation.getBankAccountId());
+        }
+        // баланс счёта ведётся в одной валюте, конвертация возможна только в аналитике
+        if (!operation.getCurrency().equals(account.get().getCurrency())) {
+            throw new IllegalArgumentException("Валюта операции " + operation.getCurrency()
+                    + " не совпадает с валютой счёта " + account.get().getCurrency());
+        }
+        // необходимо обеспечить непротиворечивость данных, поэтому проверяем
+        // соответствует ли приведенная категория какой-либо из репозитория
+        if (operation.getCategoryId() != null) {
+            Category cat = category
+                    .orElseThrow(() -> new IllegalArgumentException("Категория не найдена"));
+            // проверим совместимость категории и операции
+            cat.validateOperationCompatibility(operation.getType());
+        }
+
+        // повторное сохранение той же операции учло бы её в балансе дважды
+        if (operationRepo.findById(operation.getId()).isPresent()) {
+            throw new IllegalArgumentException("Операция уже добавлена: " + operation.getId());
+        }
+    }
+
+    // служебная категория перевода в типе операции, чтобы прошла общая проверка совместимости
+    private static Category transferCategory(Operation operation) {
+        return Category.restore(Operation.TRANSFER_CATEGORY_ID, "Перевод", CategoryType.valueOf(operation.getType().name()));
+    }
+
+    private Currency currencyOf(UUID accountId) {
+        return accountRepo.findById(accountId)
+                .map(BankAccount::getCurrency)
+                .orElseThrow(() -> new IllegalArgumentException("Счёт не найден: " + accountId));
+    }
+
+    /**
+     * @implNote Баланс читается под блокировкой счёта, поэтому не видит операцию,
+     * которая ещё применяется к балансу и сохраняется
+     */
     @Override
     public BigDecimal getAccountBalance(UUID id) {
-        return accountRepo.findById(id)
+        return metrics.time(METRICS_NAME, "getAccountBalance", () -> locks.withLock(id, () -> accountRepo.findById(id)
                 .map(BankAccount::getBalance)
-                .orElseThrow(() -> new IllegalArgumentException("Счет не найден"));
+                .orElseThrow(() -> new IllegalArgumentException("Счет не найден"))));
+    }
+
+    /**
+     * @implNote Все счета блокируются вместе, как при переводе, поэтому перевод между ними
+     * виден либо целиком, либо не виден вовсе
+     */
+    @Override
+    public Map<UUID, BigDecimal> getAccountBalances(Collection<UUID> accountIds) {
+        if (accountIds == null || accountIds.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Список счетов не может быть null или содержать null");
+        }
+        return metrics.time(METRICS_NAME, "getAccountBalances", () -> locks.withLocks(accountIds, () -> {
+            Map<UUID, BigDecimal> balances = new LinkedHashMap<>();
+            for (UUID id : accountIds) {
+                balances.put(id, accountRepo.findById(id)
+                        .map(BankAccount::getBalance)
+                        .orElseThrow(() -> new IllegalArgumentException("Счёт не найден: " + id)));
+            }
+            return balances;
+        }));
+    }
+
+    @Override
+    public BigDecimal getAccountBalance(UUID accountId, LocalDate date) {
+        return metrics.time(METRICS_NAME, "getAccountBalanceAt", () -> locks.withLock(accountId, () -> {
+            requireAccount(accountId);
+            return Money.toBigDecimal(operationRepo.balanceAt(accountId, date));
+        }));
+    }
+
+    @Override
+    public NavigableMap<LocalDate, BigDecimal> getBalanceHistory(UUID accountId, LocalDate from, LocalDate to) {
+        return metrics.time(METRICS_NAME, "getBalanceHistory", () -> {
+            // под блокировкой счёта, как getAccountBalance: пакет или перевод виден целиком
+            long[] balances = locks.withLock(accountId, () -> {
+                requireAccount(accountId);
+                return operationRepo.dailyBalances(accountId, from, to);
+            });
+            NavigableMap<LocalDate, BigDecimal> history = new TreeMap<>();
+            for (int i = 0; i < balances.length; i++) {
+                history.put(from.plusDays(i), Money.toBigDecimal(balances[i]));
+            }
+            return history;
+        });
+    }
+
+    private void requireAccount(UUID accountId) {
+        if (accountId == null || accountRepo.findById(accountId).isEmpty()) {
+            throw new IllegalArgumentException("Счет не найден");
+        }
     }
 }
 
@@ -0,0 +1,14 @@
+package org.tigerbank.finance.service;
+
+/**
+ * Что делать в аналитике с операциями, чья категория не найдена в репозитории
+ * (например, категория удалена, а операции остались)
+ */
+public enum OrphanCategoryPolicy {
+    /** Не включать такие суммы в результат */
+    SKIP,
+    /** Собрать все такие суммы в одну категорию "Неизвестная категория" */
+    UNKNOWN,
+    /** Бросить IllegalArgumentException */
+    FAIL
+}
@@ -0,0 +1,127 @@
+package org.tigerbank.finance.service;
+
+import org.tigerbank.finance.dto.DailyRollup;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.io.Closeable;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+
+/**
+ * Параллельный режим аналитики для длинных периодов. Агрегаты периода читаются из источника
+ * один раз (для сканирующих хранилищ это один проход по колонкам), затем список делится
+ * пополам, пока части не станут короче finance.analytics.leaf-rows агрегатов; части считаются
+ * на отдельном ForkJoinPool (finance.analytics.parallelism потоков, 0 - по числу ядер),
+ * а их накопители сливаются. Периоды не длиннее finance.analytics.parallel-threshold-days
+ * считаются последовательно в вызывающем потоке - для них накладные расходы на задачи больше выигрыша
+ */
+@Component
+public class ParallelAnalyticsExecutor implements Closeable {
+    private final ForkJoinPool pool;
+    private final long thresholdDays;
+    private final int leafRows;
+
+    public ParallelAnalyticsExecutor(@Value("${finance.analytics.parallelism:0}") int parallelism,
+                                     @Value("${finance.analytics.parallel-threshold-days:366}") long thresholdDays,
+                                     @Value("${finance.analytics.leaf-rows:4096}") int leafRows) {
+        if (parallelism < 0 || thresholdDays < 1 || leafRows < 1) {
+            throw new IllegalArgumentException("Некорректные настройки параллельной аналитики");
+        }
+        int threads = parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+        this.pool = threads == 1 ? null : new ForkJoinPool(threads);
+        this.thresholdDays = thresholdDays;
+        this.leafRows = leafRows;
+    }
+
+    /**
+     * Исполнитель, который всегда считает в вызывающем потоке
+     */
+    public static ParallelAnalyticsExecutor sequential() {
+        return new ParallelAnalyticsExecutor(1, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Собирает накопитель по дневным агрегатам периода [from; to] в валюте по умолчанию
+     * @param source источник агрегатов за период (обе границы включительно), вызывается один раз
+     */
+    AnalyticsAccumulator accumulate(LocalDate from, LocalDate to,
+                                    BiFunction<LocalDate, LocalDate, List<DailyRollup>> source) {
+        return accumulate(from, to, source, CurrencyConverter.identity());
+    }
+
+    /**
+     * Собирает накопитель по дневным агрегатам периода [from; to]
+     * @param source источник агрегатов за период (обе границы включительно), вызывается один раз
+     * @param converter перевод сумм в валюту отчётов, общий для всех частей периода
+     */
+    AnalyticsAccumulator accumulate(LocalDate from, LocalDate to,
+                                    BiFunction<LocalDate, LocalDate, List<DailyRollup>> source,
+                                    CurrencyConverter converter) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Границы периода не могут быть null");
+        }
+        List<DailyRollup> rollups = source.apply(from, to);
+        if (pool == null || days(from, to) <= thresholdDays || rollups.size() <= leafRows) {
+            return sequential(rollups, 0, rollups.size(), converter);
+        }
+        List<DailyRollup> rows = rollups instanceof RandomAccess ? rollups : new ArrayList<>(rollups);
+        return pool.invoke(new RangeTask(rows, 0, rows.size(), converter));
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static AnalyticsAccumulator sequential(List<DailyRollup> rollups, int fromIndex, int toIndex,
+                                                   CurrencyConverter converter) {
+        AnalyticsAccumulator accumulator = new AnalyticsAccumulator(converter);
+        for (DailyRollup rollup : rollups.subList(fromIndex, toIndex)) {
+            accumulator.add(rollup);
+        }
+        return accumulator;
+    }
+
+    private static long days(LocalDate from, LocalDate to) {
+        return ChronoUnit.DAYS.between(from, to) + 1;
+    }
+
+    /**
+     * Часть списка агрегатов [fromIndex; toIndex)
+     */
+    private final class RangeTask extends RecursiveTask<AnalyticsAccumulator> {
+        private final List<DailyRollup> rollups;
+        private final int fromIndex;
+        private final int toIndex;
+        private final CurrencyConverter converter;
+
+        RangeTask(List<DailyRollup> rollups, int fromIndex, int toIndex, CurrencyConverter converter) {
+            this.rollups = rollups;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.converter = converter;
+        }
+
+        @Override
+        protected AnalyticsAccumulator compute() {
+            if (toIndex - fromIndex <= leafRows) {
+                return sequential(rollups, fromIndex, toIndex, converter);
+            }
+            int middle = (fromIndex + toIndex) >>> 1;
+            RangeTask left = new RangeTask(rollups, fromIndex, middle, converter);
+            RangeTask right = new RangeTask(rollups, middle, toIndex, converter);
+            left.fork();
+            AnalyticsAccumulator result = right.compute();
+            return left.join().merge(result);
+        }
+    }
+}
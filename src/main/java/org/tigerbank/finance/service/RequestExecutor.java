@@ -0,0 +1,100 @@
+package org.tigerbank.finance.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+
+/**
+ * Исполнитель запросов к сервисам: каждый вызов выполняется в своём виртуальном потоке.
+ * Одновременно выполняется не больше finance.executor.max-concurrency вызовов; если все
+ * места заняты, вызывающий ждёт до finance.executor.acquire-timeout-ms и затем получает
+ * {@link RejectedExecutionException} - так нагрузка сверх лимита возвращается клиентам,
+ * а не копится в очереди. Задержки (включая ожидание места) пишутся в гистограмму по имени вызова
+ */
+@Component
+public class RequestExecutor implements Closeable {
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final long acquireTimeoutMs;
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+    public RequestExecutor(@Value("${finance.executor.max-concurrency:10000}") int maxConcurrency,
+                           @Value("${finance.executor.acquire-timeout-ms:1000}") long acquireTimeoutMs) {
+        if (maxConcurrency < 1 || acquireTimeoutMs < 0) {
+            throw new IllegalArgumentException("Некорректные настройки исполнителя запросов");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
+
+    /**
+     * Запускает вызов в виртуальном потоке
+     * @param name имя вызова для гистограммы задержек
+     * @param call вызов сервиса
+     * @throws RejectedExecutionException если место не освободилось за отведённое время
+     */
+    public <T> CompletableFuture<T> submit(String name, Callable<T> call) {
+        long started = System.nanoTime();
+        acquirePermit();
+        LatencyHistogram histogram = latencies.computeIfAbsent(name, (key) -> new LatencyHistogram());
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                T value = null;
+                Throwable failure = null;
+                try {
+                    value = call.call();
+                } catch (Throwable e) {
+                    failure = e;
+                }
+                // место и задержка фиксируются до завершения future: вызывающий,
+                // дождавшийся результата, уже видит освободившееся место и измерение
+                permits.release();
+                histogram.recordNanos(System.nanoTime() - started);
+                if (failure == null) {
+                    result.complete(value);
+                } else {
+                    result.completeExceptionally(failure);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Гистограммы задержек по именам вызовов
+     */
+    public Map<String, LatencyHistogram> latencies() {
+        return Collections.unmodifiableMap(new TreeMap<>(latencies));
+    }
+
+    /** Число вызовов, выполняющихся прямо сейчас */
+    public int inFlight() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    private void acquirePermit() {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException("Превышен лимит одновременных запросов");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Ожидание места прервано", e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.tigerbank.finance.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Метрики сервисов в Micrometer:
+ * <pre>
+ * finance.service.calls          (Timer)   время вызова метода сервиса; теги service, method
+ * finance.operations.inserted    (Counter) число сохранённых операций
+ * finance.balance.recalculation  (Timer)   пересчёт баланса счёта; тег operations - порядок числа операций счёта
+ * finance.balance.repaired       (Counter) счета, баланс которых исправила сверка
+ * finance.data.transfer          (Timer)   импорт/экспорт целиком; теги format, direction
+ * finance.data.bytes             (Counter) байт импорта/экспорта; теги format, direction
+ * finance.data.records           (Counter) записей импорта/экспорта; теги format, direction
+ * finance.data.throughput        (Summary) записей в секунду за один импорт/экспорт; теги format, direction
+ * </pre>
+ * Скорость (операций, байт и записей в секунду) считает экспортёр по приросту счётчиков.
+ * Реестр создаёт Spring Boot: локальный SimpleMeterRegistry и JMX-экспорт (домен metrics)
+ */
+@Component
+public class ServiceMetrics {
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+    private static final Logger log = LoggerFactory.getLogger(ServiceMetrics.class);
+
+    private final MeterRegistry registry;
+    private final Counter insertedOperations;
+    private final Counter repairedBalances;
+    private final Map<String, Timer> callTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> recalculationTimers = new ConcurrentHashMap<>();
+
+    public ServiceMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.insertedOperations = Counter.builder("finance.operations.inserted")
+                .description("Сохранённые операции")
+                .baseUnit("operations")
+                .register(registry);
+        this.repairedBalances = Counter.builder("finance.balance.repaired")
+                .description("Счета, баланс которых исправила сверка")
+                .baseUnit("accounts")
+                .register(registry);
+    }
+
+    /**
+     * Метрики, которые никуда не публикуются - для сервисов, созданных вне Spring (тесты, бенчмарки)
+     */
+    public static ServiceMetrics disabled() {
+        return new ServiceMetrics(new CompositeMeterRegistry());
+    }
+
+    /**
+     * Выполняет вызов и записывает его время, в том числе если вызов завершился исключением
+     */
+    public <T> T time(String service, String method, Supplier<T> call) {
+        Timer timer = callTimers.computeIfAbsent(service + '.' + method, (key) -> Timer.builder("finance.service.calls")
+                .description("Время вызова метода сервиса")
+                .tags("service", service, "method", method)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry));
+        long started = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void time(String service, String method, Runnable call) {
+        time(service, method, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public void operationsInserted(int count) {
+        insertedOperations.increment(count);
+    }
+
+    /**
+     * Пересчёт баланса одного счёта
+     * @param operations число операций счёта - по нему счета делятся на группы 1, 10, 100, ...
+     */
+    public void recalculation(int operations, long nanos) {
+        String size = sizeClass(operations);
+        recalculationTimers.computeIfAbsent(size, (key) -> Timer.builder("finance.balance.recalculation")
+                        .description("Пересчёт баланса счёта по его операциям")
+                        .tag("operations", size)
+                        .publishPercentiles(PERCENTILES)
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Счета, баланс которых сверка исправила пересчётом: счётчик и предупреждение в лог с их ID
+     */
+    public void balancesRepaired(List<UUID> accountIds) {
+        if (accountIds.isEmpty()) {
+            return;
+        }
+        repairedBalances.increment(accountIds.size());
+        log.warn("Сверка балансов: исправлено счетов - {} {}", accountIds.size(), accountIds);
+    }
+
+    /**
+     * Импорт или экспорт файла целиком
+     * @param format формат файла (json, binary)
+     * @param direction import или export
+     */
+    public void dataTransfer(String format, String direction, long bytes, long records, long nanos) {
+        String[] tags = {"format", format, "direction", direction};
+        Timer.builder("finance.data.transfer").tags(tags).register(registry).record(nanos, TimeUnit.NANOSECONDS);
+        Counter.builder("finance.data.bytes").baseUnit("bytes").tags(tags).register(registry).increment(bytes);
+        Counter.builder("finance.data.records").baseUnit("records").tags(tags).register(registry).increment(records);
+        DistributionSummary.builder("finance.data.throughput")
+                .description("Скорость импорта/экспорта")
+                .baseUnit("records/s")
+                .tags(tags)
+                .register(registry)
+                .record(records / (Math.max(nanos, 1) / 1e9));
+    }
+
+    /**
+     * Печатает время вызовов методов сервисов: число, среднее, перцентили и максимум в миллисекундах
+     */
+    public void printReport() {
+        System.out.println("Время вызовов сервисов (мс):");
+        registry.find("finance.service.calls").timers().stream()
+                .sorted(Comparator.comparing((Timer timer) -> timer.getId().getTag("service"))
+                        .thenComparing((timer) -> timer.getId().getTag("method")))
+                .forEach((timer) -> {
+                    StringBuilder line = new StringBuilder(String.format("   %s.%s: вызовов %d, среднее %.3f",
+                            timer.getId().getTag("service"), timer.getId().getTag("method"),
+                            timer.count(), timer.mean(TimeUnit.MILLISECONDS)));
+                    for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+                        line.append(String.format(", p%.0f %.3f", percentile.percentile() * 100,
+                                percentile.value(TimeUnit.MILLISECONDS)));
+                    }
+                    line.append(String.format(", макс %.3f", timer.max(TimeUnit.MILLISECONDS)));
+                    System.out.println(line);
+                });
+        Counter inserted = registry.find("finance.operations.inserted").counter();
+        if (inserted != null) {
+            System.out.printf("Сохранено операций: %.0f%n", inserted.count());
+        }
+        Counter repaired = registry.find("finance.balance.repaired").counter();
+        if (repaired != null && repaired.count() > 0) {
+            System.out.printf("Исправлено балансов сверкой: %.0f%n", repaired.count());
+        }
+    }
+
+    // 0 -> "0", 1..9 -> "1", 10..99 -> "10", ...
+    static String sizeClass(int operations) {
+        if (operations <= 0) {
+            return "0";
+        }
+        int bound = 1;
+        while (bound <= operations / 10) {
+            bound *= 10;
+        }
+        return Integer.toString(bound);
+    }
+}
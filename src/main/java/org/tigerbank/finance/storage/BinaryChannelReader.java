@@ -0,0 +1,111 @@
+package org.tigerbank.finance.storage;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * Буферизованное чтение примитивов из FileChannel, парное к {@link BinaryChannelWriter}.
+ * Контрольная сумма считается по всем прочитанным байтам.
+ */
+public class BinaryChannelReader {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CRC32C crc = new CRC32C();
+    // начало ещё не учтённых в контрольной сумме байтов буфера
+    private int crcMark;
+
+    public BinaryChannelReader(FileChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.buffer.flip();
+    }
+
+    public byte readByte() throws IOException {
+        ensure(Byte.BYTES);
+        return buffer.get();
+    }
+
+    public short readShort() throws IOException {
+        ensure(Short.BYTES);
+        return buffer.getShort();
+    }
+
+    public int readInt() throws IOException {
+        ensure(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    public long readLong() throws IOException {
+        ensure(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    public UUID readUuid() throws IOException {
+        ensure(2 * Long.BYTES);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    public BigDecimal readAmount() throws IOException {
+        return BigDecimal.valueOf(readLong(), 2);
+    }
+
+    public LocalDate readDate() throws IOException {
+        return LocalDate.ofEpochDay(readInt());
+    }
+
+    public String readString() throws IOException {
+        int length = readShort();
+        if (length < 0) {
+            return null;
+        }
+        ensure(length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Позиция в файле сразу за последним прочитанным байтом
+     */
+    public long position() throws IOException {
+        return channel.position() - buffer.remaining();
+    }
+
+    /**
+     * Контрольная сумма всех прочитанных до этого момента байтов.
+     * Байты, прочитанные после вызова, в сумму не входят (трейлер)
+     */
+    public int checksum() {
+        updateCrc();
+        return (int) crc.getValue();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        updateCrc();
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Файл обрезан: ожидалось ещё " + (bytes - buffer.position()) + " байт");
+            }
+        }
+        buffer.flip();
+        crcMark = 0;
+    }
+
+    private void updateCrc() {
+        ByteBuffer consumed = buffer.duplicate();
+        consumed.limit(buffer.position()).position(crcMark);
+        crc.update(consumed);
+        crcMark = buffer.position();
+    }
+}
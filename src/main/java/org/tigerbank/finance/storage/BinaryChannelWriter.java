@@ -0,0 +1,115 @@
+package org.tigerbank.finance.storage;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * Буферизованная запись примитивов в FileChannel с подсчётом контрольной суммы CRC32C
+ * по всем записанным байтам.
+ * UUID пишется двумя long, сумма - long в копейках (масштаб 2), дата - int номером дня от эпохи.
+ */
+public class BinaryChannelWriter {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CRC32C crc = new CRC32C();
+
+    public BinaryChannelWriter(FileChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    public void writeByte(int value) throws IOException {
+        ensure(Byte.BYTES);
+        buffer.put((byte) value);
+    }
+
+    public void writeShort(int value) throws IOException {
+        ensure(Short.BYTES);
+        buffer.putShort((short) value);
+    }
+
+    public void writeInt(int value) throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+        ensure(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    public void writeUuid(UUID id) throws IOException {
+        ensure(2 * Long.BYTES);
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+    }
+
+    /**
+     * Сумма в минимальных единицах (копейках)
+     * @throws ArithmeticException если сумма не помещается в long
+     */
+    public void writeAmount(BigDecimal amount) throws IOException {
+        writeLong(amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    public void writeDate(LocalDate date) throws IOException {
+        writeInt(Math.toIntExact(date.toEpochDay()));
+    }
+
+    /**
+     * Строка в UTF-8 с длиной в байтах (short); null кодируется длиной -1
+     */
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            writeShort(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Строка слишком длинная для бинарного формата: " + bytes.length + " байт");
+        }
+        writeShort(bytes.length);
+        ensure(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Сбрасывает буфер в канал и возвращает контрольную сумму всех записанных байтов
+     */
+    public int finish() throws IOException {
+        flush();
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Пишет байты в обход контрольной суммы (трейлер с самой суммой)
+     */
+    public void writeRaw(ByteBuffer raw) throws IOException {
+        flush();
+        while (raw.hasRemaining()) {
+            channel.write(raw);
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,203 @@
+package org.tigerbank.finance.storage;
+
+import org.tigerbank.finance.model.Money;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Суммы по дням с префиксными суммами за O(log n): декартово дерево (treap), ключ - день от эпохи,
+ * в каждой вершине хранится сумма её поддерева. n - число дней, в которые сумма не равна нулю;
+ * день с нулевой суммой из дерева удаляется.
+ * <p>
+ * Приоритет вершины - хеш дня, поэтому форма дерева детерминирована и не зависит от порядка вставки:
+ * даты, добавляемые задним числом или подряд по возрастанию, дают сбалансированное в среднем дерево.
+ * Все методы синхронизированы - критические секции короткие, O(log n). Суммы складываются через
+ * {@link Money#add}: переполнение - IllegalArgumentException, а не неверный баланс
+ */
+public final class DailySumTree {
+    private Node root;
+    private int size;
+
+    /**
+     * Добавляет delta к сумме дня (отрицательное значение вычитает)
+     * @throws IllegalArgumentException если сумма дня или сумма поддерева переполнится; дерево не меняется
+     */
+    public synchronized void add(long day, long delta) {
+        if (delta != 0) {
+            checkAdd(day, delta);
+            root = add(root, day, delta);
+        }
+    }
+
+    /**
+     * Сумма всех дней не позже day
+     */
+    public synchronized long prefixSum(long day) {
+        long sum = 0;
+        Node node = root;
+        while (node != null) {
+            if (node.day <= day) {
+                sum = Money.add(sum, Money.add(sumOf(node.left), node.value));
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Префиксные суммы на каждый день отрезка [fromDay; toDay]: элемент i - сумма всех дней
+     * не позже fromDay + i. Стоимость O(log n + дней с изменениями в отрезке + длина отрезка)
+     */
+    public synchronized long[] prefixSums(long fromDay, long toDay) {
+        if (fromDay > toDay) {
+            throw new IllegalArgumentException("Начало отрезка позже его конца: " + fromDay + " > " + toDay);
+        }
+        long[] result = new long[Math.toIntExact(toDay - fromDay + 1)];
+        List<Node> changes = new ArrayList<>();
+        collect(root, fromDay, toDay, changes);
+        long running = prefixSum(fromDay - 1);
+        int next = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (next < changes.size() && changes.get(next).day == fromDay + i) {
+                running = Money.add(running, changes.get(next++).value);
+            }
+            result[i] = running;
+        }
+        return result;
+    }
+
+    /**
+     * Число дней с ненулевой суммой
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    // суммы меняются только на пути от корня к дню, поэтому переполнение проверяется до изменений
+    private void checkAdd(long day, long delta) {
+        Node node = root;
+        while (node != null) {
+            Money.add(node.sum, delta);
+            if (day == node.day) {
+                Money.add(node.value, delta);
+                return;
+            }
+            node = day < node.day ? node.left : node.right;
+        }
+    }
+
+    private Node add(Node node, long day, long delta) {
+        if (node == null) {
+            size++;
+            return new Node(day, delta);
+        }
+        if (day == node.day) {
+            node.value = Money.add(node.value, delta);
+            if (node.value == 0) {
+                size--;
+                return merge(node.left, node.right);
+            }
+        } else if (day < node.day) {
+            node.left = add(node.left, day, delta);
+            if (node.left != null && node.left.priority > node.priority) {
+                return rotateRight(node);
+            }
+        } else {
+            node.right = add(node.right, day, delta);
+            if (node.right != null && node.right.priority > node.priority) {
+                return rotateLeft(node);
+            }
+        }
+        node.update();
+        return node;
+    }
+
+    // все ключи left меньше ключей right
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        node.update();
+        left.right = node;
+        left.update();
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        node.update();
+        right.left = node;
+        right.update();
+        return right;
+    }
+
+    // вершины отрезка [fromDay; toDay] в порядке дней
+    private static void collect(Node node, long fromDay, long toDay, List<Node> result) {
+        if (node == null) {
+            return;
+        }
+        if (node.day > fromDay) {
+            collect(node.left, fromDay, toDay, result);
+        }
+        if (node.day >= fromDay && node.day <= toDay) {
+            result.add(node);
+        }
+        if (node.day < toDay) {
+            collect(node.right, fromDay, toDay, result);
+        }
+    }
+
+    private static long sumOf(Node node) {
+        return node == null ? 0 : node.sum;
+    }
+
+    private static final class Node {
+        private final long day;
+        private final int priority;
+        private long value;
+        // сумма value всего поддерева
+        private long sum;
+        private Node left;
+        private Node right;
+
+        Node(long day, long value) {
+            this.day = day;
+            this.priority = priority(day);
+            this.value = value;
+            this.sum = value;
+        }
+
+        void update() {
+            sum = Money.add(Money.add(sumOf(left), value), sumOf(right));
+        }
+
+        // перемешивание битов дня (финализатор MurmurHash3)
+        private static int priority(long day) {
+            long h = day * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            return (int) h;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.tigerbank.finance.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Колонка записей фиксированной ширины в отображаемом в память файле.
+ * Файл отображается сегментами по {@value #SEGMENT_BYTES} байт, ширина записи - степень двойки,
+ * поэтому запись никогда не пересекает границу сегмента.
+ * Запись в колонку выполняет один писатель, читатели работают без блокировок
+ * в пределах опубликованного писателем числа строк.
+ */
+public class MappedColumn implements Closeable {
+    private static final int SEGMENT_BYTES = 1 << 27;
+
+    private final FileChannel channel;
+    private final int width;
+    private final int rowsPerSegment;
+    private volatile MappedByteBuffer[] segments;
+
+    /**
+     * @param file файл колонки (создаётся при отсутствии)
+     * @param width ширина записи в байтах, степень двойки
+     */
+    public MappedColumn(Path file, int width) throws IOException {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Ширина записи должна быть степенью двойки: " + width);
+        }
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.width = width;
+        this.rowsPerSegment = SEGMENT_BYTES / width;
+
+        int count = (int) ((channel.size() + SEGMENT_BYTES - 1) / SEGMENT_BYTES);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            mapped[i] = map(i);
+        }
+        this.segments = mapped;
+    }
+
+    /**
+     * Гарантирует, что строка row отображена в память. Вызывается только писателем
+     */
+    public void ensureCapacity(int row) throws IOException {
+        int segment = row / rowsPerSegment;
+        MappedByteBuffer[] current = segments;
+        if (segment < current.length) {
+            return;
+        }
+        MappedByteBuffer[] grown = Arrays.copyOf(current, segment + 1);
+        for (int i = current.length; i <= segment; i++) {
+            grown[i] = map(i);
+        }
+        segments = grown;
+    }
+
+    public byte getByte(int row) {
+        return segment(row).get(offset(row));
+    }
+
+    public void putByte(int row, byte value) {
+        segment(row).put(offset(row), value);
+    }
+
+    public int getInt(int row) {
+        return segment(row).getInt(offset(row));
+    }
+
+    public void putInt(int row, int value) {
+        segment(row).putInt(offset(row), value);
+    }
+
+    /**
+     * @param field номер long-поля внутри записи (для записей шире 8 байт)
+     */
+    public long getLong(int row, int field) {
+        return segment(row).getLong(offset(row) + field * Long.BYTES);
+    }
+
+    public void putLong(int row, int field, long value) {
+        segment(row).putLong(offset(row) + field * Long.BYTES, value);
+    }
+
+    /**
+     * Сбрасывает изменённые страницы на диск
+     */
+    public void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private MappedByteBuffer segment(int row) {
+        return segments[row / rowsPerSegment];
+    }
+
+    private int offset(int row) {
+        return (row % rowsPerSegment) * width;
+    }
+
+    private MappedByteBuffer map(int segment) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, (long) segment * SEGMENT_BYTES, SEGMENT_BYTES);
+    }
+}
@@ -0,0 +1,272 @@
+package org.tigerbank.finance.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал упреждающей записи: последовательность сегментов wal-N.log с записями
+ * вида [длина (int)][CRC32C (int)][тело].
+ * <p>
+ * Групповая фиксация: {@link #append} только кладёт запись в буфер под блокировкой,
+ * а {@link #sync} делает один из ожидающих потоков ведущим - он пишет в файл всё
+ * накопленное и вызывает один fsync на всю группу, остальные ждут его завершения.
+ * Чем больше конкурентных писателей, тем больше записей приходится на один fsync.
+ */
+public class WriteAheadLog implements Closeable {
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int INITIAL_BUFFER = 1 << 16;
+
+    /**
+     * Кодирует тело записи в буфер. Вызывается под блокировкой журнала,
+     * поэтому порядок записей в журнале совпадает с порядком кодирования
+     */
+    @FunctionalInterface
+    public interface RecordEncoder {
+        void encode(ByteBuffer buffer);
+    }
+
+    /**
+     * Обрабатывает тело записи при проигрывании журнала
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void handle(ByteBuffer record) throws IOException;
+    }
+
+    private final Path directory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+
+    private FileChannel segment;
+    private long segmentNumber;
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER);
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER);
+    private long appendedLsn;
+    private long durableLsn;
+    private boolean flushing;
+    private IOException failure;
+
+    public WriteAheadLog(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        List<Long> segments = segmentNumbers();
+        this.segmentNumber = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        this.segment = openSegment(segmentNumber);
+    }
+
+    /**
+     * Добавляет запись в буфер журнала
+     * @return порядковый номер записи (LSN) для {@link #sync}
+     */
+    public long append(RecordEncoder encoder) {
+        lock.lock();
+        try {
+            ensureRoom(HEADER_SIZE + 256);
+            int start = pending.position();
+            pending.position(start + HEADER_SIZE);
+            while (true) {
+                try {
+                    encoder.encode(pending);
+                    break;
+                } catch (BufferOverflowException e) {
+                    // запись не влезла - расширяем буфер и кодируем заново
+                    pending.position(start + HEADER_SIZE);
+                    grow(pending.capacity());
+                } catch (RuntimeException e) {
+                    // недописанная запись не должна остаться в буфере
+                    pending.position(start);
+                    throw e;
+                }
+            }
+            int end = pending.position();
+            CRC32C crc = new CRC32C();
+            crc.update(pending.duplicate().position(start + HEADER_SIZE).limit(end));
+            pending.putInt(start, end - start - HEADER_SIZE);
+            pending.putInt(start + Integer.BYTES, (int) crc.getValue());
+            return ++appendedLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Дожидается, пока запись с номером lsn и все предыдущие окажутся на диске
+     */
+    public void sync(long lsn) {
+        lock.lock();
+        try {
+            while (durableLsn < lsn) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Журнал недоступен для записи", failure);
+                }
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                    continue;
+                }
+                flushBatch();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Закрывает текущий сегмент и начинает новый. Все записи до ротации оказываются
+     * в сегментах с номерами меньше возвращённого
+     * @return номер нового сегмента
+     */
+    public long rotate() throws IOException {
+        lock.lock();
+        try {
+            sync(appendedLsn);
+            segment.force(false);
+            segment.close();
+            segment = openSegment(++segmentNumber);
+            return segmentNumber;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет сегменты, целиком покрытые контрольной точкой
+     */
+    public void deleteSegmentsBefore(long number) throws IOException {
+        for (long n : segmentNumbers()) {
+            if (n < number) {
+                Files.deleteIfExists(segmentPath(n));
+            }
+        }
+    }
+
+    /**
+     * Проигрывает все записи журнала по порядку. Оборванная или повреждённая запись
+     * в хвосте последнего сегмента (сбой посреди записи) отбрасывается вместе с хвостом
+     * @throws IOException если повреждён не последний сегмент: записи после повреждения
+     * были подтверждены, и пропустить их молча нельзя
+     */
+    public void replay(RecordHandler handler) throws IOException {
+        lock.lock();
+        try {
+            for (long n : segmentNumbers()) {
+                ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(segmentPath(n)));
+                long validEnd = 0;
+                while (data.remaining() >= HEADER_SIZE) {
+                    int length = data.getInt(data.position());
+                    int checksum = data.getInt(data.position() + Integer.BYTES);
+                    if (length < 0 || data.remaining() < HEADER_SIZE + length) {
+                        break;
+                    }
+                    ByteBuffer body = data.slice(data.position() + HEADER_SIZE, length);
+                    CRC32C crc = new CRC32C();
+                    crc.update(body.duplicate());
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                    handler.handle(body);
+                    data.position(data.position() + HEADER_SIZE + length);
+                    validEnd = data.position();
+                }
+                if (validEnd == data.limit()) {
+                    continue;
+                }
+                if (n != segmentNumber) {
+                    throw new IOException("Журнал повреждён: сегмент " + segmentPath(n)
+                            + " обрывается на байте " + validEnd + " из " + data.limit());
+                }
+                segment.truncate(validEnd);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            sync(appendedLsn);
+            segment.force(false);
+            segment.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // вызывается под блокировкой; на время записи и fsync блокировка отпускается,
+    // чтобы другие потоки продолжали копить следующую группу
+    private void flushBatch() {
+        flushing = true;
+        ByteBuffer batch = pending;
+        pending = spare;
+        long batchLsn = appendedLsn;
+        lock.unlock();
+        IOException error = null;
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                segment.write(batch);
+            }
+            segment.force(false);
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            lock.lock();
+        }
+        batch.clear();
+        spare = batch;
+        flushing = false;
+        if (error != null) {
+            failure = error;
+        } else {
+            durableLsn = batchLsn;
+        }
+        flushed.signalAll();
+    }
+
+    private void ensureRoom(int bytes) {
+        if (pending.remaining() < bytes) {
+            grow(bytes);
+        }
+    }
+
+    private void grow(int extra) {
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + extra));
+        pending.flip();
+        bigger.put(pending);
+        pending = bigger;
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve("wal-" + number + ".log");
+    }
+
+    private List<Long> segmentNumbers() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map((p) -> p.getFileName().toString())
+                    .filter((name) -> name.startsWith("wal-") && name.endsWith(".log"))
+                    .forEach((name) -> numbers.add(Long.parseLong(name.substring(4, name.length() - 4))));
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+}
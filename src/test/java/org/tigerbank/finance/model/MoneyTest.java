@@ -0,0 +1,63 @@
+package org.tigerbank.finance.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Currency;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void toMinorUnits_shouldRoundHalfUp() {
+        assertEquals(1235, Money.toMinorUnits(new BigDecimal("12.345")));
+        assertEquals(1234, Money.toMinorUnits(new BigDecimal("12.344")));
+        assertEquals(1200, Money.toMinorUnits(new BigDecimal("12")));
+    }
+
+    @Test
+    void toBigDecimal_shouldAlwaysHaveScaleTwo() {
+        assertEquals(new BigDecimal("0.00"), Money.toBigDecimal(0));
+        assertEquals(new BigDecimal("-7.05"), Money.toBigDecimal(-705));
+    }
+
+    @Test
+    void toMinorUnits_outOfLongRange_shouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () ->
+                Money.toMinorUnits(new BigDecimal("1e20"))
+        );
+    }
+
+    @Test
+    void add_onOverflow_shouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> Money.add(Long.MAX_VALUE, 1));
+        assertEquals(Long.MIN_VALUE, Money.add(Long.MIN_VALUE + 1, -1));
+    }
+
+    @Test
+    void operation_shouldKeepAmountInMinorUnits() {
+        Operation op = new Operation(OperationType.EXPENSE, UUID.randomUUID(),
+                new BigDecimal("99.999"), LocalDate.now(), null, null);
+
+        assertEquals(10000, op.getAmountMinor());
+        assertEquals(-10000, op.getSignedAmountMinor());
+        assertEquals(new BigDecimal("-100.00"), op.getAmountWithSign());
+    }
+
+    @Test
+    void currencies_withMoreThanTwoFractionDigits_shouldBeRejected() {
+        Currency dinar = Currency.getInstance("KWD");
+
+        assertThrows(IllegalArgumentException.class, () -> Money.currency("KWD"));
+        assertThrows(IllegalArgumentException.class, () -> new BankAccount("Динары", dinar));
+        assertThrows(IllegalArgumentException.class, () -> BankAccount.restore(UUID.randomUUID(), "Динары", BigDecimal.ZERO, dinar));
+        assertThrows(IllegalArgumentException.class, () -> new Operation(OperationType.INCOME, UUID.randomUUID(),
+                BigDecimal.ONE, dinar, LocalDate.now(), null, null));
+        // валюты без дробной части и с двумя знаками представимы в масштабе 2
+        assertEquals(Currency.getInstance("JPY"), Money.currency("jpy"));
+        assertEquals(Currency.getInstance("USD"), new BankAccount("Доллары", Currency.getInstance("USD")).getCurrency());
+    }
+}
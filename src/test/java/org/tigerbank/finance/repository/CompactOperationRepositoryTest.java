@@ -0,0 +1,196 @@
+package org.tigerbank.finance.repository;
+
+import org.junit.jupiter.api.Test;
+import org.tigerbank.finance.dto.DailyRollup;
+import org.tigerbank.finance.dto.OperationCursor;
+import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.model.OperationType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactOperationRepositoryTest {
+
+    private final CompactOperationRepository repo = new CompactOperationRepository();
+    private final UUID accountId = UUID.randomUUID();
+    private final UUID categoryId = UUID.randomUUID();
+
+    private Operation operation(LocalDate date, String amount, UUID category) {
+        return new Operation(OperationType.EXPENSE, accountId, new BigDecimal(amount), date, "Кафе", category);
+    }
+
+    @Test
+    void save_thenFindById_shouldRestoreAllFields() {
+        Operation op = repo.save(new Operation(OperationType.INCOME, accountId, new BigDecimal("1500.50"),
+                LocalDate.of(2022, 5, 10), null, categoryId));
+
+        Operation found = repo.findById(op.getId()).orElseThrow();
+
+        assertEquals(op.getId(), found.getId());
+        assertEquals(OperationType.INCOME, found.getType());
+        assertEquals(accountId, found.getBankAccountId());
+        assertEquals(new BigDecimal("1500.50"), found.getAmount());
+        assertEquals(LocalDate.of(2022, 5, 10), found.getDate());
+        assertNull(found.getDescription());
+        assertEquals(categoryId, found.getCategoryId());
+    }
+
+    @Test
+    void resave_withNewDescriptions_shouldKeepLatestTextAfterHeapCompaction() {
+        LocalDate day = LocalDate.of(2023, 1, 1);
+        Operation op = repo.save(operation(day, "10.00", null));
+        Operation other = repo.save(new Operation(OperationType.EXPENSE, accountId, BigDecimal.ONE, day, "Такси 🚕", null));
+        // перезапись на месте оставляет старые описания мусором, пока массив описаний не перестроится
+        for (int i = 0; i < 20_000; i++) {
+            op.updateDescription("Описание №" + i);
+            repo.save(op);
+        }
+        op.updateDescription(null);
+        repo.save(op);
+
+        assertNull(repo.findById(op.getId()).orElseThrow().getDescription());
+        assertEquals("Такси 🚕", repo.findById(other.getId()).orElseThrow().getDescription());
+        op.updateDescription("Кафе");
+        repo.save(op);
+        assertEquals("Кафе", repo.findById(op.getId()).orElseThrow().getDescription());
+    }
+
+    @Test
+    void descriptions_acrossPageBoundary_shouldRoundTrip() {
+        LocalDate day = LocalDate.of(2023, 1, 1);
+        // 507 байт с длиной: страница заполняется за ~2000 операций, и её хвост не вмещает следующую запись
+        String base = "Ж".repeat(250);
+        List<Operation> saved = new ArrayList<>();
+        int count = 3 * CompactOperationRepository.DESCRIPTION_PAGE_SIZE / 512;
+        for (int i = 0; i < count; i++) {
+            saved.add(repo.save(new Operation(OperationType.EXPENSE, accountId, BigDecimal.ONE, day,
+                    base + String.format("%05d", i), null)));
+        }
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(base + String.format("%05d", i), repo.findById(saved.get(i).getId()).orElseThrow().getDescription());
+        }
+    }
+
+    @Test
+    void balanceAt_shouldFollowResavesMovesAndDeletes() {
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        List<Operation> saved = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            OperationType type = i % 3 == 0 ? OperationType.EXPENSE : OperationType.INCOME;
+            saved.add(repo.save(new Operation(type, accountId, new BigDecimal(i + 1 + ".10"), start.plusDays((i * 13L) % 40), null, null)));
+        }
+        for (int i = 0; i < 200; i += 4) {
+            Operation op = saved.get(i);
+            // тот же день - перезапись строки на месте, другой день - перенос
+            LocalDate date = i % 8 == 0 ? op.getDate() : op.getDate().plusDays(5);
+            repo.save(Operation.restore(op.getId(), OperationType.INCOME, accountId, new BigDecimal("2.00"), date, null, null));
+        }
+        for (int i = 1; i < 200; i += 4) {
+            repo.deleteById(saved.get(i).getId());
+        }
+
+        for (int day = -1; day <= 50; day += 3) {
+            LocalDate date = start.plusDays(day);
+            long expected = repo.findByAccountId(accountId).stream()
+                    .filter((op) -> !op.getDate().isAfter(date))
+                    .mapToLong(Operation::getSignedAmountMinor)
+                    .sum();
+            assertEquals(expected, repo.balanceAt(accountId, date));
+            assertEquals(expected, repo.dailyBalances(accountId, start.minusDays(2), date)[day + 2]);
+        }
+        assertEquals(0, repo.balanceAt(UUID.randomUUID(), start));
+    }
+
+    @Test
+    void resave_withNewDate_shouldMoveOperationBetweenDays() {
+        LocalDate first = LocalDate.of(2023, 1, 1);
+        LocalDate second = LocalDate.of(2023, 2, 1);
+        Operation op = repo.save(operation(first, "10.00", null));
+        repo.save(Operation.restore(op.getId(), op.getType(), accountId, new BigDecimal("20.00"), second, "Кафе", null));
+
+        assertTrue(repo.findByPeriod(first, first).isEmpty());
+        assertEquals(1, repo.findByPeriod(second, second).size());
+        assertEquals(1, repo.findAll().size());
+        assertEquals(new BigDecimal("20.00"), repo.findById(op.getId()).orElseThrow().getAmount());
+    }
+
+    @Test
+    void deleteMost_shouldCompactAndKeepRemainingOperations() {
+        LocalDate day = LocalDate.of(2023, 3, 1);
+        List<Operation> saved = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            saved.add(repo.save(operation(day.plusDays(i % 30), "1.00", categoryId)));
+        }
+        for (int i = 0; i < 4_000; i++) {
+            repo.deleteById(saved.get(i).getId());
+        }
+
+        assertEquals(1_000, repo.findAll().size());
+        assertEquals(1_000, repo.findByAccountId(accountId).size());
+        assertTrue(repo.findById(saved.get(0).getId()).isEmpty());
+        assertTrue(repo.findById(saved.get(4_999).getId()).isPresent());
+    }
+
+    @Test
+    void findDailyRollups_shouldMatchInMemoryRepository() {
+        InMemoryOperationRepository reference = new InMemoryOperationRepository();
+        LocalDate day = LocalDate.of(2024, 6, 1);
+        for (int i = 0; i < 200; i++) {
+            Operation op = operation(day.plusDays(i % 7), "3.33", i % 3 == 0 ? null : categoryId);
+            repo.save(op);
+            reference.save(op);
+        }
+
+        List<DailyRollup> actual = repo.findDailyRollups(day, day.plusDays(6));
+        List<DailyRollup> expected = reference.findDailyRollups(day, day.plusDays(6));
+
+        assertEquals(expected.size(), actual.size());
+        for (DailyRollup rollup : expected) {
+            DailyRollup match = actual.stream()
+                    .filter((r) -> r.getDate().equals(rollup.getDate()) && Objects.equals(r.getCategoryId(), rollup.getCategoryId()))
+                    .findFirst()
+                    .orElseThrow();
+            assertEquals(rollup.getCount(), match.getCount());
+            assertEquals(rollup.getAmountMinor(), match.getAmountMinor());
+        }
+    }
+
+    @Test
+    void snapshotCommit_shouldReplaceContent() {
+        Operation old = repo.save(operation(LocalDate.now(), "5.00", null));
+        ISnapshotWriter<Operation> snapshot = repo.newSnapshot();
+        Operation fresh = operation(LocalDate.now(), "7.00", categoryId);
+        snapshot.save(fresh);
+
+        assertTrue(repo.findById(old.getId()).isPresent());
+        snapshot.commit();
+
+        assertTrue(repo.findById(old.getId()).isEmpty());
+        assertEquals(List.of(fresh.getId()), repo.findAll().stream().map(Operation::getId).toList());
+    }
+
+    @Test
+    void cursorQueries_shouldMatchInMemoryRepository() {
+        InMemoryOperationRepository reference = new InMemoryOperationRepository();
+        LocalDate day = LocalDate.of(2024, 7, 1);
+        for (int i = 0; i < 300; i++) {
+            Operation op = operation(day.plusDays(i % 13), "1.00", null);
+            repo.save(op);
+            reference.save(op);
+        }
+        Operation pivot = reference.streamByAccountId(accountId, null, 100).toList().get(99);
+        OperationCursor cursor = OperationCursor.of(pivot);
+
+        assertEquals(reference.streamByAccountId(accountId, cursor, 50).map(Operation::getId).toList(),
+                repo.streamByAccountId(accountId, cursor, 50).map(Operation::getId).toList());
+        assertEquals(reference.streamByPeriod(day, day.plusDays(5), cursor, 50).map(Operation::getId).toList(),
+                repo.streamByPeriod(day, day.plusDays(5), cursor, 50).map(Operation::getId).toList());
+    }
+}
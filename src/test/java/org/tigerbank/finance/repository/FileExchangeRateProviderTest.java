@@ -0,0 +1,55 @@
+package org.tigerbank.finance.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Currency;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileExchangeRateProviderTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final Currency RUB = Currency.getInstance("RUB");
+
+    private FileExchangeRateProvider provider(String content) throws Exception {
+        Path file = Files.createTempFile("rates", ".csv");
+        Files.writeString(file, content);
+        try {
+            return new FileExchangeRateProvider(file.toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void findRate_shouldUseLastRateOnOrBeforeDate() throws Exception {
+        FileExchangeRateProvider rates = provider("""
+                # дата;из;в;курс
+                2024-01-01;USD;RUB;90
+                2024-02-01;USD;RUB;92.5
+                """);
+
+        assertEquals(Optional.empty(), rates.findRate(USD, RUB, LocalDate.of(2023, 12, 31)));
+        assertEquals(new BigDecimal("90"), rates.findRate(USD, RUB, LocalDate.of(2024, 1, 31)).orElseThrow());
+        assertEquals(new BigDecimal("92.5"), rates.findRate(USD, RUB, LocalDate.of(2024, 6, 1)).orElseThrow());
+    }
+
+    @Test
+    void findRate_shouldInvertReversePair() throws Exception {
+        FileExchangeRateProvider rates = provider("2024-01-01;USD;RUB;80\n");
+
+        assertEquals(0, new BigDecimal("0.0125").compareTo(rates.findRate(RUB, USD, LocalDate.of(2024, 1, 1)).orElseThrow()));
+    }
+
+    @Test
+    void malformedLine_shouldFailWithLineNumber() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> provider("2024-01-01;USD;RUB;90\n2024-01-02;USD;RUB\n"));
+        assertTrue(e.getMessage().contains("Строка 2"));
+    }
+}
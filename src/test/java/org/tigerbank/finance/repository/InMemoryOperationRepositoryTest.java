@@ -0,0 +1,342 @@
+package org.tigerbank.finance.repository;
+
+import org.junit.jupiter.api.Test;
+import org.tigerbank.finance.dto.DailyRollup;
+import org.tigerbank.finance.dto.OperationCursor;
+import org.tigerbank.finance.dto.OperationPage;
+import org.tigerbank.finance.dto.TimeGranularity;
+import org.tigerbank.finance.model.Category;
+import org.tigerbank.finance.model.CategoryType;
+import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.model.OperationType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryOperationRepositoryTest {
+
+    private final InMemoryOperationRepository repo = new InMemoryOperationRepository();
+    private final UUID accountId = UUID.randomUUID();
+    private final UUID otherAccountId = UUID.randomUUID();
+
+    private Operation operation(UUID account, LocalDate date) {
+        return new Operation(OperationType.INCOME, account, new BigDecimal("10.00"), date, "Test", null);
+    }
+
+    // ===== ТЕСТЫ ИНДЕКСА ПО СЧЁТУ =====
+
+    @Test
+    void findByAccountId_shouldReturnOnlyOperationsOfAccount() {
+        Operation first = repo.save(operation(accountId, LocalDate.now()));
+        Operation second = repo.save(operation(accountId, LocalDate.now()));
+        repo.save(operation(otherAccountId, LocalDate.now()));
+
+        List<Operation> result = repo.findByAccountId(accountId);
+
+        assertEquals(2, result.size());
+        assertTrue(result.contains(first));
+        assertTrue(result.contains(second));
+    }
+
+    @Test
+    void findByAccountId_afterDelete_shouldNotReturnDeletedOperation() {
+        Operation op = repo.save(operation(accountId, LocalDate.now()));
+        repo.deleteById(op.getId());
+
+        assertTrue(repo.findByAccountId(accountId).isEmpty());
+    }
+
+    @Test
+    void findByAccountId_forUnknownAccount_shouldReturnEmptyList() {
+        assertTrue(repo.findByAccountId(UUID.randomUUID()).isEmpty());
+    }
+
+    @Test
+    void save_sameOperationTwice_shouldNotDuplicateInIndex() {
+        Operation op = operation(accountId, LocalDate.now());
+        repo.save(op);
+        repo.save(op);
+
+        assertEquals(1, repo.findByAccountId(accountId).size());
+    }
+
+    @Test
+    void concurrentSaveAndDelete_shouldKeepIndexConsistent() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<List<Operation>>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(() -> {
+                List<Operation> kept = new ArrayList<>();
+                for (int i = 0; i < 1_000; i++) {
+                    Operation op = repo.save(operation(accountId, LocalDate.now()));
+                    if (i % 2 == 0) {
+                        repo.deleteById(op.getId());
+                    } else {
+                        kept.add(op);
+                    }
+                }
+                return kept;
+            }));
+        }
+        int expected = 0;
+        for (Future<List<Operation>> f : futures) {
+            expected += f.get().size();
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(expected, repo.findByAccountId(accountId).size());
+        assertEquals(expected, repo.findAll().size());
+    }
+
+    // ===== ТЕСТЫ ИНДЕКСА ПО ДАТЕ =====
+
+    @Test
+    void findByPeriod_shouldIncludeBothBoundaryDays() {
+        LocalDate from = LocalDate.now().minusDays(7);
+        LocalDate to = LocalDate.now();
+        Operation first = repo.save(operation(accountId, from));
+        Operation last = repo.save(operation(accountId, to));
+        repo.save(operation(accountId, from.minusDays(1)));
+
+        List<Operation> result = repo.findByPeriod(from, to);
+
+        assertEquals(2, result.size());
+        assertTrue(result.contains(first));
+        assertTrue(result.contains(last));
+    }
+
+    @Test
+    void findByPeriod_singleDay_shouldReturnOperationsOfThatDay() {
+        LocalDate day = LocalDate.now().minusDays(3);
+        Operation op = repo.save(operation(accountId, day));
+
+        assertEquals(List.of(op), repo.findByPeriod(day, day));
+    }
+
+    @Test
+    void findByPeriod_afterDelete_shouldNotReturnDeletedOperation() {
+        Operation op = repo.save(operation(accountId, LocalDate.now()));
+        repo.deleteById(op.getId());
+
+        assertTrue(repo.findByPeriod(LocalDate.now().minusDays(1), LocalDate.now()).isEmpty());
+    }
+
+    @Test
+    void findByPeriod_withFromAfterTo_shouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () ->
+                repo.findByPeriod(LocalDate.now(), LocalDate.now().minusDays(1))
+        );
+    }
+
+    // ===== ТЕСТЫ ДНЕВНЫХ АГРЕГАТОВ =====
+
+    @Test
+    void findDailyRollups_shouldAggregateByDayCategoryAndType() {
+        LocalDate day = LocalDate.now().minusDays(2);
+        UUID categoryId = UUID.randomUUID();
+        repo.save(new Operation(OperationType.EXPENSE, accountId, new BigDecimal("10.00"), day, null, categoryId));
+        repo.save(new Operation(OperationType.EXPENSE, accountId, new BigDecimal("2.50"), day, null, categoryId));
+        repo.save(new Operation(OperationType.INCOME, accountId, new BigDecimal("7.00"), day, null, categoryId));
+
+        List<DailyRollup> rollups = repo.findDailyRollups(day, day);
+
+        assertEquals(2, rollups.size());
+        DailyRollup expense = rollups.stream().filter((r) -> r.getType() == OperationType.EXPENSE).findFirst().orElseThrow();
+        assertEquals(2, expense.getCount());
+        assertEquals(new BigDecimal("12.50"), expense.getAmount());
+        assertEquals(categoryId, expense.getCategoryId());
+    }
+
+    @Test
+    void findDailyRollups_afterDeletingLastOperation_shouldDropRollup() {
+        Operation op = repo.save(operation(accountId, LocalDate.now()));
+        repo.deleteById(op.getId());
+
+        assertTrue(repo.findDailyRollups(LocalDate.now(), LocalDate.now()).isEmpty());
+    }
+
+    @Test
+    void findDailyRollups_shouldMatchDefaultImplementation() {
+        for (int i = 0; i < 50; i++) {
+            repo.save(operation(i % 2 == 0 ? accountId : otherAccountId, LocalDate.now().minusDays(i % 7)));
+        }
+        IOperationRepository scanning = new IOperationRepository() {
+            @Override public Operation save(Operation operation) { throw new UnsupportedOperationException(); }
+            @Override public java.util.Optional<Operation> findById(UUID id) { throw new UnsupportedOperationException(); }
+            @Override public List<Operation> findAll() { return repo.findAll(); }
+            @Override public void deleteById(UUID id) { throw new UnsupportedOperationException(); }
+            @Override public List<Operation> findByAccountId(UUID id) { return repo.findByAccountId(id); }
+            @Override public List<Operation> findByPeriod(LocalDate from, LocalDate to) { return repo.findByPeriod(from, to); }
+            @Override public ISnapshotWriter<Operation> newSnapshot() { throw new UnsupportedOperationException(); }
+        };
+        LocalDate from = LocalDate.now().minusDays(5);
+
+        assertEquals(total(scanning.findDailyRollups(from, LocalDate.now())), total(repo.findDailyRollups(from, LocalDate.now())));
+        assertEquals(scanning.findDailyRollups(from, LocalDate.now()).size(), repo.findDailyRollups(from, LocalDate.now()).size());
+    }
+
+    private static BigDecimal total(List<DailyRollup> rollups) {
+        return rollups.stream().map(DailyRollup::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    // ===== ТЕСТЫ ПОСТРАНИЧНОЙ ВЫБОРКИ =====
+
+    @Test
+    void findPageByAccountId_shouldWalkAllOperationsInOrder() {
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < 95; i++) {
+            repo.save(operation(accountId, start.plusDays(i % 10)));
+        }
+        repo.save(operation(otherAccountId, start));
+
+        List<Operation> walked = new ArrayList<>();
+        OperationCursor cursor = null;
+        int pages = 0;
+        do {
+            OperationPage page = repo.findPageByAccountId(accountId, cursor, 20);
+            walked.addAll(page.getItems());
+            cursor = page.getNext();
+            pages++;
+        } while (cursor != null);
+
+        List<Operation> expected = new ArrayList<>(repo.findByAccountId(accountId));
+        expected.sort(OperationCursor.ORDER);
+        assertEquals(5, pages);
+        assertEquals(expected, walked);
+    }
+
+    @Test
+    void streamByPeriod_shouldContinueAfterCursorWithinDay() {
+        LocalDate day = LocalDate.of(2024, 2, 1);
+        for (int i = 0; i < 10; i++) {
+            repo.save(operation(accountId, day));
+            repo.save(operation(otherAccountId, day.plusDays(1)));
+        }
+        List<Operation> all = repo.streamByPeriod(day, day.plusDays(1), null, 100).toList();
+
+        List<Operation> rest = repo.streamByPeriod(day, day.plusDays(1), OperationCursor.of(all.get(4)), 8).toList();
+
+        assertEquals(20, all.size());
+        assertEquals(all.subList(5, 13), rest);
+    }
+
+    @Test
+    void findPageByAccountId_withInvalidLimit_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> repo.findPageByAccountId(accountId, null, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> repo.findPageByAccountId(accountId, null, OperationPage.MAX_SIZE + 1));
+    }
+
+    // ===== ТЕСТЫ АГРЕГАТОВ ПО ИНТЕРВАЛАМ =====
+
+    @Test
+    void findRollups_shouldMatchRegroupedDailyRollupsOnPartialEdges() {
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        List<Operation> saved = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            saved.add(repo.save(operation(accountId, start.plusDays(i * 3L))));
+        }
+        repo.deleteById(saved.get(10).getId());
+        LocalDate from = LocalDate.of(2020, 1, 17);
+        LocalDate to = LocalDate.of(2022, 11, 9);
+
+        for (TimeGranularity granularity : TimeGranularity.values()) {
+            List<DailyRollup> expected = granularity.rollUp(repo.findDailyRollups(from, to));
+            List<DailyRollup> actual = repo.findRollups(from, to, granularity);
+
+            assertEquals(expected.size(), actual.size(), granularity.name());
+            for (DailyRollup rollup : expected) {
+                DailyRollup match = actual.stream()
+                        .filter((r) -> r.getDate().equals(rollup.getDate()))
+                        .findFirst()
+                        .orElseThrow();
+                assertEquals(rollup.getCount(), match.getCount());
+                assertEquals(rollup.getAmountMinor(), match.getAmountMinor());
+            }
+        }
+    }
+
+    @Test
+    void save_afterMutatingStoredOperation_shouldMoveRollupsExactly() {
+        LocalDate date = LocalDate.of(2024, 3, 13);
+        Category first = new Category("Продукты", CategoryType.EXPENSE);
+        Category second = new Category("Кафе", CategoryType.EXPENSE);
+        Operation saved = repo.save(new Operation(OperationType.EXPENSE, accountId, new BigDecimal("10.00"), date, null, first.getId()));
+
+        // экземпляр из findById изменяется до повторного save
+        Operation stored = repo.findById(saved.getId()).orElseThrow();
+        stored.assignCategory(second);
+        repo.save(stored);
+        stored.removeCategory();
+        repo.save(stored);
+
+        for (TimeGranularity granularity : TimeGranularity.values()) {
+            List<DailyRollup> rollups = repo.findRollups(date, date, granularity);
+            assertEquals(1, rollups.size(), granularity.name());
+            assertNull(rollups.get(0).getCategoryId());
+            assertEquals(1, rollups.get(0).getCount());
+            assertEquals(1000, rollups.get(0).getAmountMinor());
+        }
+        assertEquals(-1000, repo.balanceAt(accountId, date));
+
+        repo.deleteById(stored.getId());
+
+        for (TimeGranularity granularity : TimeGranularity.values()) {
+            assertTrue(repo.findRollups(date.minusMonths(1), date.plusMonths(1), granularity).isEmpty(), granularity.name());
+        }
+        assertEquals(0, repo.balanceAt(accountId, date));
+    }
+
+    // ===== ТЕСТЫ ИСТОРИИ БАЛАНСА =====
+
+    @Test
+    void balanceAt_shouldFollowBackdatedInsertsAndDeletes() {
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        List<Operation> saved = new ArrayList<>();
+        // даты идут вперёд и назад, чтобы часть операций добавлялась задним числом
+        for (int i = 0; i < 300; i++) {
+            OperationType type = i % 4 == 0 ? OperationType.EXPENSE : OperationType.INCOME;
+            LocalDate date = start.plusDays((i * 37L) % 90);
+            saved.add(repo.save(new Operation(type, accountId, new BigDecimal(i + 1 + ".25"), date, null, null)));
+        }
+        repo.save(operation(otherAccountId, start));
+        for (int i = 0; i < 300; i += 3) {
+            repo.deleteById(saved.get(i).getId());
+        }
+        CompactOperationRepository reference = new CompactOperationRepository();
+        repo.findAll().forEach(reference::save);
+
+        for (int day = -1; day <= 91; day += 7) {
+            LocalDate date = start.plusDays(day);
+            assertEquals(reference.balanceAt(accountId, date), repo.balanceAt(accountId, date));
+        }
+        assertArrayEquals(reference.dailyBalances(accountId, start.minusDays(3), start.plusDays(95)),
+                repo.dailyBalances(accountId, start.minusDays(3), start.plusDays(95)));
+        assertEquals(0, repo.balanceAt(UUID.randomUUID(), start));
+    }
+
+    @Test
+    void save_whenDailyBalanceOverflows_shouldThrowAndKeepIndexes() {
+        LocalDate day = LocalDate.of(2024, 1, 1);
+        long huge = Long.MAX_VALUE / 10 * 6;
+        Operation first = repo.save(new Operation(OperationType.INCOME, accountId, BigDecimal.valueOf(huge, 2), day, null, UUID.randomUUID()));
+        Operation second = new Operation(OperationType.INCOME, accountId, BigDecimal.valueOf(huge, 2), day, null, UUID.randomUUID());
+
+        assertThrows(IllegalArgumentException.class, () -> repo.save(second));
+
+        assertTrue(repo.findById(second.getId()).isEmpty());
+        assertEquals(List.of(first), repo.findByAccountId(accountId));
+        assertEquals(huge, repo.balanceAt(accountId, day));
+        assertEquals(1, repo.findDailyRollups(day, day).size());
+    }
+}
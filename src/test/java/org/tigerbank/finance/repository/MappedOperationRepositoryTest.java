@@ -0,0 +1,290 @@
+package org.tigerbank.finance.repository;
+
+import org.junit.jupiter.api.Test;
+import org.tigerbank.finance.dto.DailyRollup;
+import org.tigerbank.finance.model.Money;
+import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.model.OperationType;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedOperationRepositoryTest {
+
+    private final UUID accountId = UUID.randomUUID();
+    private final UUID categoryId = UUID.randomUUID();
+
+    private Operation operation(LocalDate date, String description) {
+        return new Operation(OperationType.EXPENSE, accountId, new BigDecimal("99.99"), date, description, categoryId);
+    }
+
+    @Test
+    void save_thenFindById_shouldRestoreAllFields() throws Exception {
+        try (MappedOperationRepository repo = new MappedOperationRepository(Files.createTempDirectory("ops"))) {
+            Operation op = repo.save(operation(LocalDate.of(2021, 3, 1), "Аптека"));
+
+            Operation found = repo.findById(op.getId()).orElseThrow();
+
+            assertEquals(OperationType.EXPENSE, found.getType());
+            assertEquals(accountId, found.getBankAccountId());
+            assertEquals(new BigDecimal("99.99"), found.getAmount());
+            assertEquals(LocalDate.of(2021, 3, 1), found.getDate());
+            assertEquals("Аптека", found.getDescription());
+            assertEquals(categoryId, found.getCategoryId());
+        }
+    }
+
+    @Test
+    void balanceAt_shouldSkipDeletedRowsAndOtherAccounts() throws Exception {
+        try (MappedOperationRepository repo = new MappedOperationRepository(Files.createTempDirectory("ops"))) {
+            repo.save(new Operation(OperationType.INCOME, accountId, new BigDecimal("100.00"), LocalDate.of(2021, 3, 1), null, null));
+            Operation deleted = repo.save(operation(LocalDate.of(2021, 3, 2), null));
+            repo.save(operation(LocalDate.of(2021, 3, 3), null));
+            repo.save(new Operation(OperationType.INCOME, UUID.randomUUID(), new BigDecimal("5.00"), LocalDate.of(2021, 3, 1), null, null));
+            repo.deleteById(deleted.getId());
+
+            assertEquals(10000, repo.balanceAt(accountId, LocalDate.of(2021, 3, 2)));
+            assertArrayEquals(new long[] {0, 10000, 10000, 1},
+                    repo.dailyBalances(accountId, LocalDate.of(2021, 2, 28), LocalDate.of(2021, 3, 3)));
+        }
+    }
+
+    @Test
+    void reopen_shouldKeepCurrencies() throws Exception {
+        Path dir = Files.createTempDirectory("ops");
+        Currency usd = Currency.getInstance("USD");
+        Operation dollars;
+        Operation roubles;
+        try (MappedOperationRepository repo = new MappedOperationRepository(dir)) {
+            dollars = repo.save(new Operation(OperationType.INCOME, accountId, BigDecimal.ONE, usd,
+                    LocalDate.of(2022, 1, 1), null, null));
+            roubles = repo.save(operation(LocalDate.of(2022, 1, 2), null));
+        }
+
+        try (MappedOperationRepository repo = new MappedOperationRepository(dir)) {
+            assertEquals(usd, repo.findById(dollars.getId()).orElseThrow().getCurrency());
+            assertEquals(Money.DEFAULT_CURRENCY, repo.findById(roubles.getId()).orElseThrow().getCurrency());
+        }
+    }
+
+    @Test
+    void reopen_shouldSeePreviouslySavedOperations() throws Exception {
+        Path dir = Files.createTempDirectory("ops");
+        Operation kept;
+        try (MappedOperationRepository repo = new MappedOperationRepository(dir)) {
+            kept = repo.save(operation(LocalDate.now(), null));
+            Operation deleted = repo.save(operation(LocalDate.now(), "Удалить"));
+            repo.deleteById(deleted.getId());
+        }
+
+        try (MappedOperationRepository repo = new MappedOperationRepository(dir)) {
+            assertEquals(1, repo.findAll().size());
+            assertNull(repo.findById(kept.getId()).orElseThrow().getDescription());
+        }
+    }
+
+    @Test
+    void findByAccountIdAndPeriod_shouldScanColumns() throws Exception {
+        try (MappedOperationRepository repo = new MappedOperationRepository(Files.createTempDirectory("ops"))) {
+            LocalDate day = LocalDate.now().minusDays(10);
+            Operation inPeriod = repo.save(operation(day, null));
+            repo.save(operation(day.minusDays(1), null));
+            repo.save(new Operation(OperationType.INCOME, UUID.randomUUID(), BigDecimal.ONE, day, null, null));
+
+            assertEquals(2, repo.findByAccountId(accountId).size());
+            assertEquals(2, repo.findByPeriod(day, LocalDate.now()).size());
+            assertTrue(repo.findByPeriod(day, day).stream().anyMatch((op) -> op.getId().equals(inPeriod.getId())));
+        }
+    }
+
+    @Test
+    void save_sameIdTwice_shouldKeepSingleLiveRow() throws Exception {
+        try (MappedOperationRepository repo = new MappedOperationRepository(Files.createTempDirectory("ops"))) {
+            Operation op = operation(LocalDate.now(), "Первое");
+            repo.save(op);
+            op.updateDescription("Второе");
+            repo.save(op);
+
+            List<Operation> all = repo.findAll();
+            assertEquals(1, all.size());
+            assertEquals("Второе", all.get(0).getDescription());
+        }
+    }
+
+    @Test
+    void snapshotCommit_shouldReplaceContent() throws Exception {
+        Path dir = Files.createTempDirectory("ops");
+        try (MappedOperationRepository repo = new MappedOperationRepository(dir)) {
+            Operation old = repo.save(operation(LocalDate.now(), null));
+            ISnapshotWriter<Operation> snapshot = repo.newSnapshot();
+            Operation fresh = operation(LocalDate.now(), "Новое");
+            snapshot.save(fresh);
+
+            assertTrue(repo.findById(old.getId()).isPresent());
+            snapshot.commit();
+
+            assertTrue(repo.findById(old.getId()).isEmpty());
+            assertEquals("Новое", repo.findById(fresh.getId()).orElseThrow().getDescription());
+        }
+        try (MappedOperationRepository repo = new MappedOperationRepository(dir)) {
+            assertEquals(1, repo.findAll().size());
+        }
+    }
+
+    @Test
+    void findDailyRollups_shouldMatchInMemoryRepository() throws Exception {
+        InMemoryOperationRepository reference = new InMemoryOperationRepository();
+        Currency usd = Currency.getInstance("USD");
+        LocalDate day = LocalDate.of(1969, 12, 28);
+        try (MappedOperationRepository repo = new MappedOperationRepository(Files.createTempDirectory("ops"))) {
+            List<Operation> saved = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                Operation op = new Operation(i % 2 == 0 ? OperationType.INCOME : OperationType.EXPENSE, accountId,
+                        new BigDecimal(i + ".01"), i % 5 == 0 ? usd : Money.DEFAULT_CURRENCY, day.plusDays(i % 9),
+                        null, i % 3 == 0 ? null : categoryId);
+                repo.save(op);
+                reference.save(op);
+                saved.add(op);
+            }
+            for (int i = 0; i < 500; i += 7) {
+                repo.deleteById(saved.get(i).getId());
+                reference.deleteById(saved.get(i).getId());
+            }
+
+            List<DailyRollup> actual = repo.findDailyRollups(day.plusDays(1), day.plusDays(7));
+            List<DailyRollup> expected = reference.findDailyRollups(day.plusDays(1), day.plusDays(7));
+
+            assertEquals(expected.size(), actual.size());
+            for (DailyRollup rollup : expected) {
+                DailyRollup match = actual.stream()
+                        .filter((r) -> r.getDate().equals(rollup.getDate())
+                                && Objects.equals(r.getCategoryId(), rollup.getCategoryId())
+                                && r.getType() == rollup.getType()
+                                && r.getCurrency().equals(rollup.getCurrency()))
+                        .findFirst()
+                        .orElseThrow();
+                assertEquals(rollup.getCount(), match.getCount());
+                assertEquals(rollup.getAmountMinor(), match.getAmountMinor());
+            }
+        }
+    }
+
+    @Test
+    void idIndex_shouldGrowAndSurviveReopen() throws Exception {
+        Path dir = Files.createTempDirectory("ops");
+        List<Operation> saved = new ArrayList<>();
+        try (MappedOperationRepository repo = new MappedOperationRepository(dir)) {
+            // несколько перестроений индекса: 16 -> 32 -> ... -> 512 ячеек
+            for (int i = 0; i < 200; i++) {
+                saved.add(repo.save(operation(LocalDate.of(2021, 3, 1), "Операция " + i)));
+            }
+            for (int i = 0; i < 200; i += 2) {
+                Operation op = saved.get(i);
+                repo.save(Operation.restore(op.getId(), OperationType.EXPENSE, accountId, new BigDecimal("1.00"),
+                        op.getDate(), "Исправлено " + i, categoryId));
+            }
+        }
+        assertTrue(Files.exists(dir.resolve("gen-1").resolve("ids.idx")));
+
+        try (MappedOperationRepository repo = new MappedOperationRepository(dir)) {
+            for (int i = 0; i < 200; i++) {
+                String expected = (i % 2 == 0 ? "Исправлено " : "Операция ") + i;
+                assertEquals(expected, repo.findById(saved.get(i).getId()).orElseThrow().getDescription());
+            }
+            assertEquals(200, repo.findAll().size());
+        }
+    }
+
+    @Test
+    void idIndex_whenFileIsMissing_shouldBeRebuiltFromIds() throws Exception {
+        Path dir = Files.createTempDirectory("ops");
+        Operation op;
+        try (MappedOperationRepository repo = new MappedOperationRepository(dir)) {
+            for (int i = 0; i < 40; i++) {
+                repo.save(operation(LocalDate.of(2021, 3, 1), null));
+            }
+            op = repo.save(operation(LocalDate.of(2021, 3, 2), "Последняя"));
+        }
+        Files.delete(dir.resolve("gen-1").resolve("ids.idx"));
+
+        try (MappedOperationRepository repo = new MappedOperationRepository(dir)) {
+            assertEquals("Последняя", repo.findById(op.getId()).orElseThrow().getDescription());
+            repo.deleteById(op.getId());
+            assertTrue(repo.findById(op.getId()).isEmpty());
+        }
+    }
+
+    @Test
+    void snapshotDiscard_shouldDeleteStagedGeneration() throws Exception {
+        Path dir = Files.createTempDirectory("ops");
+        try (MappedOperationRepository repo = new MappedOperationRepository(dir)) {
+            Operation kept = repo.save(operation(LocalDate.now(), "Старое"));
+
+            ISnapshotWriter<Operation> snapshot = repo.newSnapshot();
+            snapshot.save(operation(LocalDate.now(), "Новое"));
+            snapshot.discard();
+            snapshot.discard();
+
+            assertEquals(List.of(dir.resolve("gen-1")), generations(dir));
+            assertThrows(IllegalStateException.class, snapshot::commit);
+            assertEquals(List.of(kept.getId()), repo.findAll().stream().map(Operation::getId).toList());
+        }
+    }
+
+    @Test
+    void open_shouldDeleteGenerationsOtherThanCurrent() throws Exception {
+        Path dir = Files.createTempDirectory("ops");
+        try (MappedOperationRepository repo = new MappedOperationRepository(dir)) {
+            repo.save(operation(LocalDate.now(), "Старое"));
+            // снимок брошен без commit и discard, как при остановке посреди импорта
+            repo.newSnapshot().save(operation(LocalDate.now(), "Новое"));
+            assertEquals(2, generations(dir).size());
+        }
+
+        try (MappedOperationRepository repo = new MappedOperationRepository(dir)) {
+            assertEquals(List.of(dir.resolve("gen-1")), generations(dir));
+            assertEquals("Старое", repo.findAll().get(0).getDescription());
+        }
+    }
+
+    private static List<Path> generations(Path dir) throws IOException {
+        try (Stream<Path> entries = Files.list(dir)) {
+            return entries.filter((path) -> path.getFileName().toString().startsWith("gen-")).toList();
+        }
+    }
+
+    @Test
+    void snapshotCommit_duringRead_shouldKeepPreviousGenerationUntilReadEnds() throws Exception {
+        Path dir = Files.createTempDirectory("ops");
+        try (MappedOperationRepository repo = new MappedOperationRepository(dir)) {
+            for (int i = 0; i < 3; i++) {
+                repo.save(operation(LocalDate.now(), "Старое " + i));
+            }
+            Iterator<Operation> reading = repo.streamAll().iterator();
+            assertEquals("Старое 0", reading.next().getDescription());
+
+            ISnapshotWriter<Operation> snapshot = repo.newSnapshot();
+            snapshot.save(operation(LocalDate.now(), "Новое"));
+            snapshot.commit();
+
+            assertTrue(Files.exists(dir.resolve("gen-1")));
+            assertEquals("Старое 1", reading.next().getDescription());
+            assertEquals("Старое 2", reading.next().getDescription());
+            assertFalse(reading.hasNext());
+            assertFalse(Files.exists(dir.resolve("gen-1")));
+            assertEquals("Новое", repo.findAll().get(0).getDescription());
+        }
+    }
+}
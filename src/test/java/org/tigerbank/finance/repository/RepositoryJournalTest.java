@@ -0,0 +1,201 @@
+package org.tigerbank.finance.repository;
+
+import org.junit.jupiter.api.Test;
+import org.tigerbank.finance.model.*;
+import org.tigerbank.finance.storage.WriteAheadLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepositoryJournalTest {
+
+    /**
+     * Набор репозиториев поверх одного каталога журнала, как их собирает Spring
+     */
+    private static final class Repositories {
+        final InMemoryBankAccountRepository accountStore = new InMemoryBankAccountRepository();
+        final InMemoryCategoryRepository categoryStore = new InMemoryCategoryRepository();
+        final InMemoryOperationRepository operationStore = new InMemoryOperationRepository();
+        final RepositoryJournal journal;
+        final IBankAccountRepository accounts;
+        final ICategoryRepository categories;
+        final IOperationRepository operations;
+
+        Repositories(Path dir) throws Exception {
+            journal = new RepositoryJournal(accountStore, categoryStore, operationStore, dir.toString());
+            accounts = new DurableBankAccountRepository(accountStore, journal);
+            categories = new DurableCategoryRepository(categoryStore, journal);
+            operations = new DurableOperationRepository(operationStore, journal);
+        }
+    }
+
+    private Operation operation(UUID accountId, UUID categoryId) {
+        return new Operation(OperationType.EXPENSE, accountId, new BigDecimal("12.34"), LocalDate.now(), "Кафе", categoryId);
+    }
+
+    @Test
+    void reopen_shouldReplayJournal() throws Exception {
+        Path dir = Files.createTempDirectory("wal");
+        BankAccount account;
+        Category category;
+        Operation kept;
+        Repositories first = new Repositories(dir);
+        account = first.accounts.save(new BankAccount("Основной"));
+        category = first.categories.save(new Category("Еда", CategoryType.EXPENSE));
+        kept = first.operations.save(operation(account.getId(), category.getId()));
+        Operation deleted = first.operations.save(operation(account.getId(), null));
+        first.operations.deleteById(deleted.getId());
+        first.journal.close();
+
+        Repositories second = new Repositories(dir);
+
+        assertEquals("Основной", second.accounts.findById(account.getId()).orElseThrow().getName());
+        assertEquals("Еда", second.categories.findById(category.getId()).orElseThrow().getName());
+        assertEquals(1, second.operations.findAll().size());
+        Operation restored = second.operations.findById(kept.getId()).orElseThrow();
+        assertEquals(new BigDecimal("12.34"), restored.getAmount());
+        assertEquals(category.getId(), restored.getCategoryId());
+        second.journal.close();
+    }
+
+    @Test
+    void checkpoint_shouldTruncateJournalAndKeepLaterChanges() throws Exception {
+        Path dir = Files.createTempDirectory("wal");
+        Repositories first = new Repositories(dir);
+        BankAccount account = first.accounts.save(new BankAccount("Основной"));
+        first.operations.save(operation(account.getId(), null));
+        first.journal.checkpoint();
+        Operation afterCheckpoint = first.operations.save(operation(account.getId(), null));
+        first.journal.close();
+
+        assertTrue(Files.exists(dir.resolve(RepositoryJournal.SNAPSHOT_FILE)));
+        Repositories second = new Repositories(dir);
+
+        assertEquals(2, second.operations.findAll().size());
+        assertTrue(second.operations.findById(afterCheckpoint.getId()).isPresent());
+        second.journal.close();
+    }
+
+    @Test
+    void reopen_withTornTail_shouldDropIncompleteRecord() throws Exception {
+        Path dir = Files.createTempDirectory("wal");
+        Repositories first = new Repositories(dir);
+        BankAccount account = first.accounts.save(new BankAccount("Основной"));
+        first.journal.close();
+        // имитируем сбой посреди записи: заголовок есть, тела нет
+        Files.write(dir.resolve("wal-1.log"), new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        Repositories second = new Repositories(dir);
+        second.accounts.save(new BankAccount("Второй"));
+        second.journal.close();
+
+        Repositories third = new Repositories(dir);
+        assertEquals(2, third.accounts.findAll().size());
+        assertTrue(third.accounts.findById(account.getId()).isPresent());
+        third.journal.close();
+    }
+
+    @Test
+    void reopen_withUnknownRecordType_shouldFailRecovery() throws Exception {
+        Path dir = Files.createTempDirectory("wal");
+        WriteAheadLog wal = new WriteAheadLog(dir);
+        // операция с типом 9 и корректной контрольной суммой записи
+        wal.sync(wal.append((buffer) -> buffer.put((byte) 3).put((byte) 1).putLong(1).putLong(2).put((byte) 9)));
+        wal.close();
+
+        assertThrows(IOException.class, () -> new Repositories(dir));
+    }
+
+    @Test
+    void reopen_withCorruptedEarlierSegment_shouldFailRecovery() throws Exception {
+        Path dir = Files.createTempDirectory("wal");
+        Repositories first = new Repositories(dir);
+        first.accounts.save(new BankAccount("Первый"));
+        first.accounts.save(new BankAccount("Второй"));
+        first.journal.close();
+        // повреждение в теле первой записи, после которой есть подтверждённая вторая
+        byte[] bytes = Files.readAllBytes(dir.resolve("wal-1.log"));
+        bytes[12] ^= 0x7F;
+        Files.write(dir.resolve("wal-1.log"), bytes);
+        Files.write(dir.resolve("wal-2.log"), new byte[0]);
+
+        assertThrows(IOException.class, () -> new Repositories(dir));
+    }
+
+    @Test
+    void save_whenJournalFails_shouldRollBackMemory() throws Exception {
+        Path dir = Files.createTempDirectory("wal");
+        Repositories repos = new Repositories(dir);
+        Operation kept = repos.operations.save(operation(UUID.randomUUID(), null));
+        repos.journal.close();
+        Operation lost = operation(UUID.randomUUID(), null);
+
+        assertThrows(UncheckedIOException.class, () -> repos.operations.save(lost));
+        assertThrows(UncheckedIOException.class, () -> repos.operations.deleteById(kept.getId()));
+
+        assertTrue(repos.operations.findById(lost.getId()).isEmpty());
+        assertTrue(repos.operations.findById(kept.getId()).isPresent());
+    }
+
+    @Test
+    void save_afterInPlaceChange_whenJournalFails_shouldKeepJournaledState() throws Exception {
+        Path dir = Files.createTempDirectory("wal");
+        Repositories repos = new Repositories(dir);
+        BankAccount account = repos.accounts.save(new BankAccount("Основной"));
+        Operation operation = repos.operations.save(operation(account.getId(), null));
+        repos.journal.close();
+
+        BankAccount loadedAccount = repos.accounts.findById(account.getId()).orElseThrow();
+        loadedAccount.applyDelta(10_000);
+        Operation loadedOperation = repos.operations.findById(operation.getId()).orElseThrow();
+        loadedOperation.updateDescription("Изменено на месте");
+
+        assertThrows(UncheckedIOException.class, () -> repos.accounts.save(loadedAccount));
+        assertThrows(UncheckedIOException.class, () -> repos.operations.save(loadedOperation));
+
+        assertEquals(0, repos.accounts.findById(account.getId()).orElseThrow().getBalanceMinor());
+        assertEquals("Кафе", repos.operations.findById(operation.getId()).orElseThrow().getDescription());
+        Repositories reopened = new Repositories(dir);
+        assertEquals(0, reopened.accounts.findById(account.getId()).orElseThrow().getBalanceMinor());
+        assertEquals("Кафе", reopened.operations.findById(operation.getId()).orElseThrow().getDescription());
+        reopened.journal.close();
+    }
+
+    @Test
+    void concurrentWriters_shouldAllBeDurable() throws Exception {
+        Path dir = Files.createTempDirectory("wal");
+        Repositories first = new Repositories(dir);
+        UUID accountId = UUID.randomUUID();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    first.operations.save(operation(accountId, null));
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+        first.journal.close();
+
+        Repositories second = new Repositories(dir);
+        assertEquals(1_600, second.operations.findAll().size());
+        second.journal.close();
+    }
+}
@@ -0,0 +1,43 @@
+package org.tigerbank.finance.service;
+
+import org.junit.jupiter.api.Test;
+import org.tigerbank.finance.dto.DailyRollup;
+import org.tigerbank.finance.model.OperationType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalyticsAccumulatorTest {
+
+    @Test
+    void minorUnitSum_onLongOverflow_shouldFallBackToBigDecimal() {
+        AnalyticsAccumulator.MinorUnitSum sum = new AnalyticsAccumulator.MinorUnitSum();
+        sum.add(Long.MAX_VALUE - 1);
+        sum.add(Long.MAX_VALUE - 1);
+        sum.add(1);
+
+        BigDecimal big = BigDecimal.valueOf(Long.MAX_VALUE - 1, 2);
+        assertEquals(big.add(big).add(new BigDecimal("0.01")), sum.toBigDecimal());
+    }
+
+    @Test
+    void merge_shouldCombineTotalsAndCategories() {
+        UUID categoryId = UUID.randomUUID();
+        LocalDate day = LocalDate.now();
+        AnalyticsAccumulator first = new AnalyticsAccumulator();
+        first.add(new DailyRollup(day, categoryId, OperationType.EXPENSE, 2, 1050));
+        AnalyticsAccumulator second = new AnalyticsAccumulator();
+        second.add(new DailyRollup(day, categoryId, OperationType.EXPENSE, 1, 50));
+        second.add(new DailyRollup(day, null, OperationType.INCOME, 1, 10000));
+
+        AnalyticsAccumulator merged = first.merge(second);
+
+        assertEquals(new BigDecimal("89.00"), merged.netIncome());
+        assertEquals(new BigDecimal("11.00"), merged.byCategory(OperationType.EXPENSE).get(categoryId));
+        assertEquals(3, merged.toSummary().getExpenseCount());
+        assertTrue(merged.byCategory(OperationType.INCOME).isEmpty());
+    }
+}
@@ -0,0 +1,265 @@
+package org.tigerbank.finance.service;
+
+import org.junit.jupiter.api.Test;
+import org.tigerbank.finance.dto.AnalyticsSummary;
+import org.tigerbank.finance.dto.DailyRollup;
+import org.tigerbank.finance.dto.TimeGranularity;
+import org.tigerbank.finance.dto.TimeSeriesPoint;
+import org.tigerbank.finance.model.Category;
+import org.tigerbank.finance.model.CategoryType;
+import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.model.OperationType;
+import org.tigerbank.finance.repository.InMemoryCategoryRepository;
+import org.tigerbank.finance.repository.InMemoryOperationRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalyticsServiceTest {
+
+    private final InMemoryOperationRepository operationRepo = new InMemoryOperationRepository();
+    private final InMemoryCategoryRepository categoryRepo = new InMemoryCategoryRepository();
+    private final AnalyticsService service = new AnalyticsService(operationRepo, categoryRepo);
+
+    private final UUID accountId = UUID.randomUUID();
+    private final Category food = categoryRepo.save(new Category("Еда", CategoryType.EXPENSE));
+    private final Category salary = categoryRepo.save(new Category("Зарплата", CategoryType.INCOME));
+    private final LocalDate from = LocalDate.now().minusDays(30);
+    private final LocalDate to = LocalDate.now();
+
+    private Operation save(OperationType type, String amount, LocalDate date, Category category) {
+        return operationRepo.save(new Operation(type, accountId, new BigDecimal(amount), date, "Test",
+                category == null ? null : category.getId()));
+    }
+
+    @Test
+    void calculateNetIncome_shouldSubtractExpensesFromIncome() {
+        save(OperationType.INCOME, "1000.00", from, salary);
+        save(OperationType.EXPENSE, "250.25", to, food);
+        save(OperationType.EXPENSE, "100.00", to, null);
+        save(OperationType.INCOME, "999.00", from.minusDays(1), salary);
+
+        assertEquals(0, new BigDecimal("649.75").compareTo(service.calculateNetIncome(from, to)));
+    }
+
+    @Test
+    void calculateNetIncome_afterDelete_shouldNotCountDeletedOperation() {
+        save(OperationType.INCOME, "1000.00", to, salary);
+        Operation expense = save(OperationType.EXPENSE, "300.00", to, food);
+        operationRepo.deleteById(expense.getId());
+
+        assertEquals(0, new BigDecimal("1000.00").compareTo(service.calculateNetIncome(from, to)));
+    }
+
+    @Test
+    void groupByCategory_shouldSumAcrossDays() {
+        save(OperationType.EXPENSE, "10.00", from, food);
+        save(OperationType.EXPENSE, "20.00", from.plusDays(1), food);
+        save(OperationType.EXPENSE, "5.00", to, null);
+        save(OperationType.INCOME, "1000.00", to, salary);
+
+        Map<Category, BigDecimal> result = service.groupByCategory(from, to, OperationType.EXPENSE);
+
+        assertEquals(1, result.size());
+        assertEquals(0, new BigDecimal("30.00").compareTo(result.get(food)));
+    }
+
+    @Test
+    void summarize_shouldCollectTotalsCountsAndCategoriesInOnePass() {
+        save(OperationType.INCOME, "1000.00", from, salary);
+        save(OperationType.EXPENSE, "10.00", from, food);
+        save(OperationType.EXPENSE, "15.00", to, food);
+        save(OperationType.EXPENSE, "5.00", to, null);
+
+        AnalyticsSummary summary = service.summarize(from, to);
+
+        assertEquals(new BigDecimal("1000.00"), summary.getIncome());
+        assertEquals(new BigDecimal("30.00"), summary.getExpense());
+        assertEquals(new BigDecimal("970.00"), summary.getNetIncome());
+        assertEquals(1, summary.getIncomeCount());
+        assertEquals(3, summary.getExpenseCount());
+        assertEquals(new BigDecimal("25.00"), summary.getExpenseByCategory().get(food.getId()));
+        assertEquals(1, summary.getExpenseByCategory().size());
+    }
+
+    // ===== ТЕСТЫ ОТСУТСТВУЮЩИХ КАТЕГОРИЙ =====
+
+    @Test
+    void groupByCategory_withOrphanCategory_shouldFailByDefault() {
+        save(OperationType.EXPENSE, "10.00", to, food);
+        categoryRepo.deleteById(food.getId());
+
+        assertThrows(IllegalArgumentException.class, () ->
+                service.groupByCategory(from, to, OperationType.EXPENSE)
+        );
+    }
+
+    @Test
+    void groupByCategory_withSkipPolicy_shouldIgnoreOrphans() {
+        Category rent = categoryRepo.save(new Category("Аренда", CategoryType.EXPENSE));
+        save(OperationType.EXPENSE, "10.00", to, food);
+        save(OperationType.EXPENSE, "500.00", to, rent);
+        categoryRepo.deleteById(food.getId());
+
+        Map<Category, BigDecimal> result = service.groupByCategory(from, to, OperationType.EXPENSE, OrphanCategoryPolicy.SKIP);
+
+        assertEquals(1, result.size());
+        assertEquals(new BigDecimal("500.00"), result.get(rent));
+    }
+
+    @Test
+    void groupByCategory_withUnknownPolicy_shouldMergeOrphansIntoOneBucket() {
+        Category rent = categoryRepo.save(new Category("Аренда", CategoryType.EXPENSE));
+        save(OperationType.EXPENSE, "10.00", to, food);
+        save(OperationType.EXPENSE, "20.00", from, rent);
+        categoryRepo.deleteById(food.getId());
+        categoryRepo.deleteById(rent.getId());
+
+        Map<Category, BigDecimal> result = service.groupByCategory(from, to, OperationType.EXPENSE, OrphanCategoryPolicy.UNKNOWN);
+
+        assertEquals(1, result.size());
+        Category unknown = result.keySet().iterator().next();
+        assertEquals(AnalyticsService.UNKNOWN_CATEGORY_ID, unknown.getId());
+        assertEquals(CategoryType.EXPENSE, unknown.getType());
+        assertEquals(new BigDecimal("30.00"), result.get(unknown));
+    }
+
+    // ===== ТЕСТЫ ПАРАЛЛЕЛЬНОГО РЕЖИМА =====
+
+    @Test
+    void parallelMode_shouldMatchSequentialResults() {
+        LocalDate start = LocalDate.now().minusDays(400);
+        for (int i = 0; i <= 400; i++) {
+            save(OperationType.EXPENSE, (i + 1) + ".25", start.plusDays(i), i % 3 == 0 ? null : food);
+            save(OperationType.INCOME, "100.00", start.plusDays(i), salary);
+        }
+        try (ParallelAnalyticsExecutor executor = new ParallelAnalyticsExecutor(4, 10, 7)) {
+            AnalyticsService parallel = new AnalyticsService(operationRepo, categoryRepo, executor);
+
+            assertEquals(service.calculateNetIncome(start, to), parallel.calculateNetIncome(start, to));
+            assertEquals(service.groupByCategory(start, to, OperationType.EXPENSE),
+                    parallel.groupByCategory(start, to, OperationType.EXPENSE));
+            assertEquals(802, parallel.summarize(start, to).getIncomeCount() + parallel.summarize(start, to).getExpenseCount());
+        }
+    }
+
+    @Test
+    void parallelMode_shouldScanPeriodOnceAndCountEveryRollup() {
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        LocalDate end = LocalDate.of(2023, 12, 31);
+        List<DailyRollup> rollups = start.datesUntil(end.plusDays(1))
+                .map((date) -> new DailyRollup(date, null, OperationType.INCOME, 1, 100))
+                .toList();
+        List<LocalDate> scans = Collections.synchronizedList(new ArrayList<>());
+        try (ParallelAnalyticsExecutor executor = new ParallelAnalyticsExecutor(4, 30, 5)) {
+            AnalyticsSummary summary = executor.accumulate(start, end, (from, to) -> {
+                scans.add(from);
+                scans.add(to);
+                return rollups;
+            }).toSummary();
+
+            assertEquals(rollups.size(), summary.getIncomeCount());
+        }
+
+        assertEquals(List.of(start, end), scans);
+    }
+
+    @Test
+    void summarize_withForeignCurrency_shouldConvertToReportingCurrency() {
+        Currency usd = Currency.getInstance("USD");
+        CurrencyConverter converter = new CurrencyConverter(
+                (f, t, date) -> Optional.of(date.isBefore(to) ? new BigDecimal("90") : new BigDecimal("100")), "RUB", 1);
+        AnalyticsService converting = new AnalyticsService(operationRepo, categoryRepo,
+                ParallelAnalyticsExecutor.sequential(), ServiceMetrics.disabled(), converter);
+        save(OperationType.INCOME, "1000.00", from, salary);
+        operationRepo.save(new Operation(OperationType.INCOME, accountId, new BigDecimal("10.00"), usd, from, null, salary.getId()));
+        operationRepo.save(new Operation(OperationType.EXPENSE, accountId, new BigDecimal("1.50"), usd, to, null, food.getId()));
+
+        AnalyticsSummary summary = converting.summarize(from, to);
+
+        assertEquals(Currency.getInstance("RUB"), summary.getCurrency());
+        assertEquals(0, new BigDecimal("1900.00").compareTo(summary.getIncome()));
+        assertEquals(0, new BigDecimal("150.00").compareTo(summary.getExpenseByCategory().get(food.getId())));
+        assertEquals(0, new BigDecimal("1750.00").compareTo(converting.calculateNetIncome(from, to)));
+    }
+
+    @Test
+    void timeSeries_withForeignCurrency_shouldConvertAtOperationDateLikeSummarize() {
+        Currency usd = Currency.getInstance("USD");
+        LocalDate start = LocalDate.of(2023, 1, 15);
+        LocalDate end = LocalDate.of(2023, 3, 10);
+        LocalDate rateChange = LocalDate.of(2023, 2, 15);
+        // курсов до начала периода нет: ряд не должен их запрашивать для обрезанного первого месяца
+        CurrencyConverter converter = new CurrencyConverter((f, t, date) -> date.isBefore(start)
+                ? Optional.empty()
+                : Optional.of(date.isBefore(rateChange) ? new BigDecimal("90") : new BigDecimal("100")), "RUB", 1);
+        AnalyticsService converting = new AnalyticsService(operationRepo, categoryRepo,
+                ParallelAnalyticsExecutor.sequential(), ServiceMetrics.disabled(), converter);
+        save(OperationType.INCOME, "1000.00", LocalDate.of(2023, 2, 1), salary);
+        operationRepo.save(new Operation(OperationType.INCOME, accountId, new BigDecimal("10.00"), usd,
+                LocalDate.of(2023, 1, 20), null, salary.getId()));
+        operationRepo.save(new Operation(OperationType.INCOME, accountId, new BigDecimal("1.00"), usd,
+                LocalDate.of(2023, 2, 10), null, salary.getId()));
+        operationRepo.save(new Operation(OperationType.EXPENSE, accountId, new BigDecimal("2.00"), usd,
+                LocalDate.of(2023, 2, 20), null, food.getId()));
+
+        List<TimeSeriesPoint> points = converting.timeSeries(start, end, TimeGranularity.MONTH, true);
+
+        assertEquals(3, points.size());
+        for (TimeSeriesPoint point : points) {
+            AnalyticsSummary summary = converting.summarize(point.getFrom(), point.getTo());
+            assertEquals(0, summary.getIncome().compareTo(point.getIncome()));
+            assertEquals(0, summary.getExpense().compareTo(point.getSummary().getExpense()));
+        }
+        assertEquals(0, new BigDecimal("900.00").compareTo(points.get(0).getIncome()));
+        assertEquals(0, new BigDecimal("1090.00").compareTo(points.get(1).getIncome()));
+        assertEquals(0, new BigDecimal("200.00").compareTo(points.get(1).getSummary().getExpenseByCategory().get(food.getId())));
+    }
+
+    @Test
+    void timeSeries_monthly_shouldCoverEveryMonthAndClipEdges() {
+        LocalDate start = LocalDate.of(2023, 1, 15);
+        LocalDate end = LocalDate.of(2023, 4, 10);
+        save(OperationType.INCOME, "100.00", LocalDate.of(2023, 1, 14), salary);
+        save(OperationType.INCOME, "1000.00", LocalDate.of(2023, 1, 20), salary);
+        save(OperationType.EXPENSE, "300.00", LocalDate.of(2023, 3, 31), food);
+        save(OperationType.EXPENSE, "50.00", LocalDate.of(2023, 4, 10), food);
+        save(OperationType.EXPENSE, "70.00", LocalDate.of(2023, 4, 11), food);
+
+        List<TimeSeriesPoint> points = service.timeSeries(start, end, TimeGranularity.MONTH, true);
+
+        assertEquals(4, points.size());
+        assertEquals(start, points.get(0).getFrom());
+        assertEquals(LocalDate.of(2023, 1, 31), points.get(0).getTo());
+        assertEquals(0, new BigDecimal("1000.00").compareTo(points.get(0).getIncome()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(points.get(1).getNetIncome()));
+        assertEquals(0, new BigDecimal("300.00").compareTo(points.get(2).getSummary().getExpenseByCategory().get(food.getId())));
+        assertEquals(end, points.get(3).getTo());
+        assertEquals(0, new BigDecimal("-50.00").compareTo(points.get(3).getNetIncome()));
+    }
+
+    @Test
+    void timeSeries_withoutCategories_shouldMatchSummarize() {
+        for (int i = 0; i < 60; i++) {
+            save(i % 2 == 0 ? OperationType.INCOME : OperationType.EXPENSE, "12.34", from.plusDays(i % 31),
+                    i % 2 == 0 ? salary : food);
+        }
+
+        List<TimeSeriesPoint> points = service.timeSeries(from, to, TimeGranularity.WEEK, false);
+
+        BigDecimal total = points.stream().map(TimeSeriesPoint::getNetIncome).reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(0, service.summarize(from, to).getNetIncome().compareTo(total));
+        assertTrue(points.stream().allMatch((p) -> p.getSummary().getIncomeByCategory().isEmpty()));
+        assertEquals(from, points.get(0).getFrom());
+        assertEquals(to, points.get(points.size() - 1).getTo());
+    }
+}
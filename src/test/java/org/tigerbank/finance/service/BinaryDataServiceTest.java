@@ -0,0 +1,235 @@
+package org.tigerbank.finance.service;
+
+import org.junit.jupiter.api.Test;
+import org.tigerbank.finance.model.*;
+import org.tigerbank.finance.repository.InMemoryBankAccountRepository;
+import org.tigerbank.finance.repository.InMemoryCategoryRepository;
+import org.tigerbank.finance.repository.InMemoryOperationRepository;
+import org.tigerbank.finance.repository.MappedOperationRepository;
+import org.tigerbank.finance.storage.BinaryChannelWriter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Currency;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryDataServiceTest {
+
+    private final InMemoryBankAccountRepository accountRepo = new InMemoryBankAccountRepository();
+    private final InMemoryCategoryRepository categoryRepo = new InMemoryCategoryRepository();
+    private final InMemoryOperationRepository operationRepo = new InMemoryOperationRepository();
+    private final BinaryDataService service = new BinaryDataService(accountRepo, categoryRepo, operationRepo);
+
+    @Test
+    void exportThenImport_shouldRestoreAllFields() throws Exception {
+        BankAccount account = accountRepo.save(new BankAccount("Основной счёт"));
+        account.deposit(new BigDecimal("1234.56"));
+        Category cafe = categoryRepo.save(new Category("Кафе", CategoryType.EXPENSE));
+        Operation withCategory = operationRepo.save(new Operation(OperationType.EXPENSE, account.getId(),
+                new BigDecimal("450.50"), LocalDate.of(2020, 2, 29), "Обед", cafe.getId()));
+        Operation withoutCategory = operationRepo.save(new Operation(OperationType.INCOME, account.getId(),
+                new BigDecimal("0.01"), LocalDate.now(), null, null));
+        Path file = Files.createTempFile("finance", ".bin");
+
+        service.exportToFile(file.toString());
+        operationRepo.deleteById(withCategory.getId());
+        service.importFromFile(file.toString());
+
+        BankAccount restoredAccount = accountRepo.findById(account.getId()).orElseThrow();
+        assertEquals("Основной счёт", restoredAccount.getName());
+        assertEquals(new BigDecimal("1234.56"), restoredAccount.getBalance());
+        assertEquals(CategoryType.EXPENSE, categoryRepo.findById(cafe.getId()).orElseThrow().getType());
+
+        Operation restored = operationRepo.findById(withCategory.getId()).orElseThrow();
+        assertEquals(OperationType.EXPENSE, restored.getType());
+        assertEquals(account.getId(), restored.getBankAccountId());
+        assertEquals(new BigDecimal("450.50"), restored.getAmount());
+        assertEquals(LocalDate.of(2020, 2, 29), restored.getDate());
+        assertEquals("Обед", restored.getDescription());
+        assertEquals(cafe.getId(), restored.getCategoryId());
+        assertNull(operationRepo.findById(withoutCategory.getId()).orElseThrow().getCategoryId());
+        Files.delete(file);
+    }
+
+    @Test
+    void exportThenImport_shouldKeepCategoryMissingFromRepository() throws Exception {
+        BankAccount account = accountRepo.save(new BankAccount("Основной"));
+        UUID orphanCategory = UUID.randomUUID();
+        Operation op = operationRepo.save(new Operation(OperationType.INCOME, account.getId(),
+                BigDecimal.TEN, LocalDate.now(), null, orphanCategory));
+        Path file = Files.createTempFile("finance", ".bin");
+
+        service.exportToFile(file.toString());
+        service.importFromFile(file.toString());
+
+        assertEquals(orphanCategory, operationRepo.findById(op.getId()).orElseThrow().getCategoryId());
+        Files.delete(file);
+    }
+
+    @Test
+    void import_ofCorruptedFile_shouldFailAndKeepCurrentData() throws Exception {
+        BankAccount account = accountRepo.save(new BankAccount("Основной"));
+        Path file = Files.createTempFile("finance", ".bin");
+        service.exportToFile(file.toString());
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[10] ^= 0x7F;
+        Files.write(file, bytes);
+        accountRepo.save(new BankAccount("Новый"));
+
+        assertThrows(IOException.class, () -> service.importFromFile(file.toString()));
+        assertEquals(2, accountRepo.findAll().size());
+        assertTrue(accountRepo.findById(account.getId()).isPresent());
+        Files.delete(file);
+    }
+
+    @Test
+    void import_ofCorruptedFile_shouldDeleteStagedArchiveGeneration() throws Exception {
+        Path dir = Files.createTempDirectory("ops");
+        try (MappedOperationRepository archive = new MappedOperationRepository(dir)) {
+            BinaryDataService archiveService = new BinaryDataService(accountRepo, categoryRepo, archive);
+            BankAccount account = accountRepo.save(new BankAccount("Основной"));
+            archive.save(new Operation(OperationType.INCOME, account.getId(), BigDecimal.TEN, LocalDate.now(), null, null));
+            Path file = Files.createTempFile("finance", ".bin");
+            archiveService.exportToFile(file.toString());
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[bytes.length - 1] ^= 0x7F;
+            Files.write(file, bytes);
+
+            assertThrows(IOException.class, () -> archiveService.importFromFile(file.toString()));
+            try (Stream<Path> entries = Files.list(dir)) {
+                assertEquals(List.of("CURRENT", "gen-1"),
+                        entries.map((path) -> path.getFileName().toString()).sorted().toList());
+            }
+            assertEquals(1, archive.findAll().size());
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void import_withUnknownTypeByte_shouldThrowIOException() throws Exception {
+        Path file = Files.createTempFile("finance", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            BinaryChannelWriter out = new BinaryChannelWriter(channel, 1024);
+            out.writeInt(BinaryDataService.MAGIC);
+            out.writeShort(BinaryDataService.VERSION);
+            out.writeByte(2);
+            out.writeUuid(UUID.randomUUID());
+            out.writeByte(9);
+            out.writeString("Кафе");
+            out.writeByte(0);
+            int checksum = out.finish();
+            out.writeRaw(ByteBuffer.allocate(Long.BYTES + Integer.BYTES).putLong(1).putInt(checksum).flip());
+        }
+
+        assertThrows(IOException.class, () -> service.importFromFile(file.toString()));
+        Files.delete(file);
+    }
+
+    @Test
+    void import_withBytesAfterTrailer_shouldThrowIOException() throws Exception {
+        accountRepo.save(new BankAccount("Основной"));
+        Path file = Files.createTempFile("finance", ".bin");
+        service.exportToFile(file.toString());
+        Files.write(file, new byte[]{0}, StandardOpenOption.APPEND);
+
+        assertThrows(IOException.class, () -> service.importFromFile(file.toString()));
+        Files.delete(file);
+    }
+
+    @Test
+    void exportThenImport_shouldKeepCurrency() throws Exception {
+        Currency usd = Currency.getInstance("USD");
+        BankAccount account = accountRepo.save(new BankAccount("Долларовый", usd));
+        Operation op = operationRepo.save(new Operation(OperationType.INCOME, account.getId(),
+                BigDecimal.TEN, usd, LocalDate.now(), null, null));
+        Path file = Files.createTempFile("finance", ".bin");
+
+        service.exportToFile(file.toString());
+        service.importFromFile(file.toString());
+
+        assertEquals(usd, accountRepo.findById(account.getId()).orElseThrow().getCurrency());
+        assertEquals(usd, operationRepo.findById(op.getId()).orElseThrow().getCurrency());
+        Files.delete(file);
+    }
+
+    @Test
+    void import_ofVersionWithoutCurrency_shouldUseDefaultCurrency() throws Exception {
+        UUID accountId = UUID.randomUUID();
+        Path file = Files.createTempFile("finance", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            BinaryChannelWriter out = new BinaryChannelWriter(channel, 1024);
+            out.writeInt(BinaryDataService.MAGIC);
+            out.writeShort(1);
+            out.writeByte(1);
+            out.writeUuid(accountId);
+            out.writeString("Старый счёт");
+            out.writeLong(12345);
+            out.writeByte(0);
+            int checksum = out.finish();
+            out.writeRaw(ByteBuffer.allocate(Long.BYTES + Integer.BYTES).putLong(1).putInt(checksum).flip());
+        }
+
+        service.importFromFile(file.toString());
+
+        BankAccount restored = accountRepo.findById(accountId).orElseThrow();
+        assertEquals(Money.DEFAULT_CURRENCY, restored.getCurrency());
+        assertEquals(new BigDecimal("123.45"), restored.getBalance());
+        Files.delete(file);
+    }
+
+    @Test
+    void import_shouldWaitForWritersHoldingAccountLocks() throws Exception {
+        AccountLockManager locks = new AccountLockManager(64);
+        BinaryDataService lockedService = new BinaryDataService(accountRepo, categoryRepo, operationRepo,
+                locks, ServiceMetrics.disabled());
+        BankAccount account = accountRepo.save(new BankAccount("Основной"));
+        Path file = Files.createTempFile("finance", ".bin");
+        lockedService.exportToFile(file.toString());
+        accountRepo.deleteById(account.getId());
+
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            pool.submit(() -> locks.withLock(UUID.randomUUID(), () -> {
+                held.countDown();
+                try {
+                    return release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+            assertTrue(held.await(5, TimeUnit.SECONDS));
+            Future<?> imported = pool.submit(() -> {
+                lockedService.importFromFile(file.toString());
+                return null;
+            });
+
+            Thread.sleep(100);
+            assertFalse(imported.isDone());
+            assertTrue(accountRepo.findById(account.getId()).isEmpty());
+
+            release.countDown();
+            imported.get(5, TimeUnit.SECONDS);
+            assertTrue(accountRepo.findById(account.getId()).isPresent());
+        } finally {
+            pool.shutdownNow();
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.tigerbank.finance.service;
+
+import org.junit.jupiter.api.Test;
+import org.tigerbank.finance.repository.IExchangeRateProvider;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Currency;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CurrencyConverterTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final Currency RUB = Currency.getInstance("RUB");
+
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final IExchangeRateProvider rates = (from, to, date) -> {
+        lookups.incrementAndGet();
+        return from.equals(USD) ? Optional.of(new BigDecimal("90.123456")) : Optional.empty();
+    };
+
+    @Test
+    void toReporting_shouldRoundHalfUpAndKeepReportingCurrencyAsIs() {
+        CurrencyConverter converter = new CurrencyConverter(rates, "RUB", 1);
+        LocalDate day = LocalDate.of(2024, 3, 1);
+
+        // 1.50 USD * 90.123456 = 135.185184 RUB
+        assertEquals(13519, converter.toReporting(150, USD, day));
+        assertEquals(-13519, converter.toReporting(-150, USD, day));
+        assertEquals(150, converter.toReporting(150, RUB, day));
+    }
+
+    @Test
+    void rate_shouldBeLookedUpOncePerBucket() {
+        CurrencyConverter converter = new CurrencyConverter(rates, "RUB", 7);
+        LocalDate start = LocalDate.ofEpochDay(7 * 2800);
+
+        for (int i = 0; i < 7; i++) {
+            converter.toReporting(100, USD, start.plusDays(i));
+        }
+        converter.toReporting(100, USD, start.plusDays(7));
+
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    void rate_whenCacheIsFull_shouldEvictLeastRecentlyUsed() {
+        CurrencyConverter converter = new CurrencyConverter(rates, "RUB", 1, 3);
+        LocalDate day = LocalDate.of(2024, 3, 1);
+        for (int i = 0; i < 3; i++) {
+            converter.toReporting(100, USD, day.plusDays(i));
+        }
+
+        converter.toReporting(100, USD, day);
+        converter.toReporting(100, USD, day.plusDays(3));
+        assertEquals(4, lookups.get());
+
+        // вытеснен второй день - самый давно запрошенный, первый день остался в кеше
+        converter.toReporting(100, USD, day);
+        assertEquals(4, lookups.get());
+        converter.toReporting(100, USD, day.plusDays(1));
+        assertEquals(5, lookups.get());
+    }
+
+    @Test
+    void toReporting_withLargeAmount_shouldFallBackToExactArithmetic() {
+        CurrencyConverter converter = new CurrencyConverter(rates, "RUB", 1);
+
+        long amount = 1_000_000_000_000L;
+        long expected = new BigDecimal(amount).multiply(new BigDecimal("90.123456")).longValueExact();
+        assertEquals(expected, converter.toReporting(amount, USD, LocalDate.of(2024, 3, 1)));
+    }
+
+    @Test
+    void toReporting_withoutRate_shouldThrowException() {
+        CurrencyConverter converter = new CurrencyConverter(rates, "RUB", 1);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> converter.toReporting(100, Currency.getInstance("EUR"), LocalDate.of(2024, 3, 1)));
+    }
+}
@@ -0,0 +1,87 @@
+package org.tigerbank.finance.service;
+
+import org.junit.jupiter.api.Test;
+import org.tigerbank.finance.model.*;
+import org.tigerbank.finance.repository.InMemoryBankAccountRepository;
+import org.tigerbank.finance.repository.InMemoryCategoryRepository;
+import org.tigerbank.finance.repository.InMemoryOperationRepository;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonDataServiceTest {
+
+    private final InMemoryBankAccountRepository accountRepo = new InMemoryBankAccountRepository();
+    private final InMemoryCategoryRepository categoryRepo = new InMemoryCategoryRepository();
+    private final InMemoryOperationRepository operationRepo = new InMemoryOperationRepository();
+    private final JsonDataService service = new JsonDataService(accountRepo, categoryRepo, operationRepo);
+
+    @Test
+    void exportThenImport_shouldRestoreAllEntities() throws Exception {
+        BankAccount account = accountRepo.save(new BankAccount("Основной"));
+        Category cafe = categoryRepo.save(new Category("Кафе", CategoryType.EXPENSE));
+        Operation op = operationRepo.save(new Operation(OperationType.EXPENSE, account.getId(),
+                new BigDecimal("450.50"), LocalDate.now().minusDays(1), "Обед", cafe.getId()));
+        Path file = Files.createTempFile("finance", ".json");
+
+        service.exportToFile(file.toString());
+        accountRepo.deleteById(account.getId());
+        operationRepo.deleteById(op.getId());
+        service.importFromFile(file.toString());
+
+        assertEquals("Основной", accountRepo.findById(account.getId()).orElseThrow().getName());
+        assertEquals("Кафе", categoryRepo.findById(cafe.getId()).orElseThrow().getName());
+        Operation restored = operationRepo.findById(op.getId()).orElseThrow();
+        assertEquals(new BigDecimal("450.50"), restored.getAmount());
+        assertEquals(op.getDate(), restored.getDate());
+        assertEquals(cafe.getId(), restored.getCategoryId());
+        Files.delete(file);
+    }
+
+    @Test
+    void import_shouldReadPrettyPrintedExport() throws Exception {
+        BankAccount account = accountRepo.save(new BankAccount("Основной"));
+        for (int i = 0; i < 25_000; i++) {
+            operationRepo.save(new Operation(OperationType.INCOME, account.getId(),
+                    BigDecimal.ONE, LocalDate.now(), null, null));
+        }
+        Path file = Files.createTempFile("finance", ".json");
+
+        service.exportToFile(file.toString(), true);
+        service.importFromFile(file.toString());
+
+        assertEquals(25_000, operationRepo.findByAccountId(account.getId()).size());
+        Files.delete(file);
+    }
+
+    @Test
+    void import_ofBrokenFile_shouldKeepCurrentData() throws Exception {
+        BankAccount account = accountRepo.save(new BankAccount("Основной"));
+        Path file = Files.createTempFile("finance", ".json");
+        Files.writeString(file, "{\"accounts\": [{\"id\": \"" + account.getId() + "\", \"name\": \"Новый\", \"balance\": 0}");
+
+        assertThrows(java.io.IOException.class, () -> service.importFromFile(file.toString()));
+
+        assertEquals(1, accountRepo.findAll().size());
+        assertEquals("Основной", accountRepo.findById(account.getId()).orElseThrow().getName());
+        Files.delete(file);
+    }
+
+    @Test
+    void import_shouldReplaceDataNotMerge() throws Exception {
+        BankAccount exported = accountRepo.save(new BankAccount("Экспортированный"));
+        Path file = Files.createTempFile("finance", ".json");
+        service.exportToFile(file.toString());
+        BankAccount later = accountRepo.save(new BankAccount("Созданный позже"));
+
+        service.importFromFile(file.toString());
+
+        assertTrue(accountRepo.findById(exported.getId()).isPresent());
+        assertTrue(accountRepo.findById(later.getId()).isEmpty());
+        Files.delete(file);
+    }
+}
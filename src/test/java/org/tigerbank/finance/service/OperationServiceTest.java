@@ -0,0 +1,401 @@
+package org.tigerbank.finance.service;
+
+import org.junit.jupiter.api.Test;
+import org.tigerbank.finance.dto.OperationBatchResult;
+import org.tigerbank.finance.dto.TransferResult;
+import org.tigerbank.finance.model.BankAccount;
+import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.model.OperationType;
+import org.tigerbank.finance.repository.InMemoryBankAccountRepository;
+import org.tigerbank.finance.repository.InMemoryCategoryRepository;
+import org.tigerbank.finance.repository.InMemoryOperationRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OperationServiceTest {
+
+    private final InMemoryBankAccountRepository accountRepo = new InMemoryBankAccountRepository();
+    private final InMemoryOperationRepository operationRepo = new InMemoryOperationRepository();
+    private final InMemoryCategoryRepository categoryRepo = new InMemoryCategoryRepository();
+    private final AccountLockManager locks = new AccountLockManager(64);
+    private final BalanceRecalculator recalculator = new BalanceRecalculator(accountRepo, operationRepo, locks);
+    private final OperationService service = new OperationService(accountRepo, operationRepo, categoryRepo, recalculator, locks);
+
+    private final BankAccount account = accountRepo.save(new BankAccount("Основной"));
+
+    private Operation operation(OperationType type, String amount) {
+        return new Operation(type, account.getId(), new BigDecimal(amount), LocalDate.now(), "Test", null);
+    }
+
+    // ===== ТЕСТЫ ИНКРЕМЕНТАЛЬНОГО БАЛАНСА =====
+
+    @Test
+    void addOperation_shouldApplySignedAmountToBalance() {
+        service.addOperation(operation(OperationType.INCOME, "1000.00"));
+        service.addOperation(operation(OperationType.EXPENSE, "250.50"));
+
+        assertEquals(new BigDecimal("749.50"), service.getAccountBalance(account.getId()));
+    }
+
+    @Test
+    void deleteOperation_shouldRevertItsAmount() {
+        service.addOperation(operation(OperationType.INCOME, "1000.00"));
+        Operation expense = service.addOperation(operation(OperationType.EXPENSE, "300.00"));
+
+        service.deleteOperation(expense.getId());
+
+        assertEquals(new BigDecimal("1000.00"), service.getAccountBalance(account.getId()));
+    }
+
+    @Test
+    void addOperation_withInsufficientFunds_shouldNotSaveOperation() {
+        Operation expense = operation(OperationType.EXPENSE, "10.00");
+
+        assertThrows(IllegalArgumentException.class, () -> service.addOperation(expense));
+        assertTrue(operationRepo.findById(expense.getId()).isEmpty());
+        assertEquals(new BigDecimal("0.00"), service.getAccountBalance(account.getId()));
+    }
+
+    @Test
+    void addOperation_sameOperationTwice_shouldThrowException() {
+        Operation income = service.addOperation(operation(OperationType.INCOME, "100.00"));
+
+        assertThrows(IllegalArgumentException.class, () -> service.addOperation(income));
+        assertEquals(new BigDecimal("100.00"), service.getAccountBalance(account.getId()));
+    }
+
+    @Test
+    void verifyAll_shouldRepairDivergedBalance() {
+        service.addOperation(operation(OperationType.INCOME, "500.00"));
+        account.setBalanceUnsafe(new BigDecimal("1.00"));
+
+        assertEquals(1, recalculator.verifyAll().size());
+        assertEquals(new BigDecimal("500.00"), service.getAccountBalance(account.getId()));
+        assertTrue(recalculator.verifyAll().isEmpty());
+    }
+
+    @Test
+    void verifyAll_withStaleListing_shouldRepairOnlyCurrentAccounts() {
+        // findAll отдаёт экземпляры, снятые до подмены репозитория импортом
+        BankAccount deleted = BankAccount.restore(UUID.randomUUID(), "Удалённый", new BigDecimal("5.00"));
+        InMemoryBankAccountRepository swapped = new InMemoryBankAccountRepository() {
+            @Override
+            public List<BankAccount> findAll() {
+                return List.of(BankAccount.restore(account.getId(), "Старое имя", new BigDecimal("7.00")), deleted);
+            }
+        };
+        BankAccount current = swapped.save(BankAccount.restore(account.getId(), "Новое имя", new BigDecimal("3.00")));
+        operationRepo.save(operation(OperationType.INCOME, "10.00"));
+        BalanceRecalculator stale = new BalanceRecalculator(swapped, operationRepo, locks);
+
+        assertEquals(List.of(account.getId()), stale.verifyAll());
+
+        BankAccount stored = swapped.findById(account.getId()).orElseThrow();
+        assertSame(current, stored);
+        assertEquals("Новое имя", stored.getName());
+        assertEquals(new BigDecimal("10.00"), stored.getBalance());
+        assertTrue(swapped.findById(deleted.getId()).isEmpty());
+    }
+
+    // ===== ТЕСТЫ ПАКЕТНОГО ДОБАВЛЕНИЯ =====
+
+    @Test
+    void addOperations_shouldSaveValidRowsAndReportInvalidOnes() {
+        Operation income = operation(OperationType.INCOME, "1000.00");
+        Operation unknownAccount = new Operation(OperationType.INCOME, UUID.randomUUID(),
+                new BigDecimal("5.00"), LocalDate.now(), "Test", null);
+        Operation expense = operation(OperationType.EXPENSE, "400.00");
+        Operation overdraft = operation(OperationType.EXPENSE, "700.00");
+
+        OperationBatchResult result = service.addOperations(
+                Arrays.asList(income, unknownAccount, expense, overdraft, null));
+
+        assertEquals(List.of(income, expense), result.getSaved());
+        assertEquals(3, result.getFailures().size());
+        assertEquals(1, result.getFailures().get(0).getRow());
+        assertEquals(3, result.getFailures().get(1).getRow());
+        assertEquals(4, result.getFailures().get(2).getRow());
+        assertEquals(new BigDecimal("600.00"), service.getAccountBalance(account.getId()));
+        assertEquals(2, operationRepo.findByAccountId(account.getId()).size());
+    }
+
+    @Test
+    void addOperations_withDuplicateInBatch_shouldRejectSecondRow() {
+        Operation income = operation(OperationType.INCOME, "100.00");
+
+        OperationBatchResult result = service.addOperations(List.of(income, income));
+
+        assertEquals(1, result.getSaved().size());
+        assertEquals(1, result.getFailures().get(0).getRow());
+        assertEquals(new BigDecimal("100.00"), service.getAccountBalance(account.getId()));
+    }
+
+    @Test
+    void addOperations_whenRepositoryFails_shouldRevertBalances() {
+        InMemoryOperationRepository failingRepo = new InMemoryOperationRepository() {
+            @Override
+            public void saveAll(Collection<Operation> operations) {
+                throw new UncheckedIOException(new IOException("Журнал недоступен"));
+            }
+        };
+        OperationService failingService = new OperationService(accountRepo, failingRepo, categoryRepo,
+                new BalanceRecalculator(accountRepo, failingRepo, locks), locks);
+
+        assertThrows(UncheckedIOException.class,
+                () -> failingService.addOperations(List.of(operation(OperationType.INCOME, "100.00"))));
+        assertEquals(new BigDecimal("0.00"), service.getAccountBalance(account.getId()));
+    }
+
+    // ===== ТЕСТЫ КОНКУРЕНТНОГО ДОСТУПА =====
+
+    @Test
+    void concurrentOperationsOnOneAccount_shouldNotLoseUpdates() throws Exception {
+        service.addOperation(operation(OperationType.INCOME, "100000.00"));
+        BankAccount other = accountRepo.save(new BankAccount("Второй"));
+        int threads = 16;
+        int perThread = 500;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    service.addOperation(operation(OperationType.INCOME, "3.00"));
+                    Operation expense = service.addOperation(operation(OperationType.EXPENSE, "1.00"));
+                    if (i % 10 == 0) {
+                        service.deleteOperation(expense.getId());
+                    }
+                    service.addOperation(new Operation(OperationType.INCOME, other.getId(), new BigDecimal("1.00"),
+                            LocalDate.now(), "Test", null));
+                    if (thread == 0 && i % 50 == 0) {
+                        recalculator.verifyAll();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        // каждый поток: 500 * 3.00 дохода, 450 * 1.00 расхода (каждый десятый удалён)
+        BigDecimal expected = new BigDecimal("100000.00").add(new BigDecimal((3 * perThread - 450) * threads));
+        assertEquals(0, expected.compareTo(service.getAccountBalance(account.getId())));
+        assertEquals(0, new BigDecimal(perThread * threads).compareTo(service.getAccountBalance(other.getId())));
+        assertTrue(recalculator.verifyAll().isEmpty());
+    }
+
+    @Test
+    void concurrentDeleteOfSameOperation_shouldRevertOnlyOnce() throws Exception {
+        service.addOperation(operation(OperationType.INCOME, "100.00"));
+        Operation expense = service.addOperation(operation(OperationType.EXPENSE, "40.00"));
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(() -> {
+                try {
+                    service.deleteOperation(expense.getId());
+                } catch (IllegalArgumentException e) {
+                    // проигравшие потоки видят, что операция уже удалена
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        assertEquals(0, new BigDecimal("100.00").compareTo(service.getAccountBalance(account.getId())));
+    }
+
+    // ===== ТЕСТЫ ПЕРЕВОДОВ =====
+
+    @Test
+    void transfer_shouldDebitAndCreditAtomically() {
+        BankAccount savings = accountRepo.save(new BankAccount("Накопительный"));
+        service.addOperation(operation(OperationType.INCOME, "500.00"));
+
+        TransferResult result = service.transfer(account.getId(), savings.getId(), new BigDecimal("200.00"), LocalDate.now(), null);
+
+        assertEquals(new BigDecimal("300.00"), service.getAccountBalance(account.getId()));
+        assertEquals(new BigDecimal("200.00"), service.getAccountBalance(savings.getId()));
+        assertEquals(OperationType.EXPENSE, result.getDebit().getType());
+        assertEquals(savings.getId(), result.getCredit().getBankAccountId());
+        assertEquals(1, service.getAccountOperations(savings.getId()).size());
+    }
+
+    @Test
+    void transfer_withInsufficientFunds_shouldChangeNothing() {
+        BankAccount savings = accountRepo.save(new BankAccount("Накопительный"));
+        service.addOperation(operation(OperationType.INCOME, "50.00"));
+
+        assertThrows(IllegalArgumentException.class, () ->
+                service.transfer(account.getId(), savings.getId(), new BigDecimal("200.00"), LocalDate.now(), null)
+        );
+        assertEquals(new BigDecimal("50.00"), service.getAccountBalance(account.getId()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(service.getAccountBalance(savings.getId())));
+        assertTrue(service.getAccountOperations(savings.getId()).isEmpty());
+    }
+
+    @Test
+    void operationsInOtherCurrency_shouldBeRejected() {
+        BankAccount dollars = accountRepo.save(new BankAccount("Долларовый", Currency.getInstance("USD")));
+        service.addOperation(operation(OperationType.INCOME, "100.00"));
+
+        assertThrows(IllegalArgumentException.class, () -> service.addOperation(new Operation(OperationType.INCOME,
+                dollars.getId(), BigDecimal.TEN, LocalDate.now(), null, null)));
+        assertThrows(IllegalArgumentException.class, () ->
+                service.transfer(account.getId(), dollars.getId(), BigDecimal.ONE, LocalDate.now(), null));
+        assertEquals(new BigDecimal("100.00"), service.getAccountBalance(account.getId()));
+        assertTrue(service.getAccountOperations(dollars.getId()).isEmpty());
+    }
+
+    @Test
+    void transfer_shouldBeExcludedFromAnalytics() {
+        BankAccount savings = accountRepo.save(new BankAccount("Накопительный"));
+        service.addOperation(operation(OperationType.INCOME, "500.00"));
+        AnalyticsService analytics = new AnalyticsService(operationRepo, categoryRepo);
+
+        TransferResult result = service.transfer(account.getId(), savings.getId(), new BigDecimal("200.00"), LocalDate.now(), null);
+
+        assertTrue(result.getDebit().isTransfer());
+        assertTrue(result.getCredit().isTransfer());
+        assertEquals(0, new BigDecimal("500.00").compareTo(analytics.calculateNetIncome(LocalDate.now(), LocalDate.now())));
+        assertEquals(1, analytics.summarize(LocalDate.now(), LocalDate.now()).getIncomeCount());
+        assertEquals(0, analytics.summarize(LocalDate.now(), LocalDate.now()).getExpenseCount());
+        assertTrue(analytics.groupByCategory(LocalDate.now(), LocalDate.now(), OperationType.EXPENSE).isEmpty());
+        // служебную категорию нельзя назначить обычной операции
+        assertThrows(IllegalArgumentException.class, () -> service.addOperation(new Operation(OperationType.INCOME,
+                account.getId(), BigDecimal.TEN, LocalDate.now(), null, Operation.TRANSFER_CATEGORY_ID)));
+    }
+
+    @Test
+    void deleteOperation_onTransferLeg_shouldBeRejected() {
+        BankAccount savings = accountRepo.save(new BankAccount("Накопительный"));
+        service.addOperation(operation(OperationType.INCOME, "500.00"));
+        TransferResult result = service.transfer(account.getId(), savings.getId(), new BigDecimal("200.00"), LocalDate.now(), null);
+
+        assertThrows(IllegalArgumentException.class, () -> service.deleteOperation(result.getDebit().getId()));
+        assertThrows(IllegalArgumentException.class, () -> service.deleteOperation(result.getCredit().getId()));
+
+        assertEquals(new BigDecimal("300.00"), service.getAccountBalance(account.getId()));
+        assertEquals(new BigDecimal("200.00"), service.getAccountBalance(savings.getId()));
+        assertTrue(operationRepo.findById(result.getDebit().getId()).isPresent());
+        assertTrue(operationRepo.findById(result.getCredit().getId()).isPresent());
+    }
+
+    @Test
+    void getAccountBalances_duringTransfers_shouldSeeWholeTransfers() throws Exception {
+        BankAccount savings = accountRepo.save(new BankAccount("Накопительный"));
+        service.addOperation(operation(OperationType.INCOME, "1000.00"));
+        List<UUID> ids = List.of(account.getId(), savings.getId());
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<?> transfers = pool.submit(() -> {
+            for (int i = 0; i < 2000; i++) {
+                UUID from = ids.get(i % 2);
+                UUID to = ids.get((i + 1) % 2);
+                service.transfer(from, to, new BigDecimal("1.00"), LocalDate.now(), null);
+            }
+            return null;
+        });
+        try {
+            while (!transfers.isDone()) {
+                BigDecimal total = service.getAccountBalances(ids).values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+                assertEquals(0, new BigDecimal("1000.00").compareTo(total));
+            }
+            transfers.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(ids, List.copyOf(service.getAccountBalances(ids).keySet()));
+        assertThrows(IllegalArgumentException.class, () -> service.getAccountBalances(List.of(UUID.randomUUID())));
+    }
+
+    @Test
+    void transfer_toSameAccount_shouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () ->
+                service.transfer(account.getId(), account.getId(), BigDecimal.ONE, LocalDate.now(), null)
+        );
+    }
+
+    @Test
+    void concurrentOpposingTransfers_shouldNotDeadlockAndKeepTotal() throws Exception {
+        List<BankAccount> accounts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            BankAccount a = accountRepo.save(new BankAccount("Счёт " + i));
+            service.addOperation(new Operation(OperationType.INCOME, a.getId(), new BigDecimal("1000.00"), LocalDate.now(), null, null));
+            accounts.add(a);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int seed = t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    BankAccount from = accounts.get((seed + i) % accounts.size());
+                    BankAccount to = accounts.get((seed + i * 3 + 1) % accounts.size());
+                    if (from == to) {
+                        continue;
+                    }
+                    try {
+                        service.transfer(from.getId(), to.getId(), new BigDecimal("7.00"), LocalDate.now(), null);
+                    } catch (IllegalArgumentException e) {
+                        // недостаточно средств - допустимо
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        BigDecimal total = accounts.stream()
+                .map((a) -> service.getAccountBalance(a.getId()))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(0, new BigDecimal("8000.00").compareTo(total));
+        assertTrue(recalculator.verifyAll().isEmpty());
+    }
+
+    // ===== ТЕСТЫ ИСТОРИИ БАЛАНСА =====
+
+    @Test
+    void getBalanceHistory_shouldIncludeBackdatedOperations() {
+        LocalDate day = LocalDate.of(2024, 3, 10);
+        service.addOperation(new Operation(OperationType.INCOME, account.getId(), new BigDecimal("100.00"), day, null, null));
+        service.addOperation(new Operation(OperationType.EXPENSE, account.getId(), new BigDecimal("30.00"), day.plusDays(2), null, null));
+        service.addOperation(new Operation(OperationType.INCOME, account.getId(), new BigDecimal("5.00"), day.minusDays(1), null, null));
+
+        NavigableMap<LocalDate, BigDecimal> history = service.getBalanceHistory(account.getId(), day.minusDays(2), day.plusDays(2));
+
+        assertEquals(List.of(new BigDecimal("0.00"), new BigDecimal("5.00"), new BigDecimal("105.00"),
+                new BigDecimal("105.00"), new BigDecimal("75.00")), new ArrayList<>(history.values()));
+        assertEquals(day.minusDays(2), history.firstKey());
+        assertEquals(new BigDecimal("105.00"), service.getAccountBalance(account.getId(), day.plusDays(1)));
+        assertEquals(service.getAccountBalance(account.getId()), service.getAccountBalance(account.getId(), day.plusDays(2)));
+        assertThrows(IllegalArgumentException.class, () -> service.getAccountBalance(UUID.randomUUID(), day));
+    }
+}
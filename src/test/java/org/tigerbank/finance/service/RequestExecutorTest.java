@@ -0,0 +1,99 @@
+package org.tigerbank.finance.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestExecutorTest {
+
+    @Test
+    void submit_shouldNeverRunMoreThanMaxConcurrency() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        try (RequestExecutor executor = new RequestExecutor(4, 10_000)) {
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                int value = i;
+                futures.add(executor.submit("call", () -> {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(2);
+                    running.decrementAndGet();
+                    return value;
+                }));
+            }
+            int sum = 0;
+            for (CompletableFuture<Integer> f : futures) {
+                sum += f.get();
+            }
+
+            assertEquals(4950, sum);
+            assertTrue(peak.get() <= 4);
+            assertEquals(100, executor.latencies().get("call").count());
+        }
+    }
+
+    @Test
+    void submit_whenSaturated_shouldRejectAfterTimeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (RequestExecutor executor = new RequestExecutor(1, 10)) {
+            CompletableFuture<Object> blocking = executor.submit("slow", () -> {
+                release.await();
+                return null;
+            });
+
+            assertThrows(RejectedExecutionException.class, () -> executor.submit("fast", () -> 1));
+            release.countDown();
+            blocking.get();
+            int result = executor.submit("fast", () -> 1).get();
+            assertEquals(1, result);
+        }
+    }
+
+    @Test
+    void submit_withFailingCall_shouldCompleteExceptionallyAndFreePermit() throws Exception {
+        try (RequestExecutor executor = new RequestExecutor(1, 1_000)) {
+            CompletableFuture<Object> failed = executor.submit("fail", () -> {
+                throw new IllegalArgumentException("Счёт не найден");
+            });
+
+            ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+            int result = executor.submit("ok", () -> 2).get();
+            assertEquals(2, result);
+        }
+    }
+
+    // ===== ТЕСТЫ ГИСТОГРАММЫ =====
+
+    @Test
+    void histogram_bucketBoundsShouldContainValue() {
+        for (long v : new long[]{0, 1, 15, 16, 17, 31, 32, 1_000, 123_456, 9_999_999_999L}) {
+            int index = LatencyHistogram.index(v);
+            assertTrue(LatencyHistogram.lowerBound(index) <= v);
+            assertTrue(LatencyHistogram.lowerBound(index + 1) > v);
+        }
+    }
+
+    @Test
+    void histogram_percentilesShouldBeWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 1_000; micros++) {
+            histogram.recordNanos(micros * 1_000L);
+        }
+
+        assertEquals(1_000, histogram.count());
+        assertEquals(1_000, histogram.maxMicros());
+        long p50 = histogram.percentileMicros(50);
+        assertTrue(p50 >= 500 && p50 <= 500 * 1.07, "p50=" + p50);
+        long p99 = histogram.percentileMicros(99);
+        assertTrue(p99 >= 990 && p99 <= 1_000, "p99=" + p99);
+    }
+}
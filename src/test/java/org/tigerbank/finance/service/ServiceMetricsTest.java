@@ -0,0 +1,81 @@
+package org.tigerbank.finance.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.tigerbank.finance.model.BankAccount;
+import org.tigerbank.finance.model.Operation;
+import org.tigerbank.finance.model.OperationType;
+import org.tigerbank.finance.repository.InMemoryBankAccountRepository;
+import org.tigerbank.finance.repository.InMemoryCategoryRepository;
+import org.tigerbank.finance.repository.InMemoryOperationRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ServiceMetrics metrics = new ServiceMetrics(registry);
+    private final InMemoryBankAccountRepository accountRepo = new InMemoryBankAccountRepository();
+    private final InMemoryOperationRepository operationRepo = new InMemoryOperationRepository();
+    private final AccountLockManager locks = new AccountLockManager(64);
+    private final BalanceRecalculator recalculator = new BalanceRecalculator(accountRepo, operationRepo, locks, metrics);
+    private final OperationService service = new OperationService(accountRepo, operationRepo,
+            new InMemoryCategoryRepository(), recalculator, locks, metrics);
+
+    private final BankAccount account = accountRepo.save(new BankAccount("Основной"));
+
+    private Operation income() {
+        return new Operation(OperationType.INCOME, account.getId(), new BigDecimal("10.00"), LocalDate.now(), null, null);
+    }
+
+    @Test
+    void serviceCalls_shouldBeTimedPerMethodAndCountInsertedOperations() {
+        service.addOperation(income());
+        service.addOperations(List.of(income(), income()));
+        assertThrows(IllegalArgumentException.class, () -> service.getAccountBalance(UUID.randomUUID()));
+
+        long addCalls = registry.find("finance.service.calls").tag("method", "addOperation").timer().count();
+        long failedCalls = registry.find("finance.service.calls").tag("method", "getAccountBalance").timer().count();
+        assertEquals(1, addCalls);
+        assertEquals(1, failedCalls);
+        assertEquals(3.0, registry.find("finance.operations.inserted").counter().count());
+    }
+
+    @Test
+    void recalculateBalance_shouldBeTimedBySizeClass() {
+        for (int i = 0; i < 12; i++) {
+            service.addOperation(income());
+        }
+
+        recalculator.recalculateBalance(account.getId());
+
+        long recalculations = registry.find("finance.balance.recalculation").tag("operations", "10").timer().count();
+        assertEquals(1, recalculations);
+    }
+
+    @Test
+    void sizeClass_shouldRoundDownToPowerOfTen() {
+        assertEquals("0", ServiceMetrics.sizeClass(0));
+        assertEquals("1", ServiceMetrics.sizeClass(9));
+        assertEquals("10", ServiceMetrics.sizeClass(10));
+        assertEquals("100000", ServiceMetrics.sizeClass(999_999));
+    }
+
+    @Test
+    void verificationTask_shouldCountRepairedBalances() {
+        service.addOperation(income());
+        account.setBalanceUnsafe(1);
+        BalanceVerificationTask task = new BalanceVerificationTask(recalculator, metrics);
+
+        task.verifyBalances();
+        task.verifyBalances();
+
+        assertEquals(1.0, registry.find("finance.balance.repaired").counter().count());
+        assertEquals(new BigDecimal("10.00"), accountRepo.findById(account.getId()).orElseThrow().getBalance());
+    }
+}